@@ -45,6 +45,10 @@ import static com.android.quickstep.GestureState.STATE_END_TARGET_SET;
 import static com.android.quickstep.GestureState.STATE_RECENTS_ANIMATION_CANCELED;
 import static com.android.quickstep.GestureState.STATE_RECENTS_SCROLLING_FINISHED;
 import static com.android.quickstep.MultiStateCallback.DEBUG_STATES;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_CANCEL_RECENTS_ANIMATION;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_FINISH_RECENTS_ANIMATION;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_SETTLED_ON_END_TARGET;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_START_RECENTS_ANIMATION_CALLBACK;
 import static com.android.quickstep.util.VibratorWrapper.OVERVIEW_HAPTIC;
 import static com.android.quickstep.views.RecentsView.UPDATE_SYSUI_FLAGS_THRESHOLD;
 import static com.android.systemui.shared.system.ActivityManagerWrapper.CLOSE_SYSTEM_WINDOWS_REASON_RECENTS;
@@ -100,6 +104,7 @@ import com.android.quickstep.RemoteTargetGluer.RemoteTargetHandle;
 import com.android.quickstep.util.ActiveGestureLog;
 import com.android.quickstep.util.ActivityInitListener;
 import com.android.quickstep.util.AnimatorControllerWithResistance;
+import com.android.quickstep.util.GestureFrameMetrics;
 import com.android.quickstep.util.InputConsumerProxy;
 import com.android.quickstep.util.InputProxyHandlerFactory;
 import com.android.quickstep.util.LauncherSplitScreenListener;
@@ -287,6 +292,8 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
     // Interpolate RecentsView scale from start of quick switch scroll until this scroll threshold
     private final float mQuickSwitchScaleScrollThreshold;
 
+    private final GestureFrameMetrics.Session mFrameMetrics;
+
     public AbsSwipeUpHandler(Context context, RecentsAnimationDeviceState deviceState,
             TaskAnimationManager taskAnimationManager, GestureState gestureState,
             long touchTimeMs, boolean continuingLastGesture,
@@ -306,6 +313,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
         mContinuingLastGesture = continuingLastGesture;
         mQuickSwitchScaleScrollThreshold = context.getResources().getDimension(
                 R.dimen.quick_switch_scaling_scroll_threshold);
+        mFrameMetrics = GestureFrameMetrics.INSTANCE.startGesture(getSingleFrameMs(context));
 
         initAfterSubclassConstructor();
         initStateCallbacks();
@@ -800,7 +808,9 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
     public void onRecentsAnimationStart(RecentsAnimationController controller,
             RecentsAnimationTargets targets) {
         super.onRecentsAnimationStart(controller, targets);
-        ActiveGestureLog.INSTANCE.addLog("startRecentsAnimationCallback", targets.apps.length);
+        ActiveGestureLog.INSTANCE.addLog(EVENT_START_RECENTS_ANIMATION_CALLBACK,
+                targets.apps.length);
+        mFrameMetrics.onRecentsAnimationStart();
         mRemoteTargetHandles = mTargetGluer.assignTargetsForSplitScreen(targets);
         mRecentsAnimationController = controller;
         mRecentsAnimationTargets = targets;
@@ -846,7 +856,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
 
     @Override
     public void onRecentsAnimationCanceled(HashMap<Integer, ThumbnailData> thumbnailDatas) {
-        ActiveGestureLog.INSTANCE.addLog("cancelRecentsAnimation");
+        ActiveGestureLog.INSTANCE.addLog(EVENT_CANCEL_RECENTS_ANIMATION);
         mActivityInitListener.unregister();
         mStateCallback.setStateOnUiThread(STATE_GESTURE_CANCELLED | STATE_HANDLER_INVALIDATED);
 
@@ -1005,7 +1015,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
                 }
                 break;
         }
-        ActiveGestureLog.INSTANCE.addLog("onSettledOnEndTarget " + endTarget);
+        ActiveGestureLog.INSTANCE.addLog(EVENT_SETTLED_ON_END_TARGET, endTarget);
     }
 
     /** @return Whether this was the task we were waiting to appear, and thus handled it. */
@@ -1533,7 +1543,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
     private void resumeLastTask() {
         if (mRecentsAnimationController != null) {
             mRecentsAnimationController.finish(false /* toRecents */, null);
-            ActiveGestureLog.INSTANCE.addLog("finishRecentsAnimation", false);
+            ActiveGestureLog.INSTANCE.addLog(EVENT_FINISH_RECENTS_ANIMATION, false);
         }
         doLogGesture(LAST_TASK, null);
         reset();
@@ -1593,6 +1603,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
     }
 
     private void invalidateHandler() {
+        mFrameMetrics.finish();
         if (!ENABLE_QUICKSTEP_LIVE_TILE.get() || !mActivityInterface.isInLiveTileMode()
                 || mGestureState.getEndTarget() != RECENTS) {
             mInputConsumerProxy.destroy();
@@ -1736,7 +1747,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
             mRecentsAnimationController.finish(true /* toRecents */,
                     () -> mStateCallback.setStateOnUiThread(STATE_CURRENT_TASK_FINISHED));
         }
-        ActiveGestureLog.INSTANCE.addLog("finishRecentsAnimation", true);
+        ActiveGestureLog.INSTANCE.addLog(EVENT_FINISH_RECENTS_ANIMATION, true);
     }
 
     private void finishCurrentTransitionToHome() {
@@ -1748,7 +1759,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
             finishRecentsControllerToHome(
                     () -> mStateCallback.setStateOnUiThread(STATE_CURRENT_TASK_FINISHED));
         }
-        ActiveGestureLog.INSTANCE.addLog("finishRecentsAnimation", true);
+        ActiveGestureLog.INSTANCE.addLog(EVENT_FINISH_RECENTS_ANIMATION, true);
         doLogGesture(HOME, mRecentsView == null ? null : mRecentsView.getCurrentPageTaskView());
     }
 
@@ -1935,7 +1946,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
                 mRecentsAnimationController.finish(false /* toRecents */,
                         null /* onFinishComplete */);
                 mActivityInterface.onLaunchTaskSuccess();
-                ActiveGestureLog.INSTANCE.addLog("finishRecentsAnimation", false);
+                ActiveGestureLog.INSTANCE.addLog(EVENT_FINISH_RECENTS_ANIMATION, false);
             }
         }
     }
@@ -1972,6 +1983,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
      * Applies the transform on the recents animation
      */
     protected void applyScrollAndTransform() {
+        long applyStartNanos = System.nanoTime();
         // No need to apply any transform if there is ongoing swipe-pip-to-home animator since
         // that animator handles the leash solely.
         boolean notSwipingPipToHome = mRecentsAnimationTargets != null && !mIsSwipingPipToHome;
@@ -1992,6 +2004,9 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
                 taskViewSimulator.apply(remoteHandle.getTransformParams());
             }
         }
+        if (notSwipingPipToHome) {
+            mFrameMetrics.onTransformApplied(applyStartNanos);
+        }
         ProtoTracer.INSTANCE.get(mContext).scheduleFrameUpdate();
     }
 
@@ -10,6 +10,7 @@ import com.android.launcher3.testing.TestInformationHandler;
 import com.android.launcher3.testing.TestProtocol;
 import com.android.launcher3.touch.PagedOrientationHandler;
 import com.android.launcher3.uioverrides.touchcontrollers.PortraitStatesTouchController;
+import com.android.quickstep.util.GestureFrameMetrics;
 import com.android.quickstep.util.LayoutUtils;
 
 public class QuickstepTestInformationHandler extends TestInformationHandler {
@@ -74,6 +75,17 @@ public class QuickstepTestInformationHandler extends TestInformationHandler {
                 response.putParcelable(TestProtocol.TEST_INFO_RESPONSE_FIELD, gridTaskRect);
                 return response;
             }
+
+            case TestProtocol.REQUEST_GET_GESTURE_FRAME_METRICS: {
+                response.putBundle(TestProtocol.TEST_INFO_RESPONSE_FIELD,
+                        GestureFrameMetrics.INSTANCE.toBundle());
+                return response;
+            }
+
+            case TestProtocol.REQUEST_RESET_GESTURE_FRAME_METRICS: {
+                GestureFrameMetrics.INSTANCE.reset();
+                return response;
+            }
         }
 
         return super.call(method, arg);
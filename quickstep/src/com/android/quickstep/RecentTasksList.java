@@ -23,6 +23,7 @@ import android.app.ActivityManager;
 import android.os.Build;
 import android.os.Process;
 import android.os.RemoteException;
+import android.util.SparseArray;
 import android.util.SparseBooleanArray;
 
 import androidx.annotation.VisibleForTesting;
@@ -39,6 +40,7 @@ import com.android.wm.shell.util.StagedSplitBounds;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
@@ -61,6 +63,9 @@ public class RecentTasksList {
 
     private TaskLoadResult mResultsBg = INVALID_RESULT;
     private TaskLoadResult mResultsUi = INVALID_RESULT;
+    // The last loaded list, which is kept after it is invalidated so that the tasks which did not
+    // change can be reused by the next load. Only accessed on the background thread.
+    private TaskLoadResult mLastResultsBg = INVALID_RESULT;
 
     public RecentTasksList(LooperExecutor mainThreadExecutor,
             KeyguardManagerCompat keyguardManager, SystemUiProxy sysUiProxy) {
@@ -121,7 +126,9 @@ public class RecentTasksList {
         mLoadingTasksInBackground = true;
         UI_HELPER_EXECUTOR.execute(() -> {
             if (!mResultsBg.isValidForRequest(requestLoadId, loadKeysOnly)) {
-                mResultsBg = loadTasksInBackground(Integer.MAX_VALUE, requestLoadId, loadKeysOnly);
+                mResultsBg = loadTasksInBackground(Integer.MAX_VALUE, requestLoadId, loadKeysOnly,
+                        mLastResultsBg);
+                mLastResultsBg = mResultsBg;
             }
             TaskLoadResult loadResult = mResultsBg;
             mMainThreadExecutor.execute(() -> {
@@ -159,6 +166,18 @@ public class RecentTasksList {
      */
     @VisibleForTesting
     TaskLoadResult loadTasksInBackground(int numTasks, int requestId, boolean loadKeysOnly) {
+        return loadTasksInBackground(numTasks, requestId, loadKeysOnly, INVALID_RESULT);
+    }
+
+    /**
+     * Loads and creates a list of all the recent tasks, reusing the tasks of
+     * {@param previousResult} which did not change since it was loaded. The returned list must
+     * not be modified, as its tasks can be shared with the next load. The reused tasks are only
+     * modified on the main thread.
+     */
+    @VisibleForTesting
+    TaskLoadResult loadTasksInBackground(int numTasks, int requestId, boolean loadKeysOnly,
+            TaskLoadResult previousResult) {
         int currentUserId = Process.myUserHandle().getIdentifier();
         ArrayList<GroupedRecentTaskInfo> rawTasks =
                 mSysUiProxy.getRecentTasks(numTasks, currentUserId);
@@ -176,33 +195,63 @@ public class RecentTasksList {
             }
         };
 
+        // Only reuse tasks which were loaded with at least as much data as requested
+        SparseArray<Task> previousTasks = new SparseArray<>();
+        if (previousResult != INVALID_RESULT && (!previousResult.mKeysOnly || loadKeysOnly)) {
+            for (GroupTask group : previousResult) {
+                previousTasks.put(group.task1.key.id, group.task1);
+                if (group.task2 != null) {
+                    previousTasks.put(group.task2.key.id, group.task2);
+                }
+            }
+        }
+
         TaskLoadResult allTasks = new TaskLoadResult(requestId, loadKeysOnly, rawTasks.size());
         for (GroupedRecentTaskInfo rawTask : rawTasks) {
-            ActivityManager.RecentTaskInfo taskInfo1 = rawTask.mTaskInfo1;
-            ActivityManager.RecentTaskInfo taskInfo2 = rawTask.mTaskInfo2;
-            Task.TaskKey task1Key = new Task.TaskKey(taskInfo1);
-            Task task1 = loadKeysOnly
-                    ? new Task(task1Key)
-                    : Task.from(task1Key, taskInfo1,
-                            tmpLockedUsers.get(task1Key.userId) /* isLocked */);
-            task1.setLastSnapshotData(taskInfo1);
+            Task task1 = loadTask(rawTask.mTaskInfo1, loadKeysOnly, tmpLockedUsers,
+                    previousTasks, allTasks);
             Task task2 = null;
-            if (taskInfo2 != null) {
-                Task.TaskKey task2Key = new Task.TaskKey(taskInfo2);
-                task2 = loadKeysOnly
-                        ? new Task(task2Key)
-                        : Task.from(task2Key, taskInfo2,
-                                tmpLockedUsers.get(task2Key.userId) /* isLocked */);
-                task2.setLastSnapshotData(taskInfo2);
+            if (rawTask.mTaskInfo2 != null) {
+                task2 = loadTask(rawTask.mTaskInfo2, loadKeysOnly, tmpLockedUsers,
+                        previousTasks, allTasks);
             }
             final SplitConfigurationOptions.StagedSplitBounds launcherSplitBounds =
                     convertSplitBounds(rawTask.mStagedSplitBounds);
             allTasks.add(new GroupTask(task1, task2, launcherSplitBounds));
         }
+        allTasks.mRemovedCount = previousTasks.size();
 
         return allTasks;
     }
 
+    /**
+     * Returns the task for {@param taskInfo}, reusing the previously loaded task if it did not
+     * change, and removing it from {@param previousTasks}
+     */
+    private Task loadTask(ActivityManager.RecentTaskInfo taskInfo, boolean loadKeysOnly,
+            SparseBooleanArray lockedUsers, SparseArray<Task> previousTasks,
+            TaskLoadResult result) {
+        Task.TaskKey key = new Task.TaskKey(taskInfo);
+        Task previousTask = previousTasks.get(key.id);
+        previousTasks.remove(key.id);
+        if (previousTask != null
+                && GroupTask.isSameTaskKey(previousTask.key, key)
+                && (loadKeysOnly || (previousTask.isLocked == lockedUsers.get(key.userId)
+                        && Objects.equals(previousTask.taskDescription,
+                                taskInfo.taskDescription)))) {
+            // The task can be held by the UI, only update it on the main thread. This is posted
+            // before the result, so the task is up to date by the time the result is delivered.
+            mMainThreadExecutor.execute(() -> previousTask.setLastSnapshotData(taskInfo));
+            result.mReusedCount++;
+            return previousTask;
+        }
+        Task task = loadKeysOnly
+                ? new Task(key)
+                : Task.from(key, taskInfo, lockedUsers.get(key.userId) /* isLocked */);
+        task.setLastSnapshotData(taskInfo);
+        return task;
+    }
+
     private SplitConfigurationOptions.StagedSplitBounds convertSplitBounds(
             StagedSplitBounds shellSplitBounds) {
         return shellSplitBounds == null ?
@@ -223,7 +272,9 @@ public class RecentTasksList {
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentTasksList:");
         writer.println(prefix + "  mChangeId=" + mChangeId);
-        writer.println(prefix + "  mResultsUi=[id=" + mResultsUi.mRequestId + ", tasks=");
+        writer.println(prefix + "  mResultsUi=[id=" + mResultsUi.mRequestId
+                + ", reused=" + mResultsUi.mReusedCount
+                + ", removed=" + mResultsUi.mRemovedCount + ", tasks=");
         for (GroupTask task : mResultsUi) {
             writer.println(prefix + "    t1=" + task.task1.key.id
                     + " t2=" + (task.hasMultipleTasks() ? task.task2.key.id : "-1"));
@@ -240,13 +291,18 @@ public class RecentTasksList {
         writer.println(prefix + "  ]");
     }
 
-    private static class TaskLoadResult extends ArrayList<GroupTask> {
+    @VisibleForTesting
+    static class TaskLoadResult extends ArrayList<GroupTask> {
 
         final int mRequestId;
 
         // If the result was loaded with keysOnly  = true
         final boolean mKeysOnly;
 
+        // Number of tasks reused from the previous result, and removed since it was loaded
+        int mReusedCount;
+        int mRemovedCount;
+
         TaskLoadResult(int requestId, boolean keysOnly, int size) {
             super(size);
             mRequestId = requestId;
@@ -17,6 +17,8 @@ package com.android.quickstep;
 
 import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 
+import static com.android.launcher3.util.DisplayController.CHANGE_ACTIVE_SCREEN;
+import static com.android.launcher3.util.DisplayController.CHANGE_SUPPORTED_BOUNDS;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.quickstep.TaskUtils.checkCurrentOrManagedUserId;
 
@@ -33,6 +35,9 @@ import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.icons.IconProvider;
 import com.android.launcher3.icons.IconProvider.IconChangeListener;
+import com.android.launcher3.util.DisplayController;
+import com.android.launcher3.util.DisplayController.DisplayInfoChangeListener;
+import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.Executors.SimpleThreadFactory;
 import com.android.launcher3.util.MainThreadInitializedObject;
 import com.android.quickstep.util.GroupTask;
@@ -54,7 +59,8 @@ import java.util.function.Consumer;
  * Singleton class to load and manage recents model.
  */
 @TargetApi(Build.VERSION_CODES.O)
-public class RecentsModel extends TaskStackChangeListener implements IconChangeListener {
+public class RecentsModel extends TaskStackChangeListener implements IconChangeListener,
+        DisplayInfoChangeListener {
 
     // We do not need any synchronization for this variable as its only written on UI thread.
     public static final MainThreadInitializedObject<RecentsModel> INSTANCE =
@@ -81,6 +87,7 @@ public class RecentsModel extends TaskStackChangeListener implements IconChangeL
 
         TaskStackChangeListeners.getInstance().registerTaskStackListener(this);
         iconProvider.registerIconChangeListener(this, MAIN_EXECUTOR.getHandler());
+        DisplayController.INSTANCE.get(context).addChangeListener(this);
     }
 
     public TaskIconCache getIconCache() {
@@ -185,12 +192,26 @@ public class RecentsModel extends TaskStackChangeListener implements IconChangeL
 
     public void onTrimMemory(int level) {
         if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // Also trims the thumbnails to the background budget, until the UI is visible again
             mThumbnailCache.getHighResLoadingState().setVisible(false);
         }
-        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
             // Clear everything once we reach a low-mem situation
             mThumbnailCache.clear();
             mIconCache.clearCache();
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mThumbnailCache.trimToFraction(0.25f);
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            mThumbnailCache.trimToFraction(0.5f);
+        }
+    }
+
+    @Override
+    public void onDisplayInfoChanged(Context context, Info info, int flags) {
+        if ((flags & (CHANGE_ACTIVE_SCREEN | CHANGE_SUPPORTED_BOUNDS)) != 0) {
+            mThumbnailCache.onDisplaySizeChanged(info.currentSize);
         }
     }
 
@@ -204,7 +225,7 @@ public class RecentsModel extends TaskStackChangeListener implements IconChangeL
 
     @Override
     public void onSystemIconStateChanged(String iconState) {
-        mIconCache.clearCache();
+        mIconCache.onSystemIconStateChanged(iconState);
     }
 
     /**
@@ -224,6 +245,7 @@ public class RecentsModel extends TaskStackChangeListener implements IconChangeL
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentsModel:");
         mTaskList.dump("  ", writer);
+        mThumbnailCache.dump("  ", writer);
     }
 
     /**
@@ -21,7 +21,9 @@ import static com.android.launcher3.util.DisplayController.CHANGE_DENSITY;
 import android.app.ActivityManager.TaskDescription;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
@@ -32,10 +34,12 @@ import android.text.TextUtils;
 import android.util.SparseArray;
 import android.view.accessibility.AccessibilityManager;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.R;
 import com.android.launcher3.Utilities;
+import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.icons.BaseIconFactory;
 import com.android.launcher3.icons.BitmapInfo;
 import com.android.launcher3.icons.IconProvider;
@@ -44,7 +48,8 @@ import com.android.launcher3.util.DisplayController.DisplayInfoChangeListener;
 import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.util.CancellableTask;
-import com.android.quickstep.util.TaskKeyLruCache;
+import com.android.quickstep.util.ConcurrentTaskKeyLruCache;
+import com.android.quickstep.util.TaskKeyCache;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 import com.android.systemui.shared.system.PackageManagerWrapper;
@@ -62,9 +67,10 @@ public class TaskIconCache implements DisplayInfoChangeListener {
     private final AccessibilityManager mAccessibilityManager;
 
     private final Context mContext;
-    private final TaskKeyLruCache<TaskCacheEntry> mIconCache;
+    private final TaskKeyCache<TaskCacheEntry> mIconCache;
     private final SparseArray<BitmapInfo> mDefaultIcons = new SparseArray<>();
     private final IconProvider mIconProvider;
+    private final TaskIconDiskCache mDiskCache;
 
     private BaseIconFactory mIconFactory;
 
@@ -77,7 +83,8 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         Resources res = context.getResources();
         int cacheSize = res.getInteger(R.integer.recentsIconCacheSize);
 
-        mIconCache = new TaskKeyLruCache<>(cacheSize);
+        mIconCache = new ConcurrentTaskKeyLruCache<>(cacheSize);
+        mDiskCache = new TaskIconDiskCache(context, iconProvider.getSystemIconState());
 
         DisplayController.INSTANCE.get(mContext).addChangeListener(this);
     }
@@ -127,13 +134,27 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         mBgExecutor.execute(this::resetFactory);
     }
 
+    /**
+     * Clears the icon cache, including the icons stored on disk, which were rendered with the
+     * previous system icon state
+     */
+    void onSystemIconStateChanged(String iconState) {
+        mBgExecutor.execute(() -> {
+            resetFactory();
+            mDiskCache.onSystemIconStateChanged(iconState);
+        });
+    }
+
     void onTaskRemoved(TaskKey taskKey) {
         mIconCache.remove(taskKey);
     }
 
     void invalidateCacheEntries(String pkg, UserHandle handle) {
-        mBgExecutor.execute(() -> mIconCache.removeAll(key ->
-                pkg.equals(key.getPackageName()) && handle.getIdentifier() == key.userId));
+        mBgExecutor.execute(() -> {
+            mIconCache.removeAll(key ->
+                    pkg.equals(key.getPackageName()) && handle.getIdentifier() == key.userId);
+            mDiskCache.invalidatePackage(pkg, handle.getIdentifier());
+        });
     }
 
     @WorkerThread
@@ -147,51 +168,103 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         TaskKey key = task.key;
         ActivityInfo activityInfo = null;
 
+        boolean loadContentDescription =
+                GO_LOW_RAM_RECENTS_ENABLED || mAccessibilityManager.isEnabled();
+
         // Create new cache entry
         entry = new TaskCacheEntry();
 
         // Load icon
         // TODO: Load icon resource (b/143363444)
         Bitmap icon = TaskDescriptionCompat.getIcon(desc, key.userId);
+        PackageInfo packageInfo = FeatureFlags.ENABLE_TASK_ICON_DISK_CACHE.get()
+                ? getPackageInfo(key.getPackageName()) : null;
+        String diskKey = packageInfo != null
+                ? mDiskCache.getKey(key.getComponent(), key.userId, icon,
+                        desc.getPrimaryColor(),
+                        DisplayController.INSTANCE.get(mContext).getInfo().densityDpi,
+                        desc.getLabel())
+                : null;
+        if (diskKey != null) {
+            TaskIconDiskCache.Entry diskEntry = mDiskCache.read(packageInfo, key.userId, diskKey);
+            // Only use the stored entry if it has all the data needed
+            if (diskEntry != null
+                    && (!loadContentDescription || diskEntry.contentDescription != null)) {
+                entry.icon = diskEntry.icon.newIcon(mContext);
+                if (loadContentDescription) {
+                    entry.contentDescription = diskEntry.contentDescription;
+                }
+                mIconCache.put(task.key, entry);
+                return entry;
+            }
+        }
+
+        BitmapInfo renderedIcon = null;
         if (icon != null) {
-            /* isInstantApp */
-            entry.icon = getBitmapInfo(
+            renderedIcon = getBitmapInfo(
                     new BitmapDrawable(mContext.getResources(), icon),
                     key.userId,
                     desc.getPrimaryColor(),
-                    false /* isInstantApp */).newIcon(mContext);
+                    false /* isInstantApp */);
+            entry.icon = renderedIcon.newIcon(mContext);
         } else {
             activityInfo = PackageManagerWrapper.getInstance().getActivityInfo(
                     key.getComponent(), key.userId);
             if (activityInfo != null) {
-                BitmapInfo bitmapInfo = getBitmapInfo(
+                renderedIcon = getBitmapInfo(
                         mIconProvider.getIcon(activityInfo),
                         key.userId,
                         desc.getPrimaryColor(),
                         activityInfo.applicationInfo.isInstantApp());
-                entry.icon = bitmapInfo.newIcon(mContext);
+                entry.icon = renderedIcon.newIcon(mContext);
             } else {
                 entry.icon = getDefaultIcon(key.userId);
             }
         }
 
         // Loading content descriptions if accessibility or low RAM recents is enabled.
-        if (GO_LOW_RAM_RECENTS_ENABLED || mAccessibilityManager.isEnabled()) {
+        String contentDescription = null;
+        if (loadContentDescription) {
             // Skip loading the content description if the activity no longer exists
             if (activityInfo == null) {
                 activityInfo = PackageManagerWrapper.getInstance().getActivityInfo(
                         key.getComponent(), key.userId);
             }
             if (activityInfo != null) {
-                entry.contentDescription = getBadgedContentDescription(
+                contentDescription = getBadgedContentDescription(
                         activityInfo, task.key.userId, task.taskDescription);
+                entry.contentDescription = contentDescription;
             }
         }
 
         mIconCache.put(task.key, entry);
+        if (diskKey != null && renderedIcon != null) {
+            // The default icon is not stored, so that the task icon is resolved again once the
+            // activity is available. The executor is serial, so this can not race with the
+            // invalidation of the package.
+            BitmapInfo storedIcon = renderedIcon;
+            String storedContentDescription = contentDescription;
+            mBgExecutor.execute(() -> mDiskCache.write(packageInfo, key.userId,
+                    diskKey, storedIcon, storedContentDescription));
+        }
         return entry;
     }
 
+    /**
+     * Returns the package info used to validate the icons stored on disk, or null if the package
+     * is not installed. Packages are installed for all users from the same apk, so the version
+     * is the same for every user.
+     */
+    @Nullable
+    private PackageInfo getPackageInfo(String packageName) {
+        try {
+            return mContext.getPackageManager().getPackageInfo(packageName,
+                    PackageManager.MATCH_UNINSTALLED_PACKAGES);
+        } catch (NameNotFoundException e) {
+            return null;
+        }
+    }
+
     private String getBadgedContentDescription(ActivityInfo info, int userId, TaskDescription td) {
         PackageManager pm = mContext.getPackageManager();
         String taskLabel = td == null ? null : Utilities.trim(td.getLabel());
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.icons.GraphicsUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.WeakHashMap;
+
+/**
+ * Disk tier of {@link TaskIconCache}, so that the task icons rendered before a process restart
+ * can be shown without resolving the activity or rendering the icon again.
+ *
+ * Each icon is stored in its own file, under a directory per package and user, so that the
+ * icons of a package can be invalidated when its icon changes. Every file records the system
+ * icon state it was rendered with, the version of the package, and the full key it was stored
+ * for. The least recently used files are removed whenever the cache exceeds its budget.
+ */
+@WorkerThread
+class TaskIconDiskCache {
+
+    private static final String TAG = "TaskIconDiskCache";
+
+    private static final String DIR_NAME = "task_icons";
+    private static final int VERSION = 2;
+    private static final int MAX_ENTRIES = 64;
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+    // Fraction of the budget to trim to when it is exceeded, so that adding an entry to a full
+    // cache does not trim it every time
+    private static final float TRIM_TARGET_FRACTION = 0.75f;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final File mDir;
+    private String mIconState;
+
+    // Size of the stored entries, loaded from disk on first write, or -1 if not known
+    private int mEntryCount = -1;
+    private long mTotalBytes;
+
+    // Hashes of the task description icons, so that the pixels of an icon are only read once
+    private final WeakHashMap<Bitmap, IconHash> mIconHashes = new WeakHashMap<>();
+    private ByteBuffer mPixels;
+
+    TaskIconDiskCache(Context context, String iconState) {
+        mDir = new File(context.getCacheDir(), DIR_NAME);
+        mIconState = iconState;
+    }
+
+    /**
+     * Returns the key of the icon rendered for the given task properties, or null if the icon
+     * cannot be cached on disk
+     *
+     * @param taskIcon the icon from the task description, if any
+     */
+    @Nullable
+    String getKey(ComponentName component, int userId, @Nullable Bitmap taskIcon,
+            int primaryColor, int densityDpi, @Nullable CharSequence label) {
+        long iconHash = 0;
+        if (taskIcon != null) {
+            if (taskIcon.getConfig() == Bitmap.Config.HARDWARE) {
+                // The pixels can not be read without a copy
+                return null;
+            }
+            iconHash = getIconHash(taskIcon);
+        }
+        return component.flattenToShortString() + "|" + userId
+                + "|" + Long.toHexString(iconHash) + "|" + primaryColor + "|" + densityDpi
+                + "|" + label;
+    }
+
+    /**
+     * Returns the hash of the pixels of {@param icon}, reusing the hash computed for the same
+     * bitmap if its pixels have not changed since
+     */
+    private long getIconHash(Bitmap icon) {
+        IconHash iconHash = mIconHashes.get(icon);
+        if (iconHash != null && iconHash.generationId == icon.getGenerationId()) {
+            return iconHash.hash;
+        }
+        int byteCount = icon.getByteCount();
+        if (mPixels == null || mPixels.capacity() < byteCount) {
+            mPixels = ByteBuffer.allocate(byteCount);
+        }
+        mPixels.clear();
+        icon.copyPixelsToBuffer(mPixels);
+        mPixels.flip();
+        long hash = FNV_OFFSET_BASIS;
+        while (mPixels.remaining() >= Long.BYTES) {
+            hash = (hash ^ mPixels.getLong()) * FNV_PRIME;
+        }
+        while (mPixels.hasRemaining()) {
+            hash = (hash ^ mPixels.get()) * FNV_PRIME;
+        }
+        mIconHashes.put(icon, new IconHash(icon.getGenerationId(), hash));
+        return hash;
+    }
+
+    /**
+     * Returns the entry stored for {@param key}, or null if there is no valid entry. An entry
+     * stored for a different version of the package is removed.
+     */
+    @Nullable
+    Entry read(PackageInfo packageInfo, int userId, String key) {
+        File file = getFile(packageInfo.packageName, userId, key);
+        if (!file.exists()) {
+            return null;
+        }
+        boolean isStale = false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != VERSION
+                    || !mIconState.equals(in.readUTF())
+                    || !key.equals(in.readUTF())) {
+                return null;
+            }
+            if (in.readLong() != packageInfo.getLongVersionCode()
+                    || in.readLong() != packageInfo.lastUpdateTime) {
+                isStale = true;
+                return null;
+            }
+            String contentDescription = in.readBoolean() ? in.readUTF() : null;
+            int color = in.readInt();
+            byte[] icon = new byte[in.readInt()];
+            in.readFully(icon);
+            Bitmap bitmap = BitmapFactory.decodeByteArray(icon, 0, icon.length);
+            if (bitmap == null) {
+                return null;
+            }
+            // Keep the icons which are shown in the cache when trimming it
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(BitmapInfo.of(bitmap, color), contentDescription);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read task icon", e);
+            return null;
+        } finally {
+            if (isStale) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * Stores {@param icon} for {@param key}
+     */
+    void write(PackageInfo packageInfo, int userId, String key, BitmapInfo icon,
+            @Nullable String contentDescription) {
+        byte[] data = GraphicsUtils.flattenBitmap(icon.icon);
+        if (data == null) {
+            return;
+        }
+        loadSizeIfNeeded();
+        File file = getFile(packageInfo.packageName, userId, key);
+        file.getParentFile().mkdirs();
+        boolean existed = file.exists();
+        long previousBytes = file.length();
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream fos = null;
+        try {
+            fos = atomicFile.startWrite();
+            DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(VERSION);
+            out.writeUTF(mIconState);
+            out.writeUTF(key);
+            out.writeLong(packageInfo.getLongVersionCode());
+            out.writeLong(packageInfo.lastUpdateTime);
+            out.writeBoolean(contentDescription != null);
+            if (contentDescription != null) {
+                out.writeUTF(contentDescription);
+            }
+            out.writeInt(icon.color);
+            out.writeInt(data.length);
+            out.write(data);
+            out.flush();
+            atomicFile.finishWrite(fos);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write task icon", e);
+            atomicFile.failWrite(fos);
+            // The size of the cache is loaded again on the next write
+            mEntryCount = -1;
+            return;
+        }
+        if (existed) {
+            mTotalBytes -= previousBytes;
+        } else {
+            mEntryCount++;
+        }
+        mTotalBytes += file.length();
+        if (mEntryCount > MAX_ENTRIES || mTotalBytes > MAX_BYTES) {
+            trimToSize((int) (MAX_ENTRIES * TRIM_TARGET_FRACTION),
+                    (long) (MAX_BYTES * TRIM_TARGET_FRACTION));
+        }
+    }
+
+    /**
+     * Removes the icons of {@param packageName} for {@param userId}
+     */
+    void invalidatePackage(String packageName, int userId) {
+        deleteRecursive(getPackageDir(packageName, userId));
+        mEntryCount = -1;
+    }
+
+    /**
+     * Removes all the icons, which were rendered with a different system icon state
+     */
+    void onSystemIconStateChanged(String iconState) {
+        mIconState = iconState;
+        deleteRecursive(mDir);
+        mEntryCount = -1;
+    }
+
+    private void loadSizeIfNeeded() {
+        if (mEntryCount >= 0) {
+            return;
+        }
+        mEntryCount = 0;
+        mTotalBytes = 0;
+        for (File file : listFiles()) {
+            mEntryCount++;
+            mTotalBytes += file.length();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until there are at most {@param maxEntries}
+     * entries, using at most {@param maxBytes}
+     */
+    private void trimToSize(int maxEntries, long maxBytes) {
+        ArrayList<File> files = listFiles();
+        files.sort(Comparator.comparingLong(File::lastModified));
+        mEntryCount = files.size();
+        mTotalBytes = 0;
+        for (File file : files) {
+            mTotalBytes += file.length();
+        }
+        for (int i = 0; i < files.size()
+                && (mEntryCount > maxEntries || mTotalBytes > maxBytes); i++) {
+            deleteFile(files.get(i));
+        }
+    }
+
+    private ArrayList<File> listFiles() {
+        ArrayList<File> files = new ArrayList<>();
+        File[] packageDirs = mDir.listFiles();
+        if (packageDirs != null) {
+            for (File dir : packageDirs) {
+                File[] dirFiles = dir.listFiles();
+                if (dirFiles != null) {
+                    Collections.addAll(files, dirFiles);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void deleteFile(File file) {
+        long bytes = file.length();
+        if (file.delete() && mEntryCount >= 0) {
+            mEntryCount--;
+            mTotalBytes -= bytes;
+        }
+    }
+
+    private File getPackageDir(String packageName, int userId) {
+        return new File(mDir, userId + "_" + packageName);
+    }
+
+    private File getFile(String packageName, int userId, String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+        }
+        return new File(getPackageDir(packageName, userId), Long.toHexString(hash));
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class IconHash {
+
+        final int generationId;
+        final long hash;
+
+        IconHash(int generationId, long hash) {
+            this.generationId = generationId;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * An icon read from the disk cache
+     */
+    static class Entry {
+
+        final BitmapInfo icon;
+        // Null if it was not loaded when the icon was stored
+        @Nullable
+        final String contentDescription;
+
+        Entry(BitmapInfo icon, @Nullable String contentDescription) {
+            this.icon = icon;
+            this.contentDescription = contentDescription;
+        }
+    }
+}
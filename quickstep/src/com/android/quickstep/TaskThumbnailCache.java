@@ -17,16 +17,23 @@ package com.android.quickstep;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Point;
+import android.os.SystemClock;
 
 import com.android.launcher3.R;
+import com.android.launcher3.util.DisplayController;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.util.CancellableTask;
-import com.android.quickstep.util.TaskKeyLruCache;
+import com.android.quickstep.util.CancellableTaskBatch;
+import com.android.quickstep.util.ConcurrentTaskKeyLruCache;
+import com.android.quickstep.util.TaskKeyCache;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 import com.android.systemui.shared.recents.model.ThumbnailData;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -36,9 +43,16 @@ public class TaskThumbnailCache {
     private final Executor mBgExecutor;
 
     private final int mCacheSize;
-    private final TaskKeyLruCache<ThumbnailData> mCache;
+    private final TaskKeyCache<ThumbnailData> mCache;
+    // Memory budget while the UI is visible, only accessed on the UI thread
+    private long mMaxBytes;
+    private boolean mInBackground;
     private final HighResLoadingState mHighResLoadingState;
     private final boolean mEnableTaskSnapshotPreloading;
+    private final ThumbnailPrefetcher mPrefetcher;
+
+    // Requests to load together, between beginBatch() and commitBatch()
+    private CancellableTaskBatch<ThumbnailData> mPendingBatch;
 
     public static class HighResLoadingState {
         private boolean mForceHighResThumbnails;
@@ -46,15 +60,17 @@ public class TaskThumbnailCache {
         private boolean mFlingingFast;
         private boolean mHighResLoadingEnabled;
         private ArrayList<HighResLoadingStateChangedCallback> mCallbacks = new ArrayList<>();
+        private final Consumer<Boolean> mVisibilityCallback;
 
         public interface HighResLoadingStateChangedCallback {
             void onHighResLoadingStateChanged(boolean enabled);
         }
 
-        private HighResLoadingState(Context context) {
+        private HighResLoadingState(Context context, Consumer<Boolean> visibilityCallback) {
             // If the device does not support low-res thumbnails, only attempt to load high-res
             // thumbnails
             mForceHighResThumbnails = !supportsLowResThumbnails();
+            mVisibilityCallback = visibilityCallback;
         }
 
         public void addCallback(HighResLoadingStateChangedCallback callback) {
@@ -66,8 +82,12 @@ public class TaskThumbnailCache {
         }
 
         public void setVisible(boolean visible) {
+            boolean changed = mVisible != visible;
             mVisible = visible;
             updateState();
+            if (changed) {
+                mVisibilityCallback.accept(visible);
+            }
         }
 
         public void setFlingingFast(boolean flingingFast) {
@@ -90,14 +110,72 @@ public class TaskThumbnailCache {
         }
     }
 
+    // Bytes per pixel of the task snapshots, which are stored as RGBA_8888 buffers
+    private static final int BYTES_PER_PIXEL = 4;
+    // Fraction of the memory budget kept while the UI is hidden
+    private static final float BACKGROUND_BUDGET_FRACTION = 0.25f;
+
     public TaskThumbnailCache(Context context, Executor bgExecutor) {
         mBgExecutor = bgExecutor;
-        mHighResLoadingState = new HighResLoadingState(context);
+        mHighResLoadingState = new HighResLoadingState(context, this::onVisibilityChanged);
 
         Resources res = context.getResources();
         mCacheSize = res.getInteger(R.integer.recentsThumbnailCacheSize);
         mEnableTaskSnapshotPreloading = res.getBoolean(R.bool.config_enableTaskSnapshotPreloading);
-        mCache = new TaskKeyLruCache<>(mCacheSize);
+        mMaxBytes = getBudgetBytes(DisplayController.INSTANCE.get(context).getInfo().currentSize);
+        mCache = new ConcurrentTaskKeyLruCache<>(mMaxBytes, TaskThumbnailCache::getThumbnailBytes);
+        mPrefetcher = new ThumbnailPrefetcher(this, mMaxBytes / 2);
+    }
+
+    /**
+     * Returns the memory budget for the configured number of full screen high-res thumbnails,
+     * lower resolution thumbnails take proportionally less of it
+     */
+    private long getBudgetBytes(Point displaySize) {
+        return (long) mCacheSize * displaySize.x * displaySize.y * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Updates the memory budget for the new {@param displaySize}
+     */
+    public void onDisplaySizeChanged(Point displaySize) {
+        Preconditions.assertUIThread();
+        long maxBytes = getBudgetBytes(displaySize);
+        if (maxBytes != mMaxBytes) {
+            mMaxBytes = maxBytes;
+            updateBudget();
+        }
+    }
+
+    private void onVisibilityChanged(boolean visible) {
+        mInBackground = !visible;
+        updateBudget();
+    }
+
+    /**
+     * Keeps a fixed fraction of the memory budget while the UI is hidden, and restores the full
+     * budget once it is visible again
+     */
+    private void updateBudget() {
+        mCache.setMaxSize(mInBackground
+                ? (long) (mMaxBytes * BACKGROUND_BUDGET_FRACTION) : mMaxBytes);
+        mPrefetcher.setBudgetBytes(mMaxBytes / 2);
+    }
+
+    /**
+     * Returns the memory used by {@param thumbnailData}. Hardware bitmaps are held in graphics
+     * memory, which is not reported by {@link Bitmap#getAllocationByteCount()}, so their size is
+     * estimated from their dimensions instead.
+     */
+    static long getThumbnailBytes(ThumbnailData thumbnailData) {
+        Bitmap bitmap = thumbnailData.thumbnail;
+        if (bitmap == null || bitmap.isRecycled()) {
+            return 0;
+        }
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            return (long) bitmap.getWidth() * bitmap.getHeight() * BYTES_PER_PIXEL;
+        }
+        return bitmap.getAllocationByteCount();
     }
 
     /**
@@ -111,7 +189,7 @@ public class TaskThumbnailCache {
         // Fetch the thumbnail for this task and put it in the cache
         if (task.thumbnail == null) {
             updateThumbnailInBackground(task.key, true /* lowResolution */,
-                    t -> task.thumbnail = t);
+                    false /* isCardRequest */, t -> task.thumbnail = t);
         }
     }
 
@@ -142,19 +220,71 @@ public class TaskThumbnailCache {
             return null;
         }
 
-        return updateThumbnailInBackground(task.key, !mHighResLoadingState.isEnabled(), t -> {
-            task.thumbnail = t;
-            callback.accept(t);
-        });
+        // Only measure the time to the first thumbnail of the card, not the high-res updates
+        long requestTime = task.thumbnail == null ? SystemClock.uptimeMillis() : -1;
+        return updateThumbnailInBackground(task.key, !mHighResLoadingState.isEnabled(),
+                true /* isCardRequest */, t -> {
+                    task.thumbnail = t;
+                    callback.accept(t);
+                    if (requestTime >= 0) {
+                        mPrefetcher.onFirstPixel(SystemClock.uptimeMillis() - requestTime);
+                    }
+                });
     }
 
-    private CancellableTask updateThumbnailInBackground(TaskKey key, boolean lowResolution,
+    /**
+     * Asynchronously fetches the thumbnail for the given {@param key} into the cache, ahead of
+     * the card requesting it.
+     *
+     * @return A cancelable handle to the request, or null if it is already cached
+     */
+    CancellableTask prefetchThumbnail(TaskKey key, boolean lowResolution,
             Consumer<ThumbnailData> callback) {
+        boolean prefetchLowRes = lowResolution && !mHighResLoadingState.mForceHighResThumbnails;
+        ThumbnailData cachedThumbnail = mCache.getAndInvalidateIfModified(key);
+        if (cachedThumbnail != null && cachedThumbnail.thumbnail != null
+                && (!cachedThumbnail.reducedResolution || prefetchLowRes)) {
+            return null;
+        }
+        return updateThumbnailInBackground(key, prefetchLowRes, false /* isCardRequest */,
+                callback);
+    }
+
+    /**
+     * Starts collecting the thumbnail requests which are not already cached, so that they are
+     * loaded in a single pass on the background thread once {@link #commitBatch()} is called,
+     * and delivered to the UI thread together. The requests can still be cancelled individually.
+     */
+    public void beginBatch() {
+        Preconditions.assertUIThread();
+        if (mPendingBatch == null) {
+            mPendingBatch = new CancellableTaskBatch<>();
+        }
+    }
+
+    /**
+     * Starts loading the requests collected since {@link #beginBatch()}
+     */
+    public void commitBatch() {
+        Preconditions.assertUIThread();
+        CancellableTaskBatch<ThumbnailData> batch = mPendingBatch;
+        mPendingBatch = null;
+        if (batch != null && !batch.isEmpty()) {
+            mBgExecutor.execute(batch);
+        }
+    }
+
+    private CancellableTask updateThumbnailInBackground(TaskKey key, boolean lowResolution,
+            boolean isCardRequest, Consumer<ThumbnailData> callback) {
         Preconditions.assertUIThread();
 
         ThumbnailData cachedThumbnail = mCache.getAndInvalidateIfModified(key);
-        if (cachedThumbnail != null &&  cachedThumbnail.thumbnail != null
-                && (!cachedThumbnail.reducedResolution || lowResolution)) {
+        boolean isCached = cachedThumbnail != null && cachedThumbnail.thumbnail != null
+                && (!cachedThumbnail.reducedResolution || lowResolution);
+        if (isCardRequest) {
+            mPrefetcher.onThumbnailRequested(key.id, isCached);
+        }
+        if (isCached) {
             // Already cached, lets use that thumbnail
             callback.accept(cachedThumbnail);
             return null;
@@ -173,7 +303,11 @@ public class TaskThumbnailCache {
                 callback.accept(result);
             }
         };
-        mBgExecutor.execute(request);
+        if (mPendingBatch != null) {
+            mPendingBatch.add(request);
+        } else {
+            mBgExecutor.execute(request);
+        }
         return request;
     }
 
@@ -181,9 +315,18 @@ public class TaskThumbnailCache {
      * Clears the cache.
      */
     public void clear() {
+        mPrefetcher.cancelAll();
         mCache.evictAll();
     }
 
+    /**
+     * Evicts the least recently used thumbnails until at most {@param fraction} of the full
+     * memory budget is used.
+     */
+    public void trimToFraction(float fraction) {
+        mCache.trimToSize((long) (mMaxBytes * fraction));
+    }
+
     /**
      * Removes the cached thumbnail for the given task.
      */
@@ -198,6 +341,22 @@ public class TaskThumbnailCache {
         return mCacheSize;
     }
 
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TaskThumbnailCache:"
+                + " entries=" + mCache.getEntryCount()
+                + " residentKb=" + mCache.getSize() / 1024
+                + " budgetKb=" + mCache.getMaxSize() / 1024
+                + " evictions=" + mCache.getEvictionCount());
+        mPrefetcher.dump(prefix + "  ", writer);
+    }
+
+    /**
+     * @return The prefetcher for the thumbnails of the tasks about to become visible.
+     */
+    public ThumbnailPrefetcher getPrefetcher() {
+        return mPrefetcher;
+    }
+
     /**
      * @return The mutable high-res loading state.
      */
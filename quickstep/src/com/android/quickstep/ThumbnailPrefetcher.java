@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep;
+
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.util.Preconditions;
+import com.android.quickstep.util.CancellableTask;
+import com.android.systemui.shared.recents.model.Task;
+import com.android.systemui.shared.recents.model.ThumbnailData;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Prefetches the thumbnails of the tasks which are about to become visible while flinging
+ * through Overview, so that cards show their thumbnail as soon as they are laid out.
+ *
+ * The prefetch window is updated on every scroll frame by
+ * {@link com.android.quickstep.views.RecentsView}, in priority order. Prefetches for tasks
+ * which leave the window are cancelled, and no new prefetch is started while the thumbnails
+ * which were prefetched but not yet shown exceed the memory budget.
+ */
+public class ThumbnailPrefetcher {
+
+    // Maximum number of tasks to prefetch ahead of the visible range
+    private static final int MAX_PREFETCH_COUNT = 4;
+    // Maximum number of prefetches queued at a time, so that they do not delay the loading of
+    // the visible tasks, which share the same executor
+    private static final int MAX_IN_FLIGHT = 2;
+    // Time to first pixel above which a card is considered to have been shown blank
+    private static final long FRAME_TIME_MS = 16;
+
+    private final TaskThumbnailCache mThumbnailCache;
+    private long mBudgetBytes;
+
+    // Window of tasks to prefetch, in priority order
+    private final ArrayList<Task> mWindow = new ArrayList<>();
+    private final SparseBooleanArray mWindowLowRes = new SparseBooleanArray();
+    private boolean mUpdatingWindow;
+
+    // Prefetches in flight, by task id
+    private final SparseArray<CancellableTask> mPending = new SparseArray<>();
+    // Size of the prefetched thumbnails not yet requested by a card, by task id
+    private final SparseIntArray mPrefetchedBytes = new SparseIntArray();
+    private long mPrefetchedTotalBytes;
+
+    // Metrics
+    private int mIssued;
+    private int mCompleted;
+    private int mUsed;
+    private int mLate;
+    private int mWasted;
+    private int mCancelled;
+    private int mFirstPixelCount;
+    private long mFirstPixelTotalMs;
+    private long mFirstPixelMaxMs;
+    private int mFirstPixelOverFrame;
+
+    /**
+     * @param budgetBytes memory budget of the prefetched thumbnails, which should leave enough
+     *                    room in the cache for the visible tasks, so that prefetched thumbnails
+     *                    are not evicted before they are shown
+     */
+    ThumbnailPrefetcher(TaskThumbnailCache thumbnailCache, long budgetBytes) {
+        mThumbnailCache = thumbnailCache;
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * Changes the memory budget of the prefetched thumbnails, see
+     * {@link #ThumbnailPrefetcher(TaskThumbnailCache, long)}
+     */
+    @UiThread
+    void setBudgetBytes(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * Starts updating the prefetch window, to be followed by calls to
+     * {@link #addToWindow(Task, boolean)} and {@link #commitWindow()}
+     */
+    @UiThread
+    public void beginWindow() {
+        Preconditions.assertUIThread();
+        mWindow.clear();
+        mWindowLowRes.clear();
+        mUpdatingWindow = true;
+    }
+
+    /**
+     * Adds {@param task} to the prefetch window, after all the tasks added before it.
+     *
+     * @return false if the window is full and no more task should be added
+     */
+    @UiThread
+    public boolean addToWindow(Task task, boolean lowResolution) {
+        if (!mUpdatingWindow || mWindow.size() >= MAX_PREFETCH_COUNT) {
+            return false;
+        }
+        mWindow.add(task);
+        mWindowLowRes.put(task.key.id, lowResolution);
+        return mWindow.size() < MAX_PREFETCH_COUNT;
+    }
+
+    /**
+     * Cancels the prefetches for tasks which are no longer in the window, and starts the
+     * prefetches for the tasks added to it
+     */
+    @UiThread
+    public void commitWindow() {
+        mUpdatingWindow = false;
+        for (int i = mPending.size() - 1; i >= 0; i--) {
+            if (mWindowLowRes.indexOfKey(mPending.keyAt(i)) < 0) {
+                mPending.valueAt(i).cancel();
+                mPending.removeAt(i);
+                mCancelled++;
+            }
+        }
+        for (int i = mPrefetchedBytes.size() - 1; i >= 0; i--) {
+            if (mWindowLowRes.indexOfKey(mPrefetchedBytes.keyAt(i)) < 0) {
+                mPrefetchedTotalBytes -= mPrefetchedBytes.valueAt(i);
+                mPrefetchedBytes.removeAt(i);
+                mWasted++;
+            }
+        }
+        issuePrefetches();
+    }
+
+    /**
+     * Cancels all the prefetches, when the tasks are no longer scrolled
+     */
+    @UiThread
+    public void cancelAll() {
+        if (mWindow.isEmpty() && mPending.size() == 0 && mPrefetchedBytes.size() == 0) {
+            return;
+        }
+        beginWindow();
+        commitWindow();
+    }
+
+    private void issuePrefetches() {
+        for (int i = 0; i < mWindow.size() && mPending.size() < MAX_IN_FLIGHT; i++) {
+            if (mPrefetchedTotalBytes >= mBudgetBytes) {
+                return;
+            }
+            Task task = mWindow.get(i);
+            int taskId = task.key.id;
+            if (mPending.indexOfKey(taskId) >= 0 || mPrefetchedBytes.indexOfKey(taskId) >= 0) {
+                continue;
+            }
+            CancellableTask request = mThumbnailCache.prefetchThumbnail(task.key,
+                    mWindowLowRes.get(taskId), result -> onPrefetched(taskId, result));
+            if (request != null) {
+                mPending.put(taskId, request);
+                mIssued++;
+            }
+        }
+    }
+
+    private void onPrefetched(int taskId, ThumbnailData result) {
+        mPending.remove(taskId);
+        if (result != null && result.thumbnail != null) {
+            int bytes = (int) TaskThumbnailCache.getThumbnailBytes(result);
+            mPrefetchedBytes.put(taskId, bytes);
+            mPrefetchedTotalBytes += bytes;
+            mCompleted++;
+        }
+        issuePrefetches();
+    }
+
+    /**
+     * Called when a card requests the thumbnail of {@param taskId}
+     *
+     * @param fromCache whether the thumbnail was already in the cache
+     */
+    void onThumbnailRequested(int taskId, boolean fromCache) {
+        int index = mPrefetchedBytes.indexOfKey(taskId);
+        if (index >= 0) {
+            mPrefetchedTotalBytes -= mPrefetchedBytes.valueAt(index);
+            mPrefetchedBytes.removeAt(index);
+            if (fromCache) {
+                mUsed++;
+            } else {
+                // Evicted before it was shown
+                mWasted++;
+            }
+            issuePrefetches();
+            return;
+        }
+        CancellableTask pending = mPending.get(taskId);
+        if (pending != null) {
+            // The card loads the thumbnail itself, avoid loading it twice
+            pending.cancel();
+            mPending.remove(taskId);
+            mLate++;
+            issuePrefetches();
+        }
+    }
+
+    /**
+     * Records the time between a card requesting its thumbnail and receiving it
+     */
+    void onFirstPixel(long latencyMs) {
+        mFirstPixelCount++;
+        mFirstPixelTotalMs += latencyMs;
+        mFirstPixelMaxMs = Math.max(mFirstPixelMaxMs, latencyMs);
+        if (latencyMs > FRAME_TIME_MS) {
+            mFirstPixelOverFrame++;
+        }
+    }
+
+    /**
+     * Returns the fraction of completed prefetches which were shown by a card
+     */
+    public float getHitRate() {
+        return mCompleted == 0 ? 0 : (float) mUsed / mCompleted;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ThumbnailPrefetcher:"
+                + " issued=" + mIssued
+                + " completed=" + mCompleted
+                + " used=" + mUsed
+                + " late=" + mLate
+                + " wasted=" + mWasted
+                + " cancelled=" + mCancelled
+                + " hitRate=" + getHitRate()
+                + " prefetchedKb=" + mPrefetchedTotalBytes / 1024
+                + " budgetKb=" + mBudgetBytes / 1024);
+        writer.println(prefix + "  timeToFirstPixel:"
+                + " cards=" + mFirstPixelCount
+                + " avgMs=" + (mFirstPixelCount == 0 ? 0 : mFirstPixelTotalMs / mFirstPixelCount)
+                + " maxMs=" + mFirstPixelMaxMs
+                + " overFrame=" + mFirstPixelOverFrame);
+    }
+}
@@ -24,6 +24,9 @@ import static com.android.launcher3.config.FeatureFlags.ASSISTANT_GIVES_LAUNCHER
 import static com.android.launcher3.config.FeatureFlags.ENABLE_QUICKSTEP_LIVE_TILE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.quickstep.GestureState.DEFAULT_STATE;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_MOTION_EVENT;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_MOTION_EVENT_AT_POSITION;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_SET_INPUT_CONSUMER;
 import static com.android.systemui.shared.system.ActivityManagerWrapper.CLOSE_SYSTEM_WINDOWS_REASON_RECENTS;
 import static com.android.systemui.shared.system.QuickStepContract.KEY_EXTRA_RECENT_TASKS;
 import static com.android.systemui.shared.system.QuickStepContract.KEY_EXTRA_SHELL_ONE_HANDED;
@@ -98,7 +101,9 @@ import com.android.quickstep.inputconsumers.SysUiOverlayInputConsumer;
 import com.android.quickstep.inputconsumers.TaskbarStashInputConsumer;
 import com.android.quickstep.util.ActiveGestureLog;
 import com.android.quickstep.util.AssistantUtilities;
+import com.android.quickstep.util.GestureFrameMetrics;
 import com.android.quickstep.util.LauncherSplitScreenListener;
+import com.android.quickstep.util.MotionEventTrace;
 import com.android.quickstep.util.ProtoTracer;
 import com.android.quickstep.util.ProxyScreenStatusProvider;
 import com.android.quickstep.util.SplitScreenBounds;
@@ -118,7 +123,10 @@ import com.android.wm.shell.splitscreen.ISplitScreen;
 import com.android.wm.shell.startingsurface.IStartingWindow;
 import com.android.wm.shell.transition.IShellTransitions;
 
+import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -137,6 +145,7 @@ public class TouchInteractionService extends Service
     private static final String NOTIFY_ACTION_BACK = "com.android.quickstep.action.BACK_GESTURE";
     private static final String HAS_ENABLED_QUICKSTEP_ONCE = "launcher.has_enabled_quickstep_once";
     private static final int MAX_BACK_NOTIFICATION_COUNT = 3;
+    private static final String TOUCH_LOG_FILE_NAME = "touch_interaction_log.bin";
 
     /**
      * System Action ID to show all apps.
@@ -351,6 +360,7 @@ public class TouchInteractionService extends Service
 
     private InputMonitorCompat mInputMonitorCompat;
     private InputEventReceiver mInputEventReceiver;
+    private final MotionEventTrace mMotionEventTrace = new MotionEventTrace();
 
     private DisplayManager mDisplayManager;
 
@@ -509,6 +519,7 @@ public class TouchInteractionService extends Service
                 // Update the tracing state
                 if ((systemUiStateFlags & SYSUI_STATE_TRACING_ENABLED) != 0) {
                     Log.d(TAG, "Starting tracing.");
+                    mMotionEventTrace.clear();
                     ProtoTracer.INSTANCE.get(this).start();
                 } else {
                     Log.d(TAG, "Stopping tracing. Dumping to file="
@@ -574,6 +585,9 @@ public class TouchInteractionService extends Service
 
         TestLogging.recordMotionEvent(
                 TestProtocol.SEQUENCE_TIS, "TouchInteractionService.onInputEvent", event);
+        if (ProtoTracer.INSTANCE.get(this).isEnabled()) {
+            mMotionEventTrace.record(event);
+        }
 
         if (!mDeviceState.isUserUnlocked()) {
             return;
@@ -597,7 +611,8 @@ public class TouchInteractionService extends Service
                 mGestureState = newGestureState;
                 mConsumer = newConsumer(prevGestureState, mGestureState, event);
 
-                ActiveGestureLog.INSTANCE.addLog("setInputConsumer: " + mConsumer.getName());
+                ActiveGestureLog.INSTANCE.addLog(EVENT_SET_INPUT_CONSUMER,
+                        mConsumer.getType());
                 mUncheckedConsumer = mConsumer;
             } else if (mDeviceState.isUserUnlocked() && mDeviceState.isFullyGesturalNavMode()
                     && mDeviceState.canTriggerAssistantAction(event)) {
@@ -626,12 +641,12 @@ public class TouchInteractionService extends Service
             switch (event.getActionMasked()) {
                 case ACTION_DOWN:
                 case ACTION_UP:
-                    ActiveGestureLog.INSTANCE.addLog("onMotionEvent("
-                            + (int) event.getRawX() + ", " + (int) event.getRawY() + ")",
-                            event.getActionMasked());
+                    ActiveGestureLog.INSTANCE.addLog(EVENT_MOTION_EVENT_AT_POSITION,
+                            event.getActionMasked(),
+                            (int) event.getRawX(), (int) event.getRawY());
                     break;
                 default:
-                    ActiveGestureLog.INSTANCE.addLog("onMotionEvent", event.getActionMasked());
+                    ActiveGestureLog.INSTANCE.addLog(EVENT_MOTION_EVENT, event.getActionMasked());
                     break;
             }
         }
@@ -980,6 +995,7 @@ public class TouchInteractionService extends Service
             pw.println("  resumed=" + resumed);
             pw.println("  mConsumer=" + mConsumer.getName());
             ActiveGestureLog.INSTANCE.dump("", pw);
+            GestureFrameMetrics.INSTANCE.dump("", pw);
             RecentsModel.INSTANCE.get(this).dump("", pw);
             pw.println("ProtoTrace:");
             pw.println("  file=" + ProtoTracer.INSTANCE.get(this).getTraceFile());
@@ -989,6 +1005,7 @@ public class TouchInteractionService extends Service
     private void printAvailableCommands(PrintWriter pw) {
         pw.println("Available commands:");
         pw.println("  clear-touch-log: Clears the touch interaction log");
+        pw.println("  write-touch-log: Writes the touch interaction log to a binary file");
     }
 
     private void onCommand(PrintWriter pw, LinkedList<String> args) {
@@ -996,6 +1013,16 @@ public class TouchInteractionService extends Service
             case "clear-touch-log":
                 ActiveGestureLog.INSTANCE.clear();
                 break;
+            case "write-touch-log": {
+                File file = new File(getFilesDir(), TOUCH_LOG_FILE_NAME);
+                try (FileOutputStream out = new FileOutputStream(file)) {
+                    ActiveGestureLog.INSTANCE.writeTo(out);
+                    pw.println("Touch interaction log written to " + file);
+                } catch (IOException e) {
+                    pw.println("Failed to write touch interaction log: " + e);
+                }
+                break;
+            }
         }
     }
 
@@ -1023,6 +1050,7 @@ public class TouchInteractionService extends Service
             mOverviewComponentObserver.writeToProto(serviceProto);
         }
         mConsumer.writeToProto(serviceProto);
+        mMotionEventTrace.writeToProto(serviceProto);
 
         proto.setTouchInteractionService(serviceProto);
     }
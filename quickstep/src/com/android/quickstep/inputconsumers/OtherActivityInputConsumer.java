@@ -29,6 +29,8 @@ import static com.android.launcher3.Utilities.EDGE_NAV_BAR;
 import static com.android.launcher3.Utilities.squaredHypot;
 import static com.android.launcher3.util.TraceHelper.FLAG_CHECK_FOR_RACE_CONDITIONS;
 import static com.android.launcher3.util.VelocityUtils.PX_PER_MS;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_START_QUICKSTEP;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_START_RECENTS_ANIMATION;
 import static com.android.quickstep.util.ActiveGestureLog.INTENT_EXTRA_LOG_TRACE_ID;
 
 import android.annotation.TargetApi;
@@ -66,6 +68,7 @@ import com.android.quickstep.TaskAnimationManager;
 import com.android.quickstep.TouchInteractionService;
 import com.android.quickstep.util.ActiveGestureLog;
 import com.android.quickstep.util.CachedEventDispatcher;
+import com.android.quickstep.util.GestureFrameMetrics;
 import com.android.quickstep.util.MotionPauseDetector;
 import com.android.quickstep.util.NavBarPosition;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
@@ -341,6 +344,7 @@ public class OtherActivityInputConsumer extends ContextWrapper implements InputC
                 if (mInteractionHandler != null) {
                     if (mPassedWindowMoveSlop) {
                         // Move
+                        GestureFrameMetrics.INSTANCE.onInputEvent(ev.getEventTime());
                         mInteractionHandler.updateDisplacement(displacement - mStartDisplacement);
                     }
 
@@ -369,7 +373,7 @@ public class OtherActivityInputConsumer extends ContextWrapper implements InputC
     }
 
     private void notifyGestureStarted(boolean isLikelyToStartNewTask) {
-        ActiveGestureLog.INSTANCE.addLog("startQuickstep");
+        ActiveGestureLog.INSTANCE.addLog(EVENT_START_QUICKSTEP);
         if (mInteractionHandler == null) {
             return;
         }
@@ -383,7 +387,7 @@ public class OtherActivityInputConsumer extends ContextWrapper implements InputC
     }
 
     private void startTouchTrackingForWindowAnimation(long touchTimeMs) {
-        ActiveGestureLog.INSTANCE.addLog("startRecentsAnimation");
+        ActiveGestureLog.INSTANCE.addLog(EVENT_START_RECENTS_ANIMATION);
 
         mInteractionHandler = mHandlerFactory.newHandler(mGestureState, touchTimeMs);
         mInteractionHandler.setGestureEndCallback(this::onInteractionGestureFinished);
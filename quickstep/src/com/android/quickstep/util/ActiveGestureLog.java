@@ -15,17 +15,39 @@
  */
 package com.android.quickstep.util;
 
-import android.content.Context;
+import android.os.SystemClock;
 
-import com.android.launcher3.logging.EventLogArray;
-import com.android.launcher3.util.MainThreadInitializedObject;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.quickstep.GestureState.GestureEndTarget;
+import com.android.quickstep.InputConsumer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A log to keep track of the active gesture.
+ *
+ * Events are identified by one of the EVENT_* ids and stored with their extras in preallocated
+ * primitive arrays, so that logging does not allocate or format strings on the touch path. The
+ * entries are only formatted when the log is dumped, either directly or by decoding the binary
+ * form written by {@link #writeTo(OutputStream)}.
  */
-public class ActiveGestureLog extends EventLogArray {
+public class ActiveGestureLog {
 
-    public static final ActiveGestureLog INSTANCE = new ActiveGestureLog();
+    public static final ActiveGestureLog INSTANCE = new ActiveGestureLog(40);
 
     /**
      * NOTE: This value should be kept same as
@@ -33,7 +55,282 @@ public class ActiveGestureLog extends EventLogArray {
      */
     public static final String INTENT_EXTRA_LOG_TRACE_ID = "INTENT_EXTRA_LOG_TRACE_ID";
 
-    private ActiveGestureLog() {
-        super("touch_interaction_log", 40);
+    private static final String NAME = "touch_interaction_log";
+
+    // Version of the binary format, must be incremented when the events or formats below change
+    private static final int VERSION = 1;
+
+    private static final int EVENT_NONE = -1;
+
+    public static final int EVENT_START_QUICKSTEP = 0;
+    public static final int EVENT_START_RECENTS_ANIMATION = 1;
+    public static final int EVENT_SET_INPUT_CONSUMER = 2;
+    public static final int EVENT_MOTION_EVENT = 3;
+    public static final int EVENT_MOTION_EVENT_AT_POSITION = 4;
+    public static final int EVENT_START_RECENTS_ANIMATION_CALLBACK = 5;
+    public static final int EVENT_CANCEL_RECENTS_ANIMATION = 6;
+    public static final int EVENT_SETTLED_ON_END_TARGET = 7;
+    public static final int EVENT_FINISH_RECENTS_ANIMATION = 8;
+    public static final int EVENT_SET_END_TARGET = 9;
+    public static final int EVENT_FRAME_METRICS = 10;
+
+    // How the extras of an event are formatted
+    private static final int FORMAT_NONE = 0;
+    private static final int FORMAT_INT = 1;
+    private static final int FORMAT_FLOAT = 2;
+    private static final int FORMAT_BOOL = 3;
+    // The extras are the type of an InputConsumer
+    private static final int FORMAT_INPUT_CONSUMER = 4;
+    // The extras are the ordinal of a GestureEndTarget, or -1
+    private static final int FORMAT_END_TARGET = 5;
+    // The extras are an int, the secondary extras are the packed position of the event
+    private static final int FORMAT_INT_AT_POSITION = 6;
+    // The extras are the frame count, the secondary extras are the dropped frame count
+    private static final int FORMAT_FRAME_METRICS = 7;
+
+    private static final String[] EVENT_NAMES = new String[] {
+            "startQuickstep",                   // 0
+            "startRecentsAnimation",            // 1
+            "setInputConsumer",                 // 2
+            "onMotionEvent",                    // 3
+            "onMotionEvent",                    // 4
+            "startRecentsAnimationCallback",    // 5
+            "cancelRecentsAnimation",           // 6
+            "onSettledOnEndTarget",             // 7
+            "finishRecentsAnimation",           // 8
+            "setEndTarget",                     // 9
+            "frameMetrics",                     // 10
+    };
+
+    private static final int[] EVENT_FORMATS = new int[] {
+            FORMAT_NONE,                // 0
+            FORMAT_NONE,                // 1
+            FORMAT_INPUT_CONSUMER,      // 2
+            FORMAT_INT,                 // 3
+            FORMAT_INT_AT_POSITION,     // 4
+            FORMAT_INT,                 // 5
+            FORMAT_NONE,                // 6
+            FORMAT_END_TARGET,          // 7
+            FORMAT_BOOL,                // 8
+            FORMAT_END_TARGET,          // 9
+            FORMAT_FRAME_METRICS,       // 10
+    };
+
+    private final int mSize;
+    private final int[] mEvents;
+    private final long[] mExtras;
+    private final long[] mSecondaryExtras;
+    private final long[] mTimesNanos;
+    private final int[] mDuplicateCounts;
+    private final int[] mTraceIds;
+    private int mNextIndex;
+
+    private final Random mRandom = new Random();
+    private int mLogId;
+
+    @VisibleForTesting
+    ActiveGestureLog(int size) {
+        mSize = size;
+        mEvents = new int[size];
+        mExtras = new long[size];
+        mSecondaryExtras = new long[size];
+        mTimesNanos = new long[size];
+        mDuplicateCounts = new int[size];
+        mTraceIds = new int[size];
+        Arrays.fill(mEvents, EVENT_NONE);
+    }
+
+    public void addLog(int event) {
+        addLog(event, 0, 0);
+    }
+
+    public void addLog(int event, int extras) {
+        addLog(event, extras, 0);
+    }
+
+    public void addLog(int event, float extras) {
+        addLog(event, Float.floatToRawIntBits(extras), 0);
+    }
+
+    public void addLog(int event, boolean extras) {
+        addLog(event, extras ? 1 : 0, 0);
+    }
+
+    public void addLog(int event, GestureEndTarget endTarget) {
+        addLog(event, endTarget == null ? -1 : endTarget.ordinal(), 0);
+    }
+
+    public void addLog(int event, int extras, int x, int y) {
+        addLog(event, extras, ((long) x << 32) | (y & 0xFFFFFFFFL));
+    }
+
+    public synchronized void addLog(int event, long extras, long secondaryExtras) {
+        // Merge the logs if its a duplicate
+        int last = (mNextIndex + mSize - 1) % mSize;
+        int secondLast = (mNextIndex + mSize - 2) % mSize;
+        if (isEntrySame(last, event, extras, secondaryExtras)
+                && isEntrySame(secondLast, event, extras, secondaryExtras)) {
+            update(last, event, extras, secondaryExtras);
+            mDuplicateCounts[secondLast]++;
+            return;
+        }
+
+        update(mNextIndex, event, extras, secondaryExtras);
+        mNextIndex = (mNextIndex + 1) % mSize;
+    }
+
+    private void update(int index, int event, long extras, long secondaryExtras) {
+        mEvents[index] = event;
+        mExtras[index] = extras;
+        mSecondaryExtras[index] = secondaryExtras;
+        mTimesNanos[index] = SystemClock.elapsedRealtimeNanos();
+        mDuplicateCounts[index] = 0;
+        mTraceIds[index] = mLogId;
+    }
+
+    private boolean isEntrySame(int index, int event, long extras, long secondaryExtras) {
+        if (mEvents[index] != event || mSecondaryExtras[index] != secondaryExtras) {
+            return false;
+        }
+        // Events are merged regardless of their numeric extras, as long as they are not part of
+        // what identifies the event
+        int format = getFormat(event);
+        return format == FORMAT_INT || format == FORMAT_FLOAT
+                || format == FORMAT_INT_AT_POSITION || mExtras[index] == extras;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(mEvents, EVENT_NONE);
+    }
+
+    /** Returns a 3 digit random number between 100-999 */
+    public int generateAndSetLogId() {
+        mLogId = mRandom.nextInt(900) + 100;
+        return mLogId;
+    }
+
+    /**
+     * Writes the log in a compact binary form, which can be read back by
+     * {@link #decode(InputStream, String, PrintWriter)}
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        synchronized (this) {
+            int count = 0;
+            for (int i = 0; i < mSize; i++) {
+                if (mEvents[i] != EVENT_NONE) {
+                    count++;
+                }
+            }
+            out.writeInt(VERSION);
+            // Reference point to convert the timestamps to wall clock time when decoding
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(SystemClock.elapsedRealtimeNanos());
+            out.writeInt(count);
+            // Newest entries first
+            for (int i = 0; i < mSize; i++) {
+                int index = (mNextIndex + mSize - i - 1) % mSize;
+                if (mEvents[index] == EVENT_NONE) {
+                    continue;
+                }
+                out.writeShort(mEvents[index]);
+                out.writeLong(mTimesNanos[index]);
+                out.writeLong(mExtras[index]);
+                out.writeLong(mSecondaryExtras[index]);
+                out.writeInt(mDuplicateCounts[index]);
+                out.writeShort(mTraceIds[index]);
+            }
+        }
+        out.flush();
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeTo(bytes);
+            decode(new ByteArrayInputStream(bytes.toByteArray()), prefix, writer);
+        } catch (IOException e) {
+            writer.println(prefix + "Failed to dump " + NAME + ": " + e);
+        }
+    }
+
+    /**
+     * Prints the log written by {@link #writeTo(OutputStream)} in the format of
+     * {@link #dump(String, PrintWriter)}
+     */
+    public static void decode(InputStream inputStream, String prefix, PrintWriter writer)
+            throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        long refWallTimeMs = in.readLong();
+        long refTimeNanos = in.readLong();
+        int count = in.readInt();
+
+        writer.println(prefix + "EventLog (" + NAME + ") history:");
+        SimpleDateFormat sdf = new SimpleDateFormat("  HH:mm:ss.SSSZ  ", Locale.US);
+        Date date = new Date();
+        for (int i = 0; i < count; i++) {
+            int event = in.readShort();
+            long timeNanos = in.readLong();
+            long extras = in.readLong();
+            long secondaryExtras = in.readLong();
+            int duplicateCount = in.readInt();
+            int traceId = in.readShort();
+
+            date.setTime(refWallTimeMs - TimeUnit.NANOSECONDS.toMillis(refTimeNanos - timeNanos));
+            StringBuilder msg = new StringBuilder(prefix).append(sdf.format(date));
+            appendEvent(msg, event, extras, secondaryExtras);
+            if (duplicateCount > 0) {
+                msg.append(" & ").append(duplicateCount).append(" similar events");
+            }
+            msg.append(" traceId: ").append(traceId);
+            writer.println(msg);
+        }
+    }
+
+    private static void appendEvent(StringBuilder msg, int event, long extras,
+            long secondaryExtras) {
+        if (event < 0 || event >= EVENT_NAMES.length) {
+            msg.append("unknownEvent(").append(event).append(")");
+            return;
+        }
+        msg.append(EVENT_NAMES[event]);
+        switch (getFormat(event)) {
+            case FORMAT_INT:
+                msg.append(": ").append((int) extras);
+                break;
+            case FORMAT_FLOAT:
+                msg.append(": ").append(Float.intBitsToFloat((int) extras));
+                break;
+            case FORMAT_BOOL:
+                msg.append(": ").append(extras != 0);
+                break;
+            case FORMAT_INPUT_CONSUMER:
+                msg.append(": ").append(InputConsumer.getName((int) extras));
+                break;
+            case FORMAT_END_TARGET: {
+                GestureEndTarget[] targets = GestureEndTarget.values();
+                msg.append(" ").append(extras >= 0 && extras < targets.length
+                        ? targets[(int) extras].name() : "null");
+                break;
+            }
+            case FORMAT_INT_AT_POSITION:
+                msg.append("(").append((int) (secondaryExtras >> 32))
+                        .append(", ").append((int) secondaryExtras)
+                        .append("): ").append((int) extras);
+                break;
+            case FORMAT_FRAME_METRICS:
+                msg.append(": frames=").append(extras)
+                        .append(" dropped=").append(secondaryExtras);
+                break;
+            default: // fall out
+        }
+    }
+
+    private static int getFormat(int event) {
+        return event >= 0 && event < EVENT_FORMATS.length ? EVENT_FORMATS[event] : FORMAT_NONE;
     }
 }
@@ -65,4 +65,11 @@ public abstract class CancellableTask<T> implements Runnable {
     public void cancel() {
         mCancelled = true;
     }
+
+    /**
+     * @return Whether {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import java.util.ArrayList;
+
+/**
+ * Runs several {@link CancellableTask}s in a single pass on the background thread and posts all
+ * their results to the UI thread in a single message, instead of one message per task on each
+ * thread. Each task can still be cancelled individually.
+ *
+ * @param <T> The type of the result of the tasks
+ */
+public class CancellableTaskBatch<T> implements Runnable {
+
+    private final ArrayList<CancellableTask<T>> mTasks = new ArrayList<>();
+
+    /**
+     * Adds {@param task} to the batch, this must be called before the batch is executed
+     */
+    public void add(CancellableTask<T> task) {
+        mTasks.add(task);
+    }
+
+    public boolean isEmpty() {
+        return mTasks.isEmpty();
+    }
+
+    @Override
+    public void run() {
+        int count = mTasks.size();
+        ArrayList<T> results = new ArrayList<>(count);
+        boolean hasResults = false;
+        for (int i = 0; i < count; i++) {
+            CancellableTask<T> task = mTasks.get(i);
+            if (task.isCancelled()) {
+                results.add(null);
+                continue;
+            }
+            results.add(task.getResultOnBg());
+            hasResults = true;
+        }
+        if (!hasResults) {
+            return;
+        }
+        MAIN_EXECUTOR.execute(() -> {
+            for (int i = 0; i < count; i++) {
+                CancellableTask<T> task = mTasks.get(i);
+                if (!task.isCancelled()) {
+                    task.handleResult(results.get(i));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.Log;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An LRU cache for task key entries, where lookups do not wait for writers.
+ *
+ * Entries are read from a concurrent map. Accesses are recorded in lossy, striped read buffers
+ * and applied to the access order in batches, either by a reader when a buffer fills up and the
+ * lock is free, or by the next writer. Writers are serialized by a lock which guards the access
+ * order, the size accounting and eviction.
+ * @param <V> The type of the value
+ */
+public class ConcurrentTaskKeyLruCache<V> implements TaskKeyCache<V> {
+
+    private static final String TAG = "ConcurrentTaskKeyLruCache";
+
+    // Must be a power of 2
+    private static final int READ_BUFFER_SIZE = 16;
+    // Number of pending accesses in a buffer after which a reader tries to apply them
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    private final ConcurrentHashMap<Integer, Entry<V>> mMap = new ConcurrentHashMap<>();
+    private final ReadBuffer<V>[] mReadBuffers;
+    private final SizeEstimator<V> mSizeEstimator;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    // Guarded by mLock, volatile so that it can be read without the lock
+    private volatile long mMaxSize;
+    // Guarded by mLock
+    private final LinkedHashMap<Integer, Entry<V>> mAccessOrder =
+            new LinkedHashMap<>(0, 0.75f, true /* accessOrder */);
+    private long mSize;
+    private int mEvictionCount;
+
+    public ConcurrentTaskKeyLruCache(int maxSize) {
+        this(maxSize, value -> 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentTaskKeyLruCache(long maxSize, SizeEstimator<V> sizeEstimator) {
+        mMaxSize = maxSize;
+        mSizeEstimator = sizeEstimator;
+        int stripes = Integer.highestOneBit(Math.max(
+                1, Runtime.getRuntime().availableProcessors() - 1) * 2);
+        mReadBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            mReadBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        mLock.lock();
+        try {
+            drainReadBuffersLocked();
+            mEvictionCount += mAccessOrder.size();
+            mAccessOrder.clear();
+            mMap.clear();
+            mSize = 0;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(TaskKey key) {
+        mLock.lock();
+        try {
+            removeLocked(key.id);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Predicate<TaskKey> keyCheck) {
+        mLock.lock();
+        try {
+            drainReadBuffersLocked();
+            Iterator<Entry<V>> itr = mAccessOrder.values().iterator();
+            while (itr.hasNext()) {
+                Entry<V> entry = itr.next();
+                if (keyCheck.test(entry.mKey)) {
+                    itr.remove();
+                    mMap.remove(entry.mKey.id, entry);
+                    mSize -= entry.mSize;
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public V getAndInvalidateIfModified(TaskKey key) {
+        Entry<V> entry = mMap.get(key.id);
+
+        if (entry != null && entry.mKey.windowingMode == key.windowingMode
+                && entry.mKey.lastActiveTime == key.lastActiveTime) {
+            recordAccess(entry);
+            return entry.mValue;
+        } else {
+            if (entry != null) {
+                mLock.lock();
+                try {
+                    // Only remove the stale entry, if it was not replaced in the meantime
+                    if (mMap.get(key.id) == entry) {
+                        removeLocked(key.id);
+                    }
+                } finally {
+                    mLock.unlock();
+                }
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public void put(TaskKey key, V value) {
+        if (key == null || value == null) {
+            Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
+            return;
+        }
+        Entry<V> entry = new Entry<>(key, value, mSizeEstimator.getSize(value));
+        mLock.lock();
+        try {
+            drainReadBuffersLocked();
+            Entry<V> previous = mAccessOrder.put(key.id, entry);
+            if (previous != null) {
+                mSize -= previous.mSize;
+            }
+            mMap.put(key.id, entry);
+            mSize += entry.mSize;
+            trimToSizeLocked(mMaxSize);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateIfAlreadyInCache(int taskId, V data) {
+        mLock.lock();
+        try {
+            Entry<V> entry = mMap.get(taskId);
+            if (entry != null) {
+                mSize -= entry.mSize;
+                entry.mValue = data;
+                entry.mSize = mSizeEstimator.getSize(data);
+                mSize += entry.mSize;
+                drainReadBuffersLocked();
+                trimToSizeLocked(mMaxSize);
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void trimToSize(long maxSize) {
+        mLock.lock();
+        try {
+            drainReadBuffersLocked();
+            trimToSizeLocked(maxSize);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void setMaxSize(long maxSize) {
+        mLock.lock();
+        try {
+            mMaxSize = maxSize;
+            drainReadBuffersLocked();
+            trimToSizeLocked(maxSize);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public long getSize() {
+        mLock.lock();
+        try {
+            return mSize;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int getEvictionCount() {
+        mLock.lock();
+        try {
+            return mEvictionCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int getEntryCount() {
+        return mMap.size();
+    }
+
+    private void recordAccess(Entry<V> entry) {
+        ReadBuffer<V> buffer =
+                mReadBuffers[(int) Thread.currentThread().getId() & (mReadBuffers.length - 1)];
+        int pending = buffer.offer(entry);
+        if (pending >= READ_BUFFER_DRAIN_THRESHOLD && mLock.tryLock()) {
+            try {
+                drainReadBuffersLocked();
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffersLocked() {
+        for (ReadBuffer<V> buffer : mReadBuffers) {
+            buffer.drainLocked(this::applyAccessLocked);
+        }
+    }
+
+    private void applyAccessLocked(Entry<V> entry) {
+        // Skip the accesses to entries which were removed or replaced since
+        if (mMap.get(entry.mKey.id) == entry) {
+            // Moves the entry to the end of the access order
+            mAccessOrder.get(entry.mKey.id);
+        }
+    }
+
+    private void removeLocked(int taskId) {
+        drainReadBuffersLocked();
+        Entry<V> entry = mAccessOrder.remove(taskId);
+        if (entry != null) {
+            mMap.remove(taskId, entry);
+            mSize -= entry.mSize;
+        }
+    }
+
+    private void trimToSizeLocked(long maxSize) {
+        Iterator<Entry<V>> itr = mAccessOrder.values().iterator();
+        while (mSize > maxSize && itr.hasNext() && (maxSize == 0 || mAccessOrder.size() > 1)) {
+            Entry<V> entry = itr.next();
+            itr.remove();
+            mMap.remove(entry.mKey.id, entry);
+            mSize -= entry.mSize;
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * A bounded buffer of accesses, which drops accesses when it is full or contended. Any
+     * thread can add to it, but only the holder of the cache lock drains it.
+     */
+    private static class ReadBuffer<V> {
+
+        private final AtomicReferenceArray<Entry<V>> mSlots =
+                new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong mWriteCount = new AtomicLong();
+        private volatile long mReadCount;
+
+        /**
+         * @return the number of pending accesses in the buffer
+         */
+        int offer(Entry<V> entry) {
+            long head = mReadCount;
+            long tail = mWriteCount.get();
+            int size = (int) (tail - head);
+            if (size >= READ_BUFFER_SIZE) {
+                return size;
+            }
+            if (mWriteCount.compareAndSet(tail, tail + 1)) {
+                mSlots.lazySet((int) (tail & (READ_BUFFER_SIZE - 1)), entry);
+                return size + 1;
+            }
+            // Another thread is recording an access, dropping this one is fine
+            return size;
+        }
+
+        void drainLocked(Consumer<Entry<V>> consumer) {
+            long head = mReadCount;
+            long tail = mWriteCount.get();
+            for (; head != tail; head++) {
+                int index = (int) (head & (READ_BUFFER_SIZE - 1));
+                Entry<V> entry = mSlots.get(index);
+                if (entry == null) {
+                    // Not published yet, continue from there on the next drain
+                    break;
+                }
+                mSlots.lazySet(index, null);
+                consumer.accept(entry);
+            }
+            mReadCount = head;
+        }
+    }
+
+    private static class Entry<V> {
+
+        final TaskKey mKey;
+        // Guarded by the cache lock for writes
+        volatile V mValue;
+        volatile long mSize;
+
+        Entry(TaskKey key, V value, long size) {
+            mKey = key;
+            mValue = value;
+            mSize = size;
+        }
+
+        @Override
+        public int hashCode() {
+            return mKey.id;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_FRAME_METRICS;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the frame pacing of the swipe up gestures, aggregated over all the gestures since the
+ * process started. Each gesture is tracked by a {@link Session}, which is started when the swipe
+ * handler is created and finished when it is invalidated.
+ *
+ * The recorded values are:
+ *  - the latency between a touch event and the window transform it results in
+ *  - the number of frames dropped while the gesture is active
+ *  - the time spent applying the window transforms, including the surface transactions
+ *  - the time between the start of the gesture and the start of the recents animation
+ */
+public class GestureFrameMetrics {
+
+    public static final GestureFrameMetrics INSTANCE = new GestureFrameMetrics();
+
+    public static final String KEY_GESTURE_COUNT = "gesture_count";
+    public static final String KEY_FRAME_COUNT = "frame_count";
+    public static final String KEY_DROPPED_FRAME_COUNT = "dropped_frame_count";
+    public static final String KEY_INPUT_LATENCY = "input_latency";
+    public static final String KEY_APPLY_TRANSFORM = "apply_transform";
+    public static final String KEY_RECENTS_ANIMATION_START = "recents_animation_start";
+    public static final String KEY_DROPPED_FRAMES_PER_GESTURE = "dropped_frames_per_gesture";
+
+    private final Histogram mInputLatency = new Histogram("inputToTransform");
+    private final Histogram mApplyTransform = new Histogram("applyTransform");
+    private final Histogram mRecentsAnimationStart = new Histogram("recentsAnimationStart");
+    private final Histogram mDroppedFramesPerGesture = new Histogram("droppedFramesPerGesture");
+
+    private int mGestureCount;
+    private long mFrameCount;
+    private long mDroppedFrameCount;
+
+    @Nullable
+    private Session mActiveSession;
+
+    @VisibleForTesting
+    GestureFrameMetrics() { }
+
+    /**
+     * Starts tracking a new gesture, finishing the previous one if it is still active
+     *
+     * @param singleFrameMs the expected duration of a frame
+     */
+    @UiThread
+    public Session startGesture(int singleFrameMs) {
+        if (mActiveSession != null) {
+            mActiveSession.finish();
+        }
+        mActiveSession = new Session(singleFrameMs);
+        return mActiveSession;
+    }
+
+    /**
+     * Called when a touch event of the active gesture is handled
+     *
+     * @param eventTime the time of the event, in the {@link SystemClock#uptimeMillis()} base
+     */
+    @UiThread
+    public void onInputEvent(long eventTime) {
+        if (mActiveSession != null) {
+            mActiveSession.mPendingInputTimeMs = eventTime;
+        }
+    }
+
+    private synchronized void onSessionFinished(Session session) {
+        mGestureCount++;
+        mFrameCount += session.mFrameCount;
+        mDroppedFrameCount += session.mDroppedFrameCount;
+        mDroppedFramesPerGesture.record(session.mDroppedFrameCount);
+    }
+
+    /**
+     * Clears the recorded values
+     */
+    public synchronized void reset() {
+        mGestureCount = 0;
+        mFrameCount = 0;
+        mDroppedFrameCount = 0;
+        mInputLatency.reset();
+        mApplyTransform.reset();
+        mRecentsAnimationStart.reset();
+        mDroppedFramesPerGesture.reset();
+    }
+
+    /**
+     * Returns the recorded values, with the histograms as nested bundles
+     */
+    public synchronized Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_GESTURE_COUNT, mGestureCount);
+        bundle.putLong(KEY_FRAME_COUNT, mFrameCount);
+        bundle.putLong(KEY_DROPPED_FRAME_COUNT, mDroppedFrameCount);
+        bundle.putBundle(KEY_INPUT_LATENCY, mInputLatency.toBundle());
+        bundle.putBundle(KEY_APPLY_TRANSFORM, mApplyTransform.toBundle());
+        bundle.putBundle(KEY_RECENTS_ANIMATION_START, mRecentsAnimationStart.toBundle());
+        bundle.putBundle(KEY_DROPPED_FRAMES_PER_GESTURE, mDroppedFramesPerGesture.toBundle());
+        return bundle;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "GestureFrameMetrics:");
+        writer.println(prefix + "  gestures=" + mGestureCount
+                + " frames=" + mFrameCount
+                + " droppedFrames=" + mDroppedFrameCount);
+        mInputLatency.dump(prefix + "  ", "us", writer);
+        mApplyTransform.dump(prefix + "  ", "us", writer);
+        mRecentsAnimationStart.dump(prefix + "  ", "us", writer);
+        mDroppedFramesPerGesture.dump(prefix + "  ", "frames", writer);
+    }
+
+    /**
+     * The frame pacing of a single gesture. All the methods must be called on the UI thread.
+     */
+    public class Session implements Choreographer.FrameCallback {
+
+        private final long mSingleFrameNanos;
+        private final long mStartTimeNanos;
+
+        private long mLastFrameTimeNanos = -1;
+        private long mPendingInputTimeMs = -1;
+        private boolean mRecentsAnimationStarted;
+        private boolean mFinished;
+
+        private int mFrameCount;
+        private int mDroppedFrameCount;
+
+        private Session(int singleFrameMs) {
+            mSingleFrameNanos = TimeUnit.MILLISECONDS.toNanos(singleFrameMs);
+            mStartTimeNanos = System.nanoTime();
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mFinished) {
+                return;
+            }
+            if (mLastFrameTimeNanos >= 0) {
+                mFrameCount++;
+                // Allow some jitter before counting a frame as dropped
+                long missedFrames = (frameTimeNanos - mLastFrameTimeNanos + mSingleFrameNanos / 2)
+                        / mSingleFrameNanos - 1;
+                if (missedFrames > 0) {
+                    mDroppedFrameCount += missedFrames;
+                }
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        /**
+         * Called after the window transforms are applied for a frame
+         *
+         * @param applyStartNanos the time at which applying the transforms started, in the
+         *                        {@link System#nanoTime()} base
+         */
+        public void onTransformApplied(long applyStartNanos) {
+            if (mFinished) {
+                return;
+            }
+            long now = System.nanoTime();
+            long inputLatencyUs = -1;
+            if (mPendingInputTimeMs >= 0) {
+                inputLatencyUs = TimeUnit.MILLISECONDS.toMicros(
+                        SystemClock.uptimeMillis() - mPendingInputTimeMs);
+                mPendingInputTimeMs = -1;
+            }
+            synchronized (GestureFrameMetrics.this) {
+                mApplyTransform.record(TimeUnit.NANOSECONDS.toMicros(now - applyStartNanos));
+                if (inputLatencyUs >= 0) {
+                    mInputLatency.record(inputLatencyUs);
+                }
+            }
+        }
+
+        /**
+         * Called when the recents animation of the gesture starts
+         */
+        public void onRecentsAnimationStart() {
+            if (mFinished || mRecentsAnimationStarted) {
+                return;
+            }
+            mRecentsAnimationStarted = true;
+            long latencyUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - mStartTimeNanos);
+            synchronized (GestureFrameMetrics.this) {
+                mRecentsAnimationStart.record(latencyUs);
+            }
+        }
+
+        /**
+         * Stops tracking the gesture, and adds its values to the aggregate
+         */
+        public void finish() {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+            Choreographer.getInstance().removeFrameCallback(this);
+            if (mActiveSession == this) {
+                mActiveSession = null;
+            }
+            onSessionFinished(this);
+            ActiveGestureLog.INSTANCE.addLog(EVENT_FRAME_METRICS, mFrameCount, mDroppedFrameCount);
+        }
+    }
+
+    /**
+     * A histogram with exponential buckets
+     */
+    @VisibleForTesting
+    static class Histogram {
+
+        // Upper bound of each bucket, the last bucket holds all the larger values
+        private static final long[] BUCKET_BOUNDS = new long[] {
+                1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1_000, 2_000, 4_000, 8_000, 16_000,
+                32_000, 64_000, 128_000, 256_000, 512_000, 1_000_000};
+
+        private final String mName;
+        private final int[] mCounts = new int[BUCKET_BOUNDS.length + 1];
+        private long mCount;
+        private long mSum;
+        private long mMax;
+
+        Histogram(String name) {
+            mName = name;
+        }
+
+        void record(long value) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && value > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            mCounts[bucket]++;
+            mCount++;
+            mSum += value;
+            mMax = Math.max(mMax, value);
+        }
+
+        void reset() {
+            for (int i = 0; i < mCounts.length; i++) {
+                mCounts[i] = 0;
+            }
+            mCount = 0;
+            mSum = 0;
+            mMax = 0;
+        }
+
+        /**
+         * Returns the upper bound of the bucket containing the {@param percentile} value
+         */
+        long getPercentile(int percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            long target = (mCount * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= target) {
+                    return i < BUCKET_BOUNDS.length ? Math.min(BUCKET_BOUNDS[i], mMax) : mMax;
+                }
+            }
+            return mMax;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        Bundle toBundle() {
+            Bundle bundle = new Bundle();
+            bundle.putLong("count", mCount);
+            bundle.putLong("avg", mCount == 0 ? 0 : mSum / mCount);
+            bundle.putLong("p50", getPercentile(50));
+            bundle.putLong("p90", getPercentile(90));
+            bundle.putLong("p99", getPercentile(99));
+            bundle.putLong("max", mMax);
+            return bundle;
+        }
+
+        void dump(String prefix, String unit, PrintWriter writer) {
+            writer.println(prefix + mName + " (" + unit + "):"
+                    + " count=" + mCount
+                    + " avg=" + (mCount == 0 ? 0 : mSum / mCount)
+                    + " p50=" + getPercentile(50)
+                    + " p90=" + getPercentile(90)
+                    + " p99=" + getPercentile(99)
+                    + " max=" + mMax);
+        }
+    }
+}
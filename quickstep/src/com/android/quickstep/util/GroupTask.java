@@ -22,6 +22,8 @@ import androidx.annotation.Nullable;
 import com.android.launcher3.util.SplitConfigurationOptions.StagedSplitBounds;
 import com.android.systemui.shared.recents.model.Task;
 
+import java.util.Objects;
+
 /**
  * A {@link Task} container that can contain one or two tasks, depending on if the two tasks
  * are represented as an app-pair in the recents task list.
@@ -53,4 +55,24 @@ public class GroupTask {
     public boolean hasMultipleTasks() {
         return task2 != null;
     }
+
+    /**
+     * @return Whether {@param key1} and {@param key2} refer to the same task, in the same state
+     */
+    public static boolean isSameTaskKey(Task.TaskKey key1, Task.TaskKey key2) {
+        return key1.id == key2.id
+                && key1.userId == key2.userId
+                && key1.windowingMode == key2.windowingMode
+                && key1.lastActiveTime == key2.lastActiveTime;
+    }
+
+    /**
+     * @return Whether {@param task1} and {@param task2} refer to the same task, with the same
+     * description
+     */
+    public static boolean isSameTask(@NonNull Task task1, @NonNull Task task2) {
+        return isSameTaskKey(task1.key, task2.key)
+                && task1.isLocked == task2.isLocked
+                && Objects.equals(task1.taskDescription, task2.taskDescription);
+    }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.view.MotionEvent;
+import android.view.MotionEvent.PointerCoords;
+import android.view.MotionEvent.PointerProperties;
+
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.tracing.LauncherTraceEntryProto;
+import com.android.launcher3.tracing.LauncherTraceFileProto;
+import com.android.launcher3.tracing.MotionEventProto;
+import com.android.launcher3.tracing.MotionSampleProto;
+import com.android.launcher3.tracing.PointerProto;
+import com.android.launcher3.tracing.TouchInteractionServiceProto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the motion events received by the touch interaction service into the winscope trace,
+ * so that a real gesture can later be replayed through the input consumers.
+ */
+public class MotionEventTrace {
+
+    private final ArrayList<MotionEventProto> mPendingEvents = new ArrayList<>();
+
+    /**
+     * Records {@param event}, to be written with the next trace entry
+     */
+    @UiThread
+    public void record(MotionEvent event) {
+        mPendingEvents.add(toProto(event));
+    }
+
+    /**
+     * Writes the events recorded since the previous trace entry to {@param serviceProto}
+     */
+    @UiThread
+    public void writeToProto(TouchInteractionServiceProto.Builder serviceProto) {
+        serviceProto.addAllMotionEvent(mPendingEvents);
+        mPendingEvents.clear();
+    }
+
+    @UiThread
+    public void clear() {
+        mPendingEvents.clear();
+    }
+
+    /**
+     * Returns all the motion events of a trace file written by {@link ProtoTracer}, in the order
+     * they were received
+     */
+    public static List<MotionEventProto> readTrace(InputStream in) throws IOException {
+        ArrayList<MotionEventProto> events = new ArrayList<>();
+        for (LauncherTraceEntryProto entry : LauncherTraceFileProto.parseFrom(in).getEntryList()) {
+            events.addAll(entry.getLauncher().getTouchInteractionService().getMotionEventList());
+        }
+        return events;
+    }
+
+    public static MotionEventProto toProto(MotionEvent event) {
+        int pointerCount = event.getPointerCount();
+        // The raw coordinates are only available for the current sample, assume that all the
+        // samples and pointers have the same offset
+        float xOffset = event.getX() - event.getRawX();
+        float yOffset = event.getY() - event.getRawY();
+        MotionEventProto.Builder proto = MotionEventProto.newBuilder()
+                .setAction(event.getAction())
+                .setDownTime(event.getDownTime())
+                .setSource(event.getSource())
+                .setFlags(event.getFlags())
+                .setMetaState(event.getMetaState())
+                .setButtonState(event.getButtonState())
+                .setDeviceId(event.getDeviceId())
+                .setXOffset(xOffset)
+                .setYOffset(yOffset);
+        for (int i = 0; i < pointerCount; i++) {
+            proto.addPointer(PointerProto.newBuilder()
+                    .setId(event.getPointerId(i))
+                    .setToolType(event.getToolType(i)));
+        }
+
+        int historySize = event.getHistorySize();
+        for (int h = 0; h <= historySize; h++) {
+            boolean isCurrent = h == historySize;
+            MotionSampleProto.Builder sample = MotionSampleProto.newBuilder().setEventTime(
+                    isCurrent ? event.getEventTime() : event.getHistoricalEventTime(h));
+            for (int i = 0; i < pointerCount; i++) {
+                sample.addX((isCurrent ? event.getX(i) : event.getHistoricalX(i, h)) - xOffset);
+                sample.addY((isCurrent ? event.getY(i) : event.getHistoricalY(i, h)) - yOffset);
+            }
+            proto.addSample(sample);
+        }
+        return proto.build();
+    }
+
+    /**
+     * Creates a motion event from {@param proto}, the caller is responsible for recycling it
+     *
+     * @param timeOffsetMs added to all the times of the event
+     */
+    public static MotionEvent fromProto(MotionEventProto proto, long timeOffsetMs) {
+        int pointerCount = proto.getPointerCount();
+        PointerProperties[] properties = new PointerProperties[pointerCount];
+        PointerCoords[] coords = new PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            properties[i] = new PointerProperties();
+            properties[i].id = proto.getPointer(i).getId();
+            properties[i].toolType = proto.getPointer(i).getToolType();
+            coords[i] = new PointerCoords();
+            coords[i].pressure = 1;
+            coords[i].size = 1;
+        }
+
+        MotionEvent event = null;
+        for (MotionSampleProto sample : proto.getSampleList()) {
+            for (int i = 0; i < pointerCount; i++) {
+                coords[i].x = sample.getX(i);
+                coords[i].y = sample.getY(i);
+            }
+            long eventTime = sample.getEventTime() + timeOffsetMs;
+            if (event == null) {
+                event = MotionEvent.obtain(proto.getDownTime() + timeOffsetMs, eventTime,
+                        proto.getAction(), pointerCount, properties, coords, proto.getMetaState(),
+                        proto.getButtonState(), 1f /* xPrecision */, 1f /* yPrecision */,
+                        proto.getDeviceId(), 0 /* edgeFlags */, proto.getSource(),
+                        proto.getFlags());
+            } else {
+                event.addBatch(eventTime, coords, proto.getMetaState());
+            }
+        }
+        if (event == null) {
+            throw new IllegalArgumentException("Motion event without samples");
+        }
+        event.offsetLocation(proto.getXOffset(), proto.getYOffset());
+        return event;
+    }
+}
@@ -54,6 +54,7 @@ public class ProtoTracer implements ProtoTraceParams<MessageLite.Builder,
     private final Context mContext;
     private final FrameProtoTracer<MessageLite.Builder, LauncherTraceFileProto.Builder,
         LauncherTraceEntryProto.Builder, LauncherTraceProto.Builder> mProtoTracer;
+    private boolean mEnabled;
 
     public ProtoTracer(Context context) {
         mContext = context;
@@ -110,13 +111,19 @@ public class ProtoTracer implements ProtoTraceParams<MessageLite.Builder,
     }
 
     public void start() {
+        mEnabled = true;
         mProtoTracer.start();
     }
 
     public void stop() {
+        mEnabled = false;
         mProtoTracer.stop();
     }
 
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
     public void add(ProtoTraceable<LauncherTraceProto.Builder> traceable) {
         mProtoTracer.add(traceable);
     }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import java.util.function.Predicate;
+
+/**
+ * A cache of task key entries, bounded by the size of its entries as measured by a
+ * {@link SizeEstimator}
+ * @param <V> The type of the value
+ */
+public interface TaskKeyCache<V> {
+
+    /**
+     * Removes all entries from the cache
+     */
+    void evictAll();
+
+    /**
+     * Removes a particular entry from the cache
+     */
+    void remove(TaskKey key);
+
+    /**
+     * Removes all entries matching keyCheck
+     */
+    void removeAll(Predicate<TaskKey> keyCheck);
+
+    /**
+     * Gets the entry if it is still valid, an entry is invalidated when the windowing mode or
+     * last active time of the task changes
+     */
+    V getAndInvalidateIfModified(TaskKey key);
+
+    /**
+     * Adds an entry to the cache, optionally evicting the least recently accessed entries
+     */
+    void put(TaskKey key, V value);
+
+    /**
+     * Updates the cache entry if it is already present in the cache
+     */
+    void updateIfAlreadyInCache(int taskId, V data);
+
+    /**
+     * Evicts the least recently accessed entries until the size of the cache is at most
+     * {@param maxSize}. The most recently accessed entry is only evicted if maxSize is 0.
+     */
+    void trimToSize(long maxSize);
+
+    /**
+     * Changes the maximum size of the cache, evicting the least recently accessed entries if the
+     * cache is now too large
+     */
+    void setMaxSize(long maxSize);
+
+    long getMaxSize();
+
+    /**
+     * Returns the size of all the entries, as measured by the {@link SizeEstimator}
+     */
+    long getSize();
+
+    /**
+     * Returns the number of entries evicted to make room for others or to trim the cache
+     */
+    int getEvictionCount();
+
+    int getEntryCount();
+
+    /**
+     * Measures the size of an entry of the cache
+     * @param <V> The type of the value
+     */
+    interface SizeEstimator<V> {
+
+        long getSize(V value);
+    }
+}
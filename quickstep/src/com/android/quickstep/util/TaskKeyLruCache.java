@@ -19,46 +19,59 @@ import android.util.Log;
 
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.function.Predicate;
 
 /**
- * A simple LRU cache for task key entries
+ * A simple LRU cache for task key entries, guarded by a single lock. The size of the cache is
+ * measured by a {@link SizeEstimator}, which by default counts each entry as 1.
  * @param <V> The type of the value
  */
-public class TaskKeyLruCache<V> {
+public class TaskKeyLruCache<V> implements TaskKeyCache<V> {
 
-    private final MyLinkedHashMap<V> mMap;
+    private final LinkedHashMap<Integer, Entry<V>> mMap =
+            new LinkedHashMap<>(0, 0.75f, true /* accessOrder */);
+    private final SizeEstimator<V> mSizeEstimator;
+
+    private long mMaxSize;
+    private long mSize;
+    private int mEvictionCount;
 
     public TaskKeyLruCache(int maxSize) {
-        mMap = new MyLinkedHashMap<>(maxSize);
+        this(maxSize, value -> 1);
+    }
+
+    public TaskKeyLruCache(long maxSize, SizeEstimator<V> sizeEstimator) {
+        mMaxSize = maxSize;
+        mSizeEstimator = sizeEstimator;
     }
 
-    /**
-     * Removes all entries from the cache
-     */
+    @Override
     public synchronized void evictAll() {
+        mEvictionCount += mMap.size();
         mMap.clear();
+        mSize = 0;
     }
 
-    /**
-     * Removes a particular entry from the cache
-     */
+    @Override
     public synchronized void remove(TaskKey key) {
-        mMap.remove(key.id);
+        removeEntry(mMap.remove(key.id));
     }
 
-    /**
-     * Removes all entries matching keyCheck
-     */
+    @Override
     public synchronized void removeAll(Predicate<TaskKey> keyCheck) {
-        mMap.entrySet().removeIf(e -> keyCheck.test(e.getValue().mKey));
+        Iterator<Entry<V>> itr = mMap.values().iterator();
+        while (itr.hasNext()) {
+            Entry<V> entry = itr.next();
+            if (keyCheck.test(entry.mKey)) {
+                itr.remove();
+                removeEntry(entry);
+            }
+        }
     }
 
-    /**
-     * Gets the entry if it is still valid
-     */
+    @Override
     public synchronized V getAndInvalidateIfModified(TaskKey key) {
         Entry<V> entry = mMap.get(key.id);
 
@@ -71,24 +84,70 @@ public class TaskKeyLruCache<V> {
         }
     }
 
-    /**
-     * Adds an entry to the cache, optionally evicting the last accessed entry
-     */
-    public final synchronized void put(TaskKey key, V value) {
+    @Override
+    public synchronized void put(TaskKey key, V value) {
         if (key != null && value != null) {
-            mMap.put(key.id, new Entry<>(key, value));
+            Entry<V> entry = new Entry<>(key, value, mSizeEstimator.getSize(value));
+            removeEntry(mMap.put(key.id, entry));
+            mSize += entry.mSize;
+            trimToSize(mMaxSize);
         } else {
             Log.e("TaskKeyCache", "Unexpected null key or value: " + key + ", " + value);
         }
     }
 
-    /**
-     * Updates the cache entry if it is already present in the cache
-     */
+    @Override
     public synchronized void updateIfAlreadyInCache(int taskId, V data) {
         Entry<V> entry = mMap.get(taskId);
         if (entry != null) {
+            mSize -= entry.mSize;
             entry.mValue = data;
+            entry.mSize = mSizeEstimator.getSize(data);
+            mSize += entry.mSize;
+            trimToSize(mMaxSize);
+        }
+    }
+
+    @Override
+    public synchronized void trimToSize(long maxSize) {
+        Iterator<Entry<V>> itr = mMap.values().iterator();
+        while (mSize > maxSize && itr.hasNext() && (maxSize == 0 || mMap.size() > 1)) {
+            Entry<V> entry = itr.next();
+            itr.remove();
+            removeEntry(entry);
+            mEvictionCount++;
+        }
+    }
+
+    @Override
+    public synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(mMaxSize);
+    }
+
+    @Override
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    @Override
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized int getEntryCount() {
+        return mMap.size();
+    }
+
+    private void removeEntry(Entry<V> entry) {
+        if (entry != null) {
+            mSize -= entry.mSize;
         }
     }
 
@@ -96,10 +155,12 @@ public class TaskKeyLruCache<V> {
 
         final TaskKey mKey;
         V mValue;
+        long mSize;
 
-        Entry(TaskKey key, V value) {
+        Entry(TaskKey key, V value, long size) {
             mKey = key;
             mValue = value;
+            mSize = size;
         }
 
         @Override
@@ -107,19 +168,4 @@ public class TaskKeyLruCache<V> {
             return mKey.id;
         }
     }
-
-    private static class MyLinkedHashMap<V> extends LinkedHashMap<Integer, Entry<V>> {
-
-        private final int mMaxSize;
-
-        MyLinkedHashMap(int maxSize) {
-            super(0, 0.75f, true /* accessOrder */);
-            mMaxSize = maxSize;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Integer, TaskKeyLruCache.Entry<V>> eldest) {
-            return size() > mMaxSize;
-        }
-    }
 }
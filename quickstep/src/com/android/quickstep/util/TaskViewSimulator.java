@@ -36,6 +36,7 @@ import android.graphics.RectF;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.Utilities;
@@ -296,9 +297,40 @@ public class TaskViewSimulator implements TransformParams.BuilderProxy {
      * Applies the target to the previously set parameters
      */
     public void apply(TransformParams params) {
-        if (mDp == null || mThumbnailPosition.isEmpty()) {
+        if (!updateTransform()) {
             return;
         }
+
+        params.applySurfaceParams(params.createSurfaceParams(this));
+
+        if (!DEBUG) {
+            return;
+        }
+        Log.d(TAG, "progress: " + Utilities.boundToRange(fullScreenProgress.value, 0, 1)
+                + " scale: " + mCurrentFullscreenParams.mScale
+                + " recentsViewScale: " + recentsViewScale.value
+                + " crop: " + mTmpCropRect
+                + " radius: " + getCurrentCornerRadius()
+                + " taskW: " + mTaskRect.width() + " H: " + mTaskRect.height()
+                + " taskRect: " + mTaskRect
+                + " taskPrimaryT: " + taskPrimaryTranslation.value
+                + " recentsPrimaryT: " + recentsViewPrimaryTranslation.value
+                + " recentsSecondaryT: " + recentsViewSecondaryTranslation.value
+                + " taskSecondaryT: " + taskSecondaryTranslation.value
+                + " recentsScroll: " + recentsViewScroll.value
+                + " pivot: " + mPivot
+        );
+    }
+
+    /**
+     * Computes the matrix and the crop rect of the target for the current values, returning false
+     * if there is nothing to apply. This doesn't allocate once the layout is computed.
+     */
+    @VisibleForTesting
+    boolean updateTransform() {
+        if (mDp == null || mThumbnailPosition.isEmpty()) {
+            return false;
+        }
         if (!mLayoutValid || mOrientationStateId != mOrientationState.getStateId()) {
             mLayoutValid = true;
             mOrientationStateId = mOrientationState.getStateId();
@@ -354,26 +386,7 @@ public class TaskViewSimulator implements TransformParams.BuilderProxy {
                 taskWidth + insets.right, taskHeight + insets.bottom);
         mInversePositionMatrix.mapRect(mTempRectF);
         mTempRectF.roundOut(mTmpCropRect);
-
-        params.applySurfaceParams(params.createSurfaceParams(this));
-
-        if (!DEBUG) {
-            return;
-        }
-        Log.d(TAG, "progress: " + fullScreenProgress
-                + " scale: " + scale
-                + " recentsViewScale: " + recentsViewScale.value
-                + " crop: " + mTmpCropRect
-                + " radius: " + getCurrentCornerRadius()
-                + " taskW: " + taskWidth + " H: " + taskHeight
-                + " taskRect: " + mTaskRect
-                + " taskPrimaryT: " + taskPrimaryTranslation.value
-                + " recentsPrimaryT: " + recentsViewPrimaryTranslation.value
-                + " recentsSecondaryT: " + recentsViewSecondaryTranslation.value
-                + " taskSecondaryT: " + taskSecondaryTranslation.value
-                + " recentsScroll: " + recentsViewScroll.value
-                + " pivot: " + mPivot
-        );
+        return true;
     }
 
     @Override
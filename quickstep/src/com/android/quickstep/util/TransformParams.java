@@ -60,6 +60,8 @@ public class TransformParams {
     private RemoteAnimationTargets mTargetSet;
     private SurfaceTransactionApplier mSyncTransactionApplier;
     private SurfaceControl mRecentsSurface;
+    // Reused when there is no sync applier, as the transaction is cleared once applied
+    private TransactionCompat mTransaction;
 
     private BuilderProxy mHomeBuilderProxy = BuilderProxy.ALWAYS_VISIBLE;
     private BuilderProxy mBaseBuilderProxy = BuilderProxy.ALWAYS_VISIBLE;
@@ -209,7 +211,10 @@ public class TransformParams {
         if (mSyncTransactionApplier != null) {
             mSyncTransactionApplier.scheduleApply(params);
         } else {
-            TransactionCompat t = new TransactionCompat();
+            if (mTransaction == null) {
+                mTransaction = new TransactionCompat();
+            }
+            TransactionCompat t = mTransaction;
             for (SurfaceParams param : params) {
                 SyncRtSurfaceTransactionApplierCompat.applyParams(t, param);
             }
@@ -38,6 +38,8 @@ import static com.android.launcher3.anim.Interpolators.FAST_OUT_SLOW_IN;
 import static com.android.launcher3.anim.Interpolators.FINAL_FRAME;
 import static com.android.launcher3.anim.Interpolators.LINEAR;
 import static com.android.launcher3.anim.Interpolators.clampToProgress;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_RECENTS_UPDATE;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_OVERVIEW_THUMBNAIL_PREFETCH;
 import static com.android.launcher3.config.FeatureFlags.ENABLE_QUICKSTEP_LIVE_TILE;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_TASK_CLEAR_ALL;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_TASK_DISMISS_SWIPE_UP;
@@ -88,6 +90,7 @@ import android.os.VibrationEffect;
 import android.text.Layout;
 import android.text.StaticLayout;
 import android.text.TextPaint;
+import android.util.ArraySet;
 import android.util.AttributeSet;
 import android.util.FloatProperty;
 import android.util.Log;
@@ -158,6 +161,7 @@ import com.android.quickstep.SystemUiProxy;
 import com.android.quickstep.TaskOverlayFactory;
 import com.android.quickstep.TaskThumbnailCache;
 import com.android.quickstep.TaskViewUtils;
+import com.android.quickstep.ThumbnailPrefetcher;
 import com.android.quickstep.ViewUtils;
 import com.android.quickstep.util.GroupTask;
 import com.android.quickstep.util.LayoutUtils;
@@ -1376,9 +1380,6 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             currentTaskId = currentTaskView.getTask().key.id;
         }
 
-        // Unload existing visible task data
-        unloadVisibleTaskData(TaskView.FLAG_UPDATE_ALL);
-
         TaskView ignoreResetTaskView =
                 mIgnoreResetTaskId == -1 ? null : getTaskViewByTaskId(mIgnoreResetTaskId);
 
@@ -1390,28 +1391,22 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         // Removing views sets the currentPage to 0, so we save this and restore it after
         // the new set of views are added
         int previousCurrentPage = mCurrentPage;
-        removeAllViews();
-
-        // Add views as children based on whether it's grouped or single task
-        for (int i = taskGroups.size() - 1; i >= 0; i--) {
-            GroupTask groupTask = taskGroups.get(i);
-            boolean hasMultipleTasks = groupTask.hasMultipleTasks();
-            TaskView taskView = getTaskViewFromPool(hasMultipleTasks);
-            addView(taskView);
-
-            if (hasMultipleTasks) {
-                boolean firstTaskIsLeftTopTask =
-                        groupTask.mStagedSplitBounds.leftTopTaskId == groupTask.task1.key.id;
-                Task leftTopTask = firstTaskIsLeftTopTask ? groupTask.task1 : groupTask.task2;
-                Task rightBottomTask = firstTaskIsLeftTopTask ? groupTask.task2 : groupTask.task1;
-                ((GroupedTaskView) taskView).bind(leftTopTask, rightBottomTask, mOrientationState,
-                        groupTask.mStagedSplitBounds);
-            } else {
-                taskView.bind(groupTask.task1, mOrientationState);
+        if (!applyLoadPlanToExistingTaskViews(taskGroups)) {
+            // Unload existing visible task data
+            unloadVisibleTaskData(TaskView.FLAG_UPDATE_ALL);
+
+            removeAllViews();
+
+            // Add views as children based on whether it's grouped or single task
+            for (int i = taskGroups.size() - 1; i >= 0; i--) {
+                GroupTask groupTask = taskGroups.get(i);
+                TaskView taskView = getTaskViewFromPool(groupTask.hasMultipleTasks());
+                addView(taskView);
+                bindTaskView(taskView, groupTask);
+            }
+            if (!taskGroups.isEmpty()) {
+                addView(mClearAllButton);
             }
-        }
-        if (!taskGroups.isEmpty()) {
-            addView(mClearAllButton);
         }
 
         boolean settlingOnNewTask = mNextPage != INVALID_PAGE;
@@ -1475,6 +1470,114 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         updateEnabledOverlays();
     }
 
+    /**
+     * Applies {@param taskGroups} to the existing task views as a set of changes. The views of
+     * the removed tasks are removed, views are added for the new tasks, and the other views are
+     * moved into the new order, the same way {@link #moveFocusedTaskToFront()} moves a view. Only
+     * the views whose task or grouping changed are rebound in place, so that the others keep
+     * their loaded task data.
+     *
+     * @return false if the task views must be rebuilt instead
+     */
+    private boolean applyLoadPlanToExistingTaskViews(ArrayList<GroupTask> taskGroups) {
+        int taskViewCount = getTaskViewCount();
+        if (!ENABLE_INCREMENTAL_RECENTS_UPDATE.get() || taskViewCount == 0
+                || indexOfChild(mClearAllButton) < 0 || mSplitHiddenTaskView != null) {
+            return false;
+        }
+
+        // The task groups are ordered from the least recent, while the most recent task view is
+        // the first child. Match each group to an existing view of the same kind showing one of
+        // its tasks.
+        int groupCount = taskGroups.size();
+        TaskView[] taskViews = new TaskView[groupCount];
+        ArraySet<TaskView> reusedTaskViews = new ArraySet<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            GroupTask groupTask = taskGroups.get(groupCount - 1 - i);
+            TaskView taskView = getReusableTaskView(groupTask.task1, groupTask, reusedTaskViews);
+            if (taskView == null && groupTask.hasMultipleTasks()) {
+                taskView = getReusableTaskView(groupTask.task2, groupTask, reusedTaskViews);
+            }
+            if (taskView != null) {
+                reusedTaskViews.add(taskView);
+            }
+            taskViews[i] = taskView;
+        }
+
+        // Remove the views of the tasks which are gone, or which changed grouping
+        for (int i = taskViewCount - 1; i >= 0; i--) {
+            TaskView taskView = requireTaskViewAt(i);
+            if (!reusedTaskViews.contains(taskView)) {
+                unloadTaskData(taskView);
+                removeView(taskView);
+            }
+        }
+
+        for (int i = 0; i < groupCount; i++) {
+            GroupTask groupTask = taskGroups.get(groupCount - 1 - i);
+            TaskView taskView = taskViews[i];
+            if (taskView == null) {
+                taskView = getTaskViewFromPool(groupTask.hasMultipleTasks());
+                addView(taskView, i);
+                bindTaskView(taskView, groupTask);
+                continue;
+            }
+            if (getChildAt(i) != taskView) {
+                // Move the view without recycling it or unloading its task data
+                mMovingTaskView = taskView;
+                removeView(taskView);
+                mMovingTaskView = null;
+                taskView.resetPersistentViewTransforms();
+                addView(taskView, i);
+            }
+            if (groupTask.hasMultipleTasks()
+                    || !GroupTask.isSameTask(taskView.getTask(), groupTask.task1)) {
+                unloadTaskData(taskView);
+                bindTaskView(taskView, groupTask);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the task view showing {@param task} if it can show {@param groupTask}, and is not
+     * already reused for another group
+     */
+    @Nullable
+    private TaskView getReusableTaskView(Task task, GroupTask groupTask,
+            ArraySet<TaskView> reusedTaskViews) {
+        TaskView taskView = getTaskViewByTaskId(task.key.id);
+        return taskView == null || reusedTaskViews.contains(taskView)
+                || taskView.containsMultipleTasks() != groupTask.hasMultipleTasks()
+                ? null : taskView;
+    }
+
+    /**
+     * Unloads the task data of {@param taskView} if it was loaded, before it is rebound or
+     * removed
+     */
+    private void unloadTaskData(TaskView taskView) {
+        if (mHasVisibleTaskData.get(taskView.getTask().key.id)) {
+            taskView.onTaskListVisibilityChanged(false /* visible */);
+        }
+        for (int taskId : taskView.getTaskIds()) {
+            mHasVisibleTaskData.delete(taskId);
+        }
+    }
+
+    private void bindTaskView(TaskView taskView, GroupTask groupTask) {
+        if (groupTask.hasMultipleTasks()) {
+            boolean firstTaskIsLeftTopTask =
+                    groupTask.mStagedSplitBounds.leftTopTaskId == groupTask.task1.key.id;
+            Task leftTopTask = firstTaskIsLeftTopTask ? groupTask.task1 : groupTask.task2;
+            Task rightBottomTask = firstTaskIsLeftTopTask ? groupTask.task2 : groupTask.task1;
+            ((GroupedTaskView) taskView).bind(leftTopTask, rightBottomTask, mOrientationState,
+                    groupTask.mStagedSplitBounds);
+        } else {
+            taskView.bind(groupTask.task1, mOrientationState);
+        }
+    }
+
     private boolean isModal() {
         return mTaskModalness > 0;
     }
@@ -1764,6 +1867,7 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             // After scrolling, update the visible task's data
             loadVisibleTaskData(TaskView.FLAG_UPDATE_ALL);
         }
+        updateThumbnailPrefetch(scrolling, isFlingingFast);
 
         // Update ActionsView's visibility when scroll changes.
         updateActionsViewFocusedScroll();
@@ -1852,6 +1956,18 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             upper = Math.min(centerPageIndex + 2, numChildren - 1);
         }
 
+        // Load the thumbnails of the newly visible children together
+        TaskThumbnailCache thumbnailCache = mModel.getThumbnailCache();
+        thumbnailCache.beginBatch();
+        try {
+            updateVisibleTaskData(dataChanges, lower, upper, visibleStart, visibleEnd);
+        } finally {
+            thumbnailCache.commitBatch();
+        }
+    }
+
+    private void updateVisibleTaskData(@TaskView.TaskDataChanges int dataChanges, int lower,
+            int upper, int visibleStart, int visibleEnd) {
         // Update the task data for the in/visible children
         for (int i = 0; i < getTaskViewCount(); i++) {
             TaskView taskView = requireTaskViewAt(i);
@@ -1896,10 +2012,68 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         }
     }
 
+    /**
+     * Prefetches the thumbnails of the tasks between the visible range and the page the fling
+     * settles on, starting with the tasks around that page, which are loaded in high-res once
+     * the fling ends.
+     */
+    private void updateThumbnailPrefetch(boolean scrolling, boolean isFlingingFast) {
+        ThumbnailPrefetcher prefetcher = mModel.getThumbnailCache().getPrefetcher();
+        if (!ENABLE_OVERVIEW_THUMBNAIL_PREFETCH.get() || !scrolling || isHandlingTouch()
+                || !mOverviewStateEnabled || mTaskListChangeId == -1) {
+            prefetcher.cancelAll();
+            return;
+        }
+        int currentPage = getPageNearestToCenterOfScreen();
+        int destinationPage = getDestinationPage(mScroller.getFinalX());
+        if (destinationPage < 0 || destinationPage == currentPage) {
+            prefetcher.cancelAll();
+            return;
+        }
+        int direction = destinationPage > currentPage ? 1 : -1;
+
+        prefetcher.beginWindow();
+        // The tasks around the destination are shown at rest, in high-res
+        boolean hasRoom = addToPrefetchWindow(prefetcher, destinationPage, false);
+        for (int offset = 1; offset <= 2 && hasRoom; offset++) {
+            hasRoom = addToPrefetchWindow(prefetcher, destinationPage - offset * direction, false)
+                    && addToPrefetchWindow(prefetcher, destinationPage + offset * direction,
+                            false);
+        }
+        // The tasks passed during the fling, nearest first
+        int destinationRangeStart = destinationPage - 2 * direction;
+        for (int i = currentPage + direction;
+                hasRoom && (destinationRangeStart - i) * direction > 0; i += direction) {
+            hasRoom = addToPrefetchWindow(prefetcher, i, isFlingingFast);
+        }
+        prefetcher.commitWindow();
+    }
+
+    /**
+     * @return false if the prefetch window is full
+     */
+    private boolean addToPrefetchWindow(ThumbnailPrefetcher prefetcher, int pageIndex,
+            boolean lowResolution) {
+        if (pageIndex < 0 || pageIndex >= getChildCount()) {
+            return true;
+        }
+        View child = getChildAt(pageIndex);
+        if (!(child instanceof TaskView)) {
+            return true;
+        }
+        Task task = ((TaskView) child).getTask();
+        if (task == null || mHasVisibleTaskData.get(task.key.id)) {
+            // Already loaded by loadVisibleTaskData
+            return true;
+        }
+        return prefetcher.addToWindow(task, lowResolution);
+    }
+
     /**
      * Unloads any associated data from the currently visible tasks
      */
     private void unloadVisibleTaskData(@TaskView.TaskDataChanges int dataChanges) {
+        mModel.getThumbnailCache().getPrefetcher().cancelAll();
         for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
             if (mHasVisibleTaskData.valueAt(i)) {
                 TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
@@ -1915,15 +2089,21 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
     public void onHighResLoadingStateChanged(boolean enabled) {
         // Whenever the high res loading state changes, poke each of the visible tasks to see if
         // they want to updated their thumbnail state
-        for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
-            if (mHasVisibleTaskData.valueAt(i)) {
-                TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
-                if (taskView != null) {
-                    // Poke the view again, which will trigger it to load high res if the state
-                    // is enabled
-                    taskView.onTaskListVisibilityChanged(true /* visible */);
+        TaskThumbnailCache thumbnailCache = mModel.getThumbnailCache();
+        thumbnailCache.beginBatch();
+        try {
+            for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
+                if (mHasVisibleTaskData.valueAt(i)) {
+                    TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
+                    if (taskView != null) {
+                        // Poke the view again, which will trigger it to load high res if the
+                        // state is enabled
+                        taskView.onTaskListVisibilityChanged(true /* visible */);
+                    }
                 }
             }
+        } finally {
+            thumbnailCache.commitBatch();
         }
     }
 
@@ -423,6 +423,7 @@ public class TaskThumbnailView extends View {
         // Contains the portion of the thumbnail that is unclipped when fullscreen progress = 1.
         private final RectF mClippedInsets = new RectF();
         private final Matrix mMatrix = new Matrix();
+        private final RectF mTmpClipHint = new RectF();
         private boolean mIsOrientationChanged;
 
         public Matrix getMatrix() {
@@ -440,7 +441,8 @@ public class TaskThumbnailView extends View {
 
             int thumbnailRotation = thumbnailData.rotation;
             int deltaRotate = getRotationDelta(currentRotation, thumbnailRotation);
-            RectF thumbnailClipHint = new RectF();
+            RectF thumbnailClipHint = mTmpClipHint;
+            thumbnailClipHint.setEmpty();
             if (TaskView.clipLeft(dp)) {
                 thumbnailClipHint.left = thumbnailData.insets.left;
             }
@@ -19,6 +19,8 @@ package com.android.quickstep;
 import static junit.framework.TestCase.assertNull;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -102,4 +104,40 @@ public class RecentTasksListTest {
         assertEquals(taskDescription, taskList.get(0).task1.taskDescription.getLabel());
         assertNull(taskList.get(0).task2.taskDescription.getLabel());
     }
+
+    @Test
+    public void loadTasksInBackground_reusesUnchangedTasks() {
+        ActivityManager.RecentTaskInfo task1 = createTaskInfo(1, 100);
+        ActivityManager.RecentTaskInfo task2 = createTaskInfo(2, 200);
+        ActivityManager.RecentTaskInfo task3 = createTaskInfo(3, 300);
+        when(mockSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(
+                List.of(new GroupedRecentTaskInfo(task3, null, null),
+                        new GroupedRecentTaskInfo(task2, null, null),
+                        new GroupedRecentTaskInfo(task1, null, null))));
+        RecentTasksList.TaskLoadResult previous = mRecentTasksList.loadTasksInBackground(
+                Integer.MAX_VALUE, 1, false);
+
+        // Task 1 is moved to the front and task 3 is removed
+        ActivityManager.RecentTaskInfo movedTask1 = createTaskInfo(1, 400);
+        when(mockSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(
+                List.of(new GroupedRecentTaskInfo(movedTask1, null, null),
+                        new GroupedRecentTaskInfo(task2, null, null))));
+        RecentTasksList.TaskLoadResult result = mRecentTasksList.loadTasksInBackground(
+                Integer.MAX_VALUE, 2, false, previous);
+
+        assertEquals(2, result.size());
+        assertSame(previous.get(1).task1, result.get(0).task1);
+        assertNotSame(previous.get(0).task1, result.get(1).task1);
+        assertEquals(400, result.get(1).task1.key.lastActiveTime);
+        assertEquals(1, result.mReusedCount);
+        assertEquals(1, result.mRemovedCount);
+    }
+
+    private static ActivityManager.RecentTaskInfo createTaskInfo(int taskId, long lastActiveTime) {
+        ActivityManager.RecentTaskInfo taskInfo = new ActivityManager.RecentTaskInfo();
+        taskInfo.taskId = taskId;
+        taskInfo.lastActiveTime = lastActiveTime;
+        taskInfo.taskDescription = new ActivityManager.TaskDescription("Task " + taskId);
+        return taskInfo;
+    }
 }
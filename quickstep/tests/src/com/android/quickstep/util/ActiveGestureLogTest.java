@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static android.view.MotionEvent.ACTION_DOWN;
+import static android.view.MotionEvent.ACTION_MOVE;
+
+import static com.android.launcher3.util.BenchmarkUtils.countAllocations;
+import static com.android.quickstep.GestureState.GestureEndTarget.HOME;
+import static com.android.quickstep.InputConsumer.TYPE_OTHER_ACTIVITY;
+import static com.android.quickstep.InputConsumer.TYPE_RESET_GESTURE;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_FINISH_RECENTS_ANIMATION;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_FRAME_METRICS;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_MOTION_EVENT;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_MOTION_EVENT_AT_POSITION;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_SET_END_TARGET;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_SET_INPUT_CONSUMER;
+import static com.android.quickstep.util.ActiveGestureLog.EVENT_START_QUICKSTEP;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Tests for {@link ActiveGestureLog}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ActiveGestureLogTest {
+
+    @Test
+    public void dump_formatsEventsNewestFirst() {
+        ActiveGestureLog log = new ActiveGestureLog(10);
+        int traceId = log.generateAndSetLogId();
+        log.addLog(EVENT_SET_INPUT_CONSUMER, TYPE_OTHER_ACTIVITY | TYPE_RESET_GESTURE);
+        log.addLog(EVENT_MOTION_EVENT_AT_POSITION, ACTION_DOWN, 10, -20);
+        log.addLog(EVENT_START_QUICKSTEP);
+        log.addLog(EVENT_SET_END_TARGET, HOME);
+        log.addLog(EVENT_FINISH_RECENTS_ANIMATION, true);
+        log.addLog(EVENT_FRAME_METRICS, 30, 2);
+
+        String[] lines = dump(log).split("\n");
+        assertEquals(7, lines.length);
+        assertEquals("EventLog (touch_interaction_log) history:", lines[0]);
+        assertEntry("frameMetrics: frames=30 dropped=2", traceId, lines[1]);
+        assertEntry("finishRecentsAnimation: true", traceId, lines[2]);
+        assertEntry("setEndTarget HOME", traceId, lines[3]);
+        assertEntry("startQuickstep", traceId, lines[4]);
+        assertEntry("onMotionEvent(10, -20): " + ACTION_DOWN, traceId, lines[5]);
+        assertEntry("setInputConsumer: TYPE_OTHER_ACTIVITY:TYPE_RESET_GESTURE", traceId,
+                lines[6]);
+    }
+
+    @Test
+    public void addLog_mergesDuplicateEvents() {
+        ActiveGestureLog log = new ActiveGestureLog(10);
+        log.addLog(EVENT_MOTION_EVENT, ACTION_DOWN);
+        for (int i = 0; i < 5; i++) {
+            log.addLog(EVENT_MOTION_EVENT, ACTION_MOVE);
+        }
+        log.addLog(EVENT_FINISH_RECENTS_ANIMATION, true);
+        log.addLog(EVENT_FINISH_RECENTS_ANIMATION, false);
+
+        String[] lines = dump(log).split("\n");
+        assertEquals(5, lines.length);
+        assertEntry("finishRecentsAnimation: false", 0, lines[1]);
+        assertEntry("finishRecentsAnimation: true", 0, lines[2]);
+        // The last entry keeps the latest extras, the one before counts the merged events
+        assertEntry("onMotionEvent: " + ACTION_MOVE, 0, lines[3]);
+        assertEntry("onMotionEvent: " + ACTION_DOWN + " & 4 similar events", 0, lines[4]);
+    }
+
+    @Test
+    public void addLog_overwritesOldestEvents() {
+        ActiveGestureLog log = new ActiveGestureLog(2);
+        log.addLog(EVENT_START_QUICKSTEP);
+        log.addLog(EVENT_SET_END_TARGET, HOME);
+        log.addLog(EVENT_FRAME_METRICS, 1, 0);
+
+        String[] lines = dump(log).split("\n");
+        assertEquals(3, lines.length);
+        assertEntry("frameMetrics: frames=1 dropped=0", 0, lines[1]);
+        assertEntry("setEndTarget HOME", 0, lines[2]);
+
+        log.clear();
+        assertEquals(1, dump(log).split("\n").length);
+    }
+
+    @Test
+    public void decode_restoresWrittenEvents() throws Exception {
+        ActiveGestureLog log = new ActiveGestureLog(10);
+        int traceId = log.generateAndSetLogId();
+        log.addLog(EVENT_SET_INPUT_CONSUMER, TYPE_OTHER_ACTIVITY);
+        log.addLog(EVENT_MOTION_EVENT_AT_POSITION, ACTION_DOWN, 100, 200);
+        log.addLog(EVENT_SET_END_TARGET, HOME);
+        log.addLog(EVENT_FRAME_METRICS, 12, 1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        log.writeTo(bytes);
+        // The written events must not depend on the log anymore
+        log.clear();
+        StringWriter decoded = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(decoded)) {
+            ActiveGestureLog.decode(new ByteArrayInputStream(bytes.toByteArray()), "  ", writer);
+        }
+
+        String[] lines = decoded.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("  EventLog (touch_interaction_log) history:", lines[0]);
+        for (int i = 1; i < lines.length; i++) {
+            assertTrue(lines[i].startsWith("  "));
+        }
+        assertEntry("frameMetrics: frames=12 dropped=1", traceId, lines[1]);
+        assertEntry("setEndTarget HOME", traceId, lines[2]);
+        assertEntry("onMotionEvent(100, 200): " + ACTION_DOWN, traceId, lines[3]);
+        assertEntry("setInputConsumer: TYPE_OTHER_ACTIVITY", traceId, lines[4]);
+    }
+
+    @Test
+    public void addLog_doesNotAllocate() {
+        ActiveGestureLog log = new ActiveGestureLog(10);
+        // Warm up, in case anything is initialized lazily
+        addLogs(log);
+
+        assertEquals(0, countAllocations(() -> {
+            for (int i = 0; i < 100; i++) {
+                addLogs(log);
+            }
+        }));
+    }
+
+    private static void addLogs(ActiveGestureLog log) {
+        log.addLog(EVENT_SET_INPUT_CONSUMER, TYPE_OTHER_ACTIVITY);
+        log.addLog(EVENT_MOTION_EVENT_AT_POSITION, ACTION_DOWN, 100, 200);
+        log.addLog(EVENT_MOTION_EVENT, ACTION_MOVE);
+        log.addLog(EVENT_SET_END_TARGET, HOME);
+        log.addLog(EVENT_FINISH_RECENTS_ANIMATION, true);
+    }
+
+    private static String dump(ActiveGestureLog log) {
+        StringWriter out = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(out)) {
+            log.dump("", writer);
+        }
+        return out.toString();
+    }
+
+    private static void assertEntry(String expectedEvent, int traceId, String line) {
+        String suffix = expectedEvent + " traceId: " + traceId;
+        assertTrue("Expected \"" + line + "\" to end with \"" + suffix + "\"",
+                line.endsWith(suffix));
+    }
+}
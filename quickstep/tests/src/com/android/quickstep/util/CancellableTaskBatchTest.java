@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link CancellableTaskBatch}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class CancellableTaskBatchTest {
+
+    @Test
+    public void deliversAllResultsInOneMessage() throws Exception {
+        List<String> loaded = new ArrayList<>();
+        List<String> delivered = new ArrayList<>();
+        CancellableTaskBatch<String> batch = new CancellableTaskBatch<>();
+        for (int i = 0; i < 3; i++) {
+            batch.add(new TestTask(Integer.toString(i), loaded, delivered));
+        }
+
+        // Run the background pass on the UI thread, so that no other message can be handled
+        // between the ones posted by the batch
+        MAIN_EXECUTOR.submit(() -> {
+            batch.run();
+            assertEquals(3, loaded.size());
+            assertTrue(delivered.isEmpty());
+        }).get();
+        MAIN_EXECUTOR.submit(() -> assertEquals(3, delivered.size())).get();
+    }
+
+    @Test
+    public void skipsCancelledTasks() throws Exception {
+        List<String> loaded = new ArrayList<>();
+        List<String> delivered = new ArrayList<>();
+        CancellableTaskBatch<String> batch = new CancellableTaskBatch<>();
+        TestTask cancelledBeforeLoad = new TestTask("0", loaded, delivered);
+        TestTask cancelledBeforeDelivery = new TestTask("1", loaded, delivered);
+        batch.add(cancelledBeforeLoad);
+        batch.add(cancelledBeforeDelivery);
+        batch.add(new TestTask("2", loaded, delivered));
+
+        cancelledBeforeLoad.cancel();
+        MAIN_EXECUTOR.submit(() -> {
+            batch.run();
+            cancelledBeforeDelivery.cancel();
+        }).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+
+        assertEquals(List.of("1", "2"), loaded);
+        assertEquals(List.of("2"), delivered);
+    }
+
+    private static class TestTask extends CancellableTask<String> {
+
+        private final String mResult;
+        private final List<String> mLoaded;
+        private final List<String> mDelivered;
+
+        TestTask(String result, List<String> loaded, List<String> delivered) {
+            mResult = result;
+            mLoaded = loaded;
+            mDelivered = delivered;
+        }
+
+        @Override
+        public String getResultOnBg() {
+            mLoaded.add(mResult);
+            return mResult;
+        }
+
+        @Override
+        public void handleResult(String result) {
+            mDelivered.add(result);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link ConcurrentTaskKeyLruCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentTaskKeyLruCacheTest {
+
+    private static final String TAG = "ConcurrentTaskKeyLruCacheTest";
+
+    private static final int THREAD_COUNT = 4;
+    private static final int KEY_COUNT = 64;
+    private static final int OPS_PER_THREAD = 20000;
+
+    @Test
+    public void evictsLeastRecentlyAccessed() {
+        ConcurrentTaskKeyLruCache<String> cache = new ConcurrentTaskKeyLruCache<>(2);
+        cache.put(key(1), "1");
+        cache.put(key(2), "2");
+        assertNotNull(cache.getAndInvalidateIfModified(key(1)));
+        cache.put(key(3), "3");
+
+        assertNotNull(cache.getAndInvalidateIfModified(key(1)));
+        assertNull(cache.getAndInvalidateIfModified(key(2)));
+        assertNotNull(cache.getAndInvalidateIfModified(key(3)));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void modifiedTask_invalidatesEntry() {
+        ConcurrentTaskKeyLruCache<String> cache = new ConcurrentTaskKeyLruCache<>(10);
+        cache.put(key(1), "1");
+
+        TaskKey activeAgain = new TaskKey(1, 0, new Intent(), null, 0, 100);
+        assertNull(cache.getAndInvalidateIfModified(activeAgain));
+        assertEquals(0, cache.getEntryCount());
+
+        cache.put(key(2), "2");
+        TaskKey otherMode = new TaskKey(2, 5, new Intent(), null, 0, 0);
+        assertNull(cache.getAndInvalidateIfModified(otherMode));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void sizeBased_evictsUntilWithinBudget() {
+        ConcurrentTaskKeyLruCache<String> cache =
+                new ConcurrentTaskKeyLruCache<>(10, value -> value.length());
+        cache.put(key(1), "aaaa");
+        cache.put(key(2), "bbbb");
+        cache.put(key(3), "cccccc");
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(10, cache.getSize());
+        assertNull(cache.getAndInvalidateIfModified(key(1)));
+
+        cache.trimToSize(0);
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void setMaxSize_trimsAndBoundsLaterPuts() {
+        ConcurrentTaskKeyLruCache<String> cache =
+                new ConcurrentTaskKeyLruCache<>(10, value -> value.length());
+        cache.put(key(1), "aaaa");
+        cache.put(key(2), "bbbb");
+
+        cache.setMaxSize(5);
+        assertEquals(1, cache.getEntryCount());
+        assertNotNull(cache.getAndInvalidateIfModified(key(2)));
+        cache.put(key(3), "cccc");
+        assertEquals(1, cache.getEntryCount());
+
+        cache.setMaxSize(10);
+        cache.put(key(4), "dddd");
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(8, cache.getSize());
+    }
+
+    @Test
+    public void stress_keepsAccountingConsistent() throws Exception {
+        ConcurrentTaskKeyLruCache<String> cache = new ConcurrentTaskKeyLruCache<>(16);
+        runConcurrently(cache, 0.7f);
+
+        assertTrue(cache.getEntryCount() <= 16);
+        assertEquals(cache.getEntryCount(), cache.getSize());
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String value = cache.getAndInvalidateIfModified(key(i));
+            if (value != null) {
+                assertEquals(Integer.toString(i), value);
+            }
+        }
+    }
+
+    @Test
+    public void benchmark_comparedToSynchronizedCache() throws Exception {
+        // Mostly lookups, as from the UI thread, with some writes from the background
+        long synchronizedMs = runConcurrently(new TaskKeyLruCache<>(16), 0.9f);
+        long concurrentMs = runConcurrently(new ConcurrentTaskKeyLruCache<>(16), 0.9f);
+        Log.d(TAG, "Ops: " + THREAD_COUNT * OPS_PER_THREAD + " threads: " + THREAD_COUNT
+                + " synchronizedMs: " + synchronizedMs + " concurrentMs: " + concurrentMs);
+    }
+
+    /**
+     * Runs random operations on the cache from several threads
+     *
+     * @param readFraction fraction of the operations which are lookups
+     * @return the time taken, in ms
+     */
+    private static long runConcurrently(TaskKeyCache<String> cache, float readFraction)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREAD_COUNT; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        int id = random.nextInt(KEY_COUNT);
+                        float op = random.nextFloat();
+                        if (op < readFraction) {
+                            String value = cache.getAndInvalidateIfModified(key(id));
+                            if (value != null) {
+                                assertEquals(Integer.toString(id), value);
+                            }
+                        } else if (op < readFraction + (1 - readFraction) * 0.8f) {
+                            cache.put(key(id), Integer.toString(id));
+                        } else {
+                            cache.remove(key(id));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TaskKey key(int id) {
+        return new TaskKey(id, 0, new Intent(), null, 0, 0);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link GestureFrameMetrics}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class GestureFrameMetricsTest {
+
+    @Test
+    public void histogram_percentilesUseBucketBounds() {
+        GestureFrameMetrics.Histogram histogram = new GestureFrameMetrics.Histogram("test");
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(100);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(4, histogram.getPercentile(50));
+        assertEquals(4, histogram.getPercentile(90));
+        // Capped to the largest recorded value
+        assertEquals(100, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void histogram_resetClearsValues() {
+        GestureFrameMetrics.Histogram histogram = new GestureFrameMetrics.Histogram("test");
+        histogram.record(5_000_000);
+        assertEquals(5_000_000, histogram.getPercentile(50));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void toBundle_containsAllHistograms() {
+        Bundle bundle = new GestureFrameMetrics().toBundle();
+
+        assertEquals(0, bundle.getInt(GestureFrameMetrics.KEY_GESTURE_COUNT));
+        assertEquals(0, bundle.getBundle(GestureFrameMetrics.KEY_INPUT_LATENCY).getLong("count"));
+        assertEquals(0, bundle.getBundle(GestureFrameMetrics.KEY_APPLY_TRANSFORM)
+                .getLong("count"));
+        assertEquals(0, bundle.getBundle(GestureFrameMetrics.KEY_RECENTS_ANIMATION_START)
+                .getLong("count"));
+        assertEquals(0, bundle.getBundle(GestureFrameMetrics.KEY_DROPPED_FRAMES_PER_GESTURE)
+                .getLong("count"));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.util.BenchmarkUtils.sendStatus;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.PointF;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.MotionEvent.PointerCoords;
+import android.view.MotionEvent.PointerProperties;
+import android.view.Surface;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.quickstep.SysUINavigationMode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Replays gestures through the gesture detectors used by the input consumers, and reports the
+ * cost of each event as instrumentation status, so that it can be tracked by benchmarks.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class GestureReplayTest {
+
+    private static final String TAG = "GestureReplayTest";
+
+    private static final long FRAME_MS = 8;
+
+    private final Context mContext = getInstrumentation().getTargetContext();
+
+    @Test
+    public void motionEventTrace_roundTripsEvents() {
+        PointerProperties[] properties = new PointerProperties[2];
+        PointerCoords[] coords = new PointerCoords[2];
+        for (int i = 0; i < 2; i++) {
+            properties[i] = new PointerProperties();
+            properties[i].id = i + 3;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new PointerCoords();
+            coords[i].x = 100 * (i + 1);
+            coords[i].y = 200 * (i + 1);
+        }
+        MotionEvent event = MotionEvent.obtain(1000, 1010, MotionEvent.ACTION_MOVE, 2,
+                properties, coords, 0, 0, 1f, 1f, 0, 0, 0, 0);
+        coords[0].x = 110;
+        coords[1].y = 420;
+        event.addBatch(1018, coords, 0);
+        event.offsetLocation(-50, 25);
+
+        MotionEvent copy = MotionEventTrace.fromProto(MotionEventTrace.toProto(event), 100);
+        try {
+            assertEquals(MotionEvent.ACTION_MOVE, copy.getAction());
+            assertEquals(1100, copy.getDownTime());
+            assertEquals(1118, copy.getEventTime());
+            assertEquals(2, copy.getPointerCount());
+            assertEquals(1, copy.getHistorySize());
+            assertEquals(1110, copy.getHistoricalEventTime(0));
+            for (int i = 0; i < 2; i++) {
+                assertEquals(event.getPointerId(i), copy.getPointerId(i));
+                assertEquals(event.getX(i), copy.getX(i), 0);
+                assertEquals(event.getY(i), copy.getY(i), 0);
+                assertEquals(event.getHistoricalX(i, 0), copy.getHistoricalX(i, 0), 0);
+                assertEquals(event.getHistoricalY(i, 0), copy.getHistoricalY(i, 0), 0);
+            }
+            assertEquals(event.getRawX(), copy.getRawX(), 0);
+            assertEquals(event.getRawY(), copy.getRawY(), 0);
+        } finally {
+            event.recycle();
+            copy.recycle();
+        }
+    }
+
+    @Test
+    public void replaySwipeUpAndHold_motionPauseDetector() throws Exception {
+        GestureReplayer replayer = new GestureReplayer.Builder(540, 2200, FRAME_MS)
+                .moveTo(540, 1400, 20)
+                .hold(30)
+                .up();
+
+        boolean[] paused = new boolean[1];
+        GestureReplayer.Result result = MAIN_EXECUTOR.submit(() -> {
+            // Warm up the code paths before measuring
+            MotionPauseDetector warmUp = new MotionPauseDetector(mContext);
+            replayer.replay(warmUp::addPosition);
+            warmUp.clear();
+
+            MotionPauseDetector detector = new MotionPauseDetector(mContext);
+            detector.setOnMotionPauseListener(() -> paused[0] = true);
+            GestureReplayer.Result r = replayer.replay(detector::addPosition);
+            detector.clear();
+            return r;
+        }).get();
+
+        assertTrue("Expected a pause to be detected", paused[0]);
+        report("motion_pause_detector_", result);
+    }
+
+    @Test
+    public void replaySwipeUp_triggerSwipeUpTouchTracker() throws Exception {
+        GestureReplayer replayer = new GestureReplayer.Builder(540, 2200, FRAME_MS)
+                .moveTo(540, 1600, 10)
+                .up();
+
+        boolean[] swipedUp = new boolean[1];
+        boolean[] cancelled = new boolean[1];
+        TriggerSwipeUpTouchTracker.OnSwipeUpListener listener =
+                new TriggerSwipeUpTouchTracker.OnSwipeUpListener() {
+                    @Override
+                    public void onSwipeUp(boolean wasFling, PointF finalVelocity) {
+                        swipedUp[0] = true;
+                    }
+
+                    @Override
+                    public void onSwipeUpCancelled() {
+                        cancelled[0] = true;
+                    }
+                };
+        NavBarPosition navBarPosition =
+                new NavBarPosition(SysUINavigationMode.Mode.NO_BUTTON, Surface.ROTATION_0);
+        GestureReplayer.Result result = MAIN_EXECUTOR.submit(() -> {
+            replayer.replay(new TriggerSwipeUpTouchTracker(mContext, false, navBarPosition,
+                    null, listener)::onMotionEvent);
+            swipedUp[0] = false;
+            return replayer.replay(new TriggerSwipeUpTouchTracker(mContext, false,
+                    navBarPosition, null, listener)::onMotionEvent);
+        }).get();
+
+        assertTrue("Expected a swipe up", swipedUp[0]);
+        assertFalse(cancelled[0]);
+        report("trigger_swipe_up_touch_tracker_", result);
+    }
+
+    private static void report(String prefix, GestureReplayer.Result result) {
+        StringWriter out = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(out)) {
+            result.dump(prefix, writer);
+        }
+        Log.d(TAG, out.toString());
+        sendStatus(result.toBundle(prefix));
+    }
+}
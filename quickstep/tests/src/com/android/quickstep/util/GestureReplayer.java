@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.launcher3.util.BenchmarkUtils.countAllocations;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+import com.android.launcher3.tracing.MotionEventProto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Replays a gesture through a motion event handler, such as an input consumer or a
+ * {@link MotionPauseDetector}, and measures the time spent and the allocations made while
+ * handling each event.
+ *
+ * The gesture can either be read from a winscope trace recorded on a device (see
+ * {@link MotionEventTrace}), or built with {@link Builder}. The events are always replayed in
+ * the same order, on the calling thread, and with the same relative times.
+ */
+public class GestureReplayer {
+
+    private final List<MotionEventProto> mEvents;
+
+    public GestureReplayer(List<MotionEventProto> events) {
+        mEvents = events;
+    }
+
+    /**
+     * Creates a replayer for the motion events of a trace file written by {@link ProtoTracer}
+     */
+    public static GestureReplayer fromTraceFile(InputStream in) throws IOException {
+        return new GestureReplayer(MotionEventTrace.readTrace(in));
+    }
+
+    public int getEventCount() {
+        return mEvents.size();
+    }
+
+    /**
+     * Replays all the events through {@param handler}. The times of the events are shifted so
+     * that the gesture starts now.
+     */
+    public Result replay(Consumer<MotionEvent> handler) {
+        int count = mEvents.size();
+        Result result = new Result(count);
+        long timeOffsetMs = count == 0 ? 0
+                : SystemClock.uptimeMillis() - mEvents.get(0).getDownTime();
+        for (int i = 0; i < count; i++) {
+            MotionEvent event = MotionEventTrace.fromProto(mEvents.get(i), timeOffsetMs);
+            int index = i;
+            result.mActions[i] = event.getActionMasked();
+            result.mAllocations[i] = countAllocations(() -> {
+                long startNanos = System.nanoTime();
+                handler.accept(event);
+                result.mDurationsNanos[index] = System.nanoTime() - startNanos;
+            });
+            event.recycle();
+        }
+        return result;
+    }
+
+    /**
+     * The cost of handling each event of a replayed gesture
+     */
+    public static class Result {
+
+        private final int[] mActions;
+        private final long[] mDurationsNanos;
+        private final int[] mAllocations;
+
+        private Result(int count) {
+            mActions = new int[count];
+            mDurationsNanos = new long[count];
+            mAllocations = new int[count];
+        }
+
+        public int getEventCount() {
+            return mActions.length;
+        }
+
+        public long getDurationNanos(int index) {
+            return mDurationsNanos[index];
+        }
+
+        public int getAllocations(int index) {
+            return mAllocations[index];
+        }
+
+        public long getTotalDurationNanos() {
+            return Arrays.stream(mDurationsNanos).sum();
+        }
+
+        public int getTotalAllocations() {
+            return Arrays.stream(mAllocations).sum();
+        }
+
+        /**
+         * Returns the {@param percentile} of the event durations
+         */
+        public long getDurationPercentileNanos(int percentile) {
+            if (mDurationsNanos.length == 0) {
+                return 0;
+            }
+            long[] sorted = mDurationsNanos.clone();
+            Arrays.sort(sorted);
+            int index = (sorted.length * percentile + 99) / 100 - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        /**
+         * Returns the summary of the replay with the per event values, with the keys prefixed
+         * by {@param prefix}
+         */
+        public Bundle toBundle(String prefix) {
+            Bundle bundle = new Bundle();
+            bundle.putInt(prefix + "event_count", getEventCount());
+            bundle.putLong(prefix + "total_ns", getTotalDurationNanos());
+            bundle.putLong(prefix + "p50_ns", getDurationPercentileNanos(50));
+            bundle.putLong(prefix + "p90_ns", getDurationPercentileNanos(90));
+            bundle.putLong(prefix + "max_ns", getDurationPercentileNanos(100));
+            bundle.putInt(prefix + "total_allocations", getTotalAllocations());
+            bundle.putLongArray(prefix + "event_durations_ns", mDurationsNanos);
+            bundle.putIntArray(prefix + "event_allocations", mAllocations);
+            return bundle;
+        }
+
+        public void dump(String prefix, PrintWriter writer) {
+            writer.println(prefix + "events=" + getEventCount()
+                    + " totalNs=" + getTotalDurationNanos()
+                    + " p50Ns=" + getDurationPercentileNanos(50)
+                    + " p90Ns=" + getDurationPercentileNanos(90)
+                    + " maxNs=" + getDurationPercentileNanos(100)
+                    + " allocations=" + getTotalAllocations());
+            for (int i = 0; i < mActions.length; i++) {
+                writer.println(prefix + "  #" + i
+                        + " " + MotionEvent.actionToString(mActions[i])
+                        + " durationNs=" + mDurationsNanos[i]
+                        + " allocations=" + mAllocations[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds a single pointer gesture, with one motion event per frame
+     */
+    public static class Builder {
+
+        private final ArrayList<MotionEventProto> mEvents = new ArrayList<>();
+        private final long mFrameMs;
+        private final long mDownTime;
+        private long mTime;
+        private float mX;
+        private float mY;
+
+        public Builder(float x, float y, long frameMs) {
+            mFrameMs = frameMs;
+            mDownTime = mTime = SystemClock.uptimeMillis();
+            mX = x;
+            mY = y;
+            add(MotionEvent.ACTION_DOWN);
+        }
+
+        /**
+         * Moves the pointer linearly to ({@param x}, {@param y}) over {@param frames} frames
+         */
+        public Builder moveTo(float x, float y, int frames) {
+            float startX = mX;
+            float startY = mY;
+            for (int i = 1; i <= frames; i++) {
+                mTime += mFrameMs;
+                mX = startX + (x - startX) * i / frames;
+                mY = startY + (y - startY) * i / frames;
+                add(MotionEvent.ACTION_MOVE);
+            }
+            return this;
+        }
+
+        /**
+         * Keeps the pointer in place for {@param frames} frames
+         */
+        public Builder hold(int frames) {
+            return moveTo(mX, mY, frames);
+        }
+
+        public GestureReplayer up() {
+            mTime += mFrameMs;
+            add(MotionEvent.ACTION_UP);
+            return new GestureReplayer(mEvents);
+        }
+
+        private void add(int action) {
+            MotionEvent event = MotionEvent.obtain(mDownTime, mTime, action, mX, mY, 0);
+            mEvents.add(MotionEventTrace.toProto(event));
+            event.recycle();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.Intent;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link TaskKeyLruCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TaskKeyLruCacheTest {
+
+    @Test
+    public void countBased_evictsLeastRecentlyAccessed() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(2);
+        cache.put(key(1), "1");
+        cache.put(key(2), "2");
+        assertNotNull(cache.getAndInvalidateIfModified(key(1)));
+        cache.put(key(3), "3");
+
+        assertNotNull(cache.getAndInvalidateIfModified(key(1)));
+        assertNull(cache.getAndInvalidateIfModified(key(2)));
+        assertNotNull(cache.getAndInvalidateIfModified(key(3)));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void sizeBased_evictsUntilWithinBudget() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(10, value -> value.length());
+        cache.put(key(1), "aaaa");
+        cache.put(key(2), "bbbb");
+        assertEquals(8, cache.getSize());
+
+        cache.put(key(3), "cccccc");
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(10, cache.getSize());
+        assertNull(cache.getAndInvalidateIfModified(key(1)));
+
+        // Replacing an entry updates the size
+        cache.updateIfAlreadyInCache(3, "c");
+        assertEquals(5, cache.getSize());
+    }
+
+    @Test
+    public void entryLargerThanBudget_isKept() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(4, value -> value.length());
+        cache.put(key(1), "aa");
+        cache.put(key(2), "bbbbbbbb");
+        assertEquals(1, cache.getEntryCount());
+        assertNotNull(cache.getAndInvalidateIfModified(key(2)));
+    }
+
+    @Test
+    public void trimToSize() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(100, value -> value.length());
+        cache.put(key(1), "aaaa");
+        cache.put(key(2), "bbbb");
+        cache.put(key(3), "cccc");
+
+        cache.trimToSize(5);
+        assertEquals(1, cache.getEntryCount());
+        assertNotNull(cache.getAndInvalidateIfModified(key(3)));
+
+        cache.trimToSize(0);
+        assertEquals(0, cache.getSize());
+        assertEquals(3, cache.getEvictionCount());
+    }
+
+    @Test
+    public void remove_updatesSize() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(100, value -> value.length());
+        cache.put(key(1), "aaaa");
+        cache.put(key(2), "bb");
+        cache.remove(key(1));
+        assertEquals(2, cache.getSize());
+        cache.removeAll(key -> key.id == 2);
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    private static TaskKey key(int id) {
+        return new TaskKey(id, 0, new Intent(), null, 0, 0);
+    }
+}
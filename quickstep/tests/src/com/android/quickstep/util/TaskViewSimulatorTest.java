@@ -17,6 +17,8 @@ package com.android.quickstep.util;
 
 import static android.view.Display.DEFAULT_DISPLAY;
 
+import static com.android.launcher3.util.BenchmarkUtils.countAllocations;
+
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
@@ -34,6 +36,7 @@ import androidx.test.filters.SmallTest;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.Utilities;
 import com.android.launcher3.util.DisplayController;
 import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.LauncherModelHelper;
@@ -50,6 +53,8 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.function.Consumer;
+
 @SmallTest
 @RunWith(AndroidJUnit4.class)
 public class TaskViewSimulatorTest {
@@ -106,6 +111,14 @@ public class TaskViewSimulatorTest {
                 .verifyNoTransforms();
     }
 
+    @Test
+    public void swipeFrames_doNotAllocate() {
+        new TaskMatrixVerifier()
+                .withLauncherSize(1200, 2450)
+                .withInsets(new Rect(0, 80, 0, 120))
+                .verifyNoAllocations(300);
+    }
+
     private static class TaskMatrixVerifier extends TransformParams {
 
         private Point mDisplaySize = new Point();
@@ -140,6 +153,42 @@ public class TaskViewSimulatorTest {
         }
 
         void verifyNoTransforms() {
+            runWithSimulator(tvs -> {
+                tvs.fullScreenProgress.value = 1;
+                tvs.recentsViewScale.value = tvs.getFullScreenScale();
+                tvs.apply(this);
+            });
+        }
+
+        /**
+         * Drives a simulated swipe of {@param frameCount} frames through the transform
+         * computation, and verifies that it does not allocate once the layout is computed. The
+         * surface params are built by the shared library for each frame, and are not counted.
+         */
+        void verifyNoAllocations(int frameCount) {
+            runWithSimulator(tvs -> {
+                float fullScreenScale = tvs.getFullScreenScale();
+                // Compute the layout before counting
+                Assert.assertTrue(tvs.updateTransform());
+                tvs.getCurrentCornerRadius();
+
+                int allocations = countAllocations(() -> {
+                    for (int i = 0; i < frameCount; i++) {
+                        float progress = (float) i / frameCount;
+                        tvs.fullScreenProgress.value = 1 - progress;
+                        tvs.recentsViewScale.value =
+                                Utilities.mapRange(progress, fullScreenScale, 1);
+                        tvs.taskPrimaryTranslation.value = progress * 100;
+                        tvs.recentsViewScroll.value = progress * 50;
+                        tvs.updateTransform();
+                        tvs.getCurrentCornerRadius();
+                    }
+                });
+                Assert.assertEquals(0, allocations);
+            });
+        }
+
+        private void runWithSimulator(Consumer<TaskViewSimulator> action) {
             LauncherModelHelper helper = new LauncherModelHelper();
             try {
                 helper.sandboxContext.allow(SystemUiProxy.INSTANCE);
@@ -192,9 +241,7 @@ public class TaskViewSimulatorTest {
                 }
                 tvs.setPreviewBounds(mAppBounds, mAppInsets);
 
-                tvs.fullScreenProgress.value = 1;
-                tvs.recentsViewScale.value = tvs.getFullScreenScale();
-                tvs.apply(this);
+                action.accept(tvs);
             } finally {
                 helper.destroy();
             }
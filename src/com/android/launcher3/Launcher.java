@@ -165,6 +165,7 @@ import com.android.launcher3.popup.PopupContainerWithArrow;
 import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.popup.SystemShortcut;
 import com.android.launcher3.qsb.QsbContainerView;
+import com.android.launcher3.search.SearchLatencyStats;
 import com.android.launcher3.statemanager.StateManager;
 import com.android.launcher3.statemanager.StateManager.StateHandler;
 import com.android.launcher3.statemanager.StatefulActivity;
@@ -1157,6 +1158,8 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         mDragController.cancelDrag();
         mLastTouchUpTime = -1;
         mDropTargetBar.animateToVisibility(false);
+        // Don't keep item updates pending while Launcher isn't in the foreground
+        mModelWriter.flushUpdates();
 
         if (!mDeferOverlayCallbacks) {
             mOverlayManager.onActivityPaused(this);
@@ -2083,6 +2086,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
     @Override
     public void onTrimMemory(int level) {
         super.onTrimMemory(level);
+        mIconCache.onTrimMemory(level);
         if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
             // The widget preview db can result in holding onto over
             // 3MB of memory for caching which isn't necessary.
@@ -2934,6 +2938,8 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         mStateManager.dump(prefix, writer);
         mPopupDataProvider.dump(prefix, writer);
         mDeviceProfile.dump(prefix, writer);
+        SearchLatencyStats.APPS.dump(prefix, writer);
+        SearchLatencyStats.WIDGETS.dump(prefix, writer);
 
         try {
             FileLog.flushAll(writer);
@@ -33,6 +33,8 @@ public class LauncherFiles {
 
     public static final String WIDGET_PREVIEWS_DB = "widgetpreviews.db";
     public static final String APP_ICONS_DB = "app_icons.db";
+    // Stored in the cache dir, see {@link com.android.launcher3.model.ModelSnapshot}
+    public static final String MODEL_SNAPSHOT = "model_snapshot";
 
     public static final List<String> GRID_DB_FILES = Collections.unmodifiableList(Arrays.asList(
             LAUNCHER_DB,
@@ -28,6 +28,7 @@ import android.content.pm.PackageInstaller;
 import android.content.pm.ShortcutInfo;
 import android.os.UserHandle;
 import android.text.TextUtils;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.Pair;
 
@@ -39,12 +40,14 @@ import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.AddWorkspaceItemsTask;
 import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.AppSearchIndex;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.CacheDataUpdatedTask;
 import com.android.launcher3.model.ItemInstallQueue;
 import com.android.launcher3.model.LoaderResults;
+import com.android.launcher3.model.LoaderStats;
 import com.android.launcher3.model.LoaderTask;
 import com.android.launcher3.model.ModelDelegate;
 import com.android.launcher3.model.ModelWriter;
@@ -106,6 +109,9 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
 
     private final ArrayList<Callbacks> mCallbacksList = new ArrayList<>(1);
 
+    // Writers whose updates have not been handed to the model thread yet, guarded by itself
+    private final ArraySet<ModelWriter> mPendingWriters = new ArraySet<>();
+
     // < only access in worker thread >
     private final AllAppsList mBgAllAppsList;
 
@@ -135,6 +141,15 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
                 isPrimaryInstance);
     }
 
+    /**
+     * Returns the last published search snapshot of all apps, or null if the apps are not yet
+     * loaded. Can be called on any thread.
+     */
+    @Nullable
+    public AppSearchIndex.Snapshot getAppSearchSnapshot() {
+        return mBgAllAppsList.getSearchIndex().getLastSnapshot();
+    }
+
     public ModelDelegate getModelDelegate() {
         return mModelDelegate;
     }
@@ -155,6 +170,42 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
                 hasVerticalHotseat, verifyChanges, owner);
     }
 
+    /**
+     * Called by {@param writer} when it has updates which are not handed to the model thread yet
+     */
+    public void addPendingWriter(ModelWriter writer) {
+        synchronized (mPendingWriters) {
+            mPendingWriters.add(writer);
+        }
+    }
+
+    /**
+     * Called by {@param writer} when its pending updates are handed to the model thread
+     */
+    public void removePendingWriter(ModelWriter writer) {
+        synchronized (mPendingWriters) {
+            mPendingWriters.remove(writer);
+        }
+    }
+
+    /**
+     * Hands the pending updates of all the writers to the model thread, so that they are written
+     * before any work enqueued on the model thread after this call
+     */
+    public void flushPendingWrites() {
+        ModelWriter[] writers;
+        synchronized (mPendingWriters) {
+            if (mPendingWriters.isEmpty()) {
+                return;
+            }
+            writers = mPendingWriters.toArray(new ModelWriter[mPendingWriters.size()]);
+            mPendingWriters.clear();
+        }
+        for (ModelWriter writer : writers) {
+            writer.flushUpdates();
+        }
+    }
+
     @Override
     public void onPackageChanged(String packageName, UserHandle user) {
         int op = PackageUpdatedTask.OP_UPDATE;
@@ -242,6 +293,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
      * Called when the workspace items have drastically changed
      */
     public void onWorkspaceUiChanged() {
+        flushPendingWrites();
         MODEL_EXECUTOR.execute(mModelDelegate::workspaceLoadComplete);
     }
 
@@ -366,6 +418,8 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     }
 
     private boolean startLoader(Callbacks[] newCallbacks) {
+        // Load the updates requested before
+        flushPendingWrites();
         // Enable queue before starting loader. It will get disabled in Launcher#finishBindingItems
         ItemInstallQueue.INSTANCE.get(mApp.getContext())
                 .pauseModelPush(ItemInstallQueue.FLAG_LOADER_RUNNING);
@@ -434,6 +488,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
                 startLoader();
             }
         }
+        flushPendingWrites();
         MODEL_EXECUTOR.post(() -> callback.accept(isModelLoaded() ? mBgDataModel : null));
     }
 
@@ -540,6 +595,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
      * use partial updates similar to {@link UserCache}
      */
     public void validateModelDataOnResume() {
+        flushPendingWrites();
         MODEL_EXECUTOR.getHandler().removeCallbacks(mDataValidationCheck);
         MODEL_EXECUTOR.post(mDataValidationCheck);
     }
@@ -572,6 +628,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             return;
         }
         task.init(mApp, this, mBgDataModel, mBgAllAppsList, MAIN_EXECUTOR);
+        flushPendingWrites();
         MODEL_EXECUTOR.execute(task);
     }
 
@@ -643,6 +700,9 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         }
         mModelDelegate.dump(prefix, fd, writer, args);
         mBgDataModel.dump(prefix, fd, writer, args);
+        LoaderStats.dump(prefix, writer);
+        ModelWriter.dump(prefix, writer);
+        mApp.getIconCache().dump(prefix, writer);
     }
 
     /**
@@ -60,6 +60,7 @@ import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.DbDowngradeHelper;
+import com.android.launcher3.model.ModelSnapshot;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.provider.LauncherDbUtils;
 import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
@@ -82,6 +83,7 @@ import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
@@ -93,6 +95,16 @@ public class LauncherProvider extends ContentProvider {
     private static final String DOWNGRADE_SCHEMA_FILE = "downgrade_schema.json";
     private static final long RESTORE_BACKUP_TABLE_DELAY = TimeUnit.SECONDS.toMillis(30);
 
+    // Methods in {@link #call} which do not modify the current db
+    private static final List<String> READ_ONLY_METHODS = Arrays.asList(
+            LauncherSettings.Settings.METHOD_CLEAR_EMPTY_DB_FLAG,
+            LauncherSettings.Settings.METHOD_WAS_EMPTY_DB_CREATED,
+            LauncherSettings.Settings.METHOD_NEW_ITEM_ID,
+            LauncherSettings.Settings.METHOD_NEW_SCREEN_ID,
+            LauncherSettings.Settings.METHOD_REFRESH_BACKUP_TABLE,
+            LauncherSettings.Settings.METHOD_REFRESH_HOTSEAT_RESTORE_TABLE,
+            LauncherSettings.Settings.METHOD_PREP_FOR_PREVIEW);
+
     /**
      * Represents the schema of the database. Changes in scheme need not be backwards compatible.
      * When increasing the scheme version, ensure that downgrade_schema.json is updated
@@ -226,6 +238,7 @@ public class LauncherProvider extends ContentProvider {
         final int rowId = dbInsertAndCheck(mOpenHelper, db, args.table, null, initialValues);
         if (rowId < 0) return null;
         onAddOrDeleteOp(db);
+        onDbChanged();
 
         uri = ContentUris.withAppendedId(uri, rowId);
         reloadLauncherIfExternal();
@@ -286,6 +299,7 @@ public class LauncherProvider extends ContentProvider {
             onAddOrDeleteOp(db);
             t.commit();
         }
+        onDbChanged();
 
         reloadLauncherIfExternal();
         return values.length;
@@ -313,6 +327,7 @@ public class LauncherProvider extends ContentProvider {
             }
 
             t.commit();
+            onDbChanged();
             reloadLauncherIfExternal();
             return results;
         }
@@ -332,6 +347,7 @@ public class LauncherProvider extends ContentProvider {
         int count = db.delete(args.table, args.where, args.args);
         if (count > 0) {
             onAddOrDeleteOp(db);
+            onDbChanged();
             reloadLauncherIfExternal();
         }
         return count;
@@ -345,6 +361,9 @@ public class LauncherProvider extends ContentProvider {
         addModifiedTime(values);
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         int count = db.update(args.table, values, args.where, args.args);
+        if (count > 0) {
+            onDbChanged();
+        }
         reloadLauncherIfExternal();
         return count;
     }
@@ -355,6 +374,10 @@ public class LauncherProvider extends ContentProvider {
             return null;
         }
         createDbIfNotExists();
+        if (!READ_ONLY_METHODS.contains(method)) {
+            // Conservatively assume that all other methods modify the db
+            onDbChanged();
+        }
 
         switch (method) {
             case LauncherSettings.Settings.METHOD_CLEAR_EMPTY_DB_FLAG: {
@@ -465,6 +488,10 @@ public class LauncherProvider extends ContentProvider {
         return null;
     }
 
+    private void onDbChanged() {
+        ModelSnapshot.onDbChanged(getContext());
+    }
+
     private void onAddOrDeleteOp(SQLiteDatabase db) {
         mOpenHelper.onAddOrDeleteOp(db);
     }
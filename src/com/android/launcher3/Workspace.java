@@ -2419,6 +2419,14 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
 
             manageFolderFeedback(targetCellDistance, d);
 
+            if (FeatureFlags.ENABLE_SPECULATIVE_REORDER.get()
+                    && (mDragMode == DRAG_MODE_NONE || mDragMode == DRAG_MODE_REORDER)) {
+                DragController dragController = mLauncher.getDragController();
+                mDragTargetLayout.precomputeReorder((int) mDragViewVisualCenter[0],
+                        (int) mDragViewVisualCenter[1], dragController.getDragVelocityX(),
+                        dragController.getDragVelocityY(), item.spanX, item.spanY, child);
+            }
+
             boolean nearestDropOccupied = mDragTargetLayout.isNearestDropLocationOccupied((int)
                     mDragViewVisualCenter[0], (int) mDragViewVisualCenter[1], item.spanX,
                     item.spanY, child, mTargetCell);
@@ -16,24 +16,35 @@
 package com.android.launcher3.allapps.search;
 
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.SEARCH_EXECUTOR;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 
 import androidx.annotation.AnyThread;
+import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.allapps.AllAppsGridAdapter.AdapterItem;
+import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.AppSearchIndex.Query;
+import com.android.launcher3.model.AppSearchIndex.Snapshot;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.FuzzyMatcher;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
+import com.android.launcher3.search.SearchLatencyStats;
 import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.util.IntArray;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * The default search implementation.
@@ -45,6 +56,13 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     private final LauncherAppState mAppState;
     private final Handler mResultHandler;
 
+    // Incremented for every new query, which cancels any query still in progress
+    private final AtomicInteger mQueryId = new AtomicInteger();
+
+    // Only accessed on the search executor
+    private final IncrementalAppSearch mIncrementalSearch = new IncrementalAppSearch();
+    private final FuzzyMatcher mFuzzyMatcher = new FuzzyMatcher();
+
     public DefaultAppSearchAlgorithm(Context context) {
         mAppState = LauncherAppState.getInstance(context);
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
@@ -53,21 +71,80 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     @Override
     public void cancel(boolean interruptActiveRequests) {
         if (interruptActiveRequests) {
+            mQueryId.incrementAndGet();
             mResultHandler.removeCallbacksAndMessages(null);
         }
     }
 
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
+        final int queryId = mQueryId.incrementAndGet();
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        Snapshot snapshot = mAppState.getModel().getAppSearchSnapshot();
+        if (snapshot != null) {
+            SEARCH_EXECUTOR.execute(
+                    () -> searchSnapshot(snapshot, query, queryId, startTime, callback));
+            return;
+        }
+
+        // Apps have not been published yet, create the snapshot on the model thread
         mAppState.getModel().enqueueModelUpdateTask(new BaseModelUpdateTask() {
             @Override
             public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList apps) {
-                ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query);
-                mResultHandler.post(() -> callback.onSearchResult(query, result));
+                Snapshot snapshot = apps.getSearchIndex().getSnapshot();
+                SEARCH_EXECUTOR.execute(
+                        () -> searchSnapshot(snapshot, query, queryId, startTime, callback));
             }
         });
     }
 
+    @WorkerThread
+    private void searchSnapshot(Snapshot snapshot, String query, int queryId, long startTime,
+            SearchCallback<AdapterItem> callback) {
+        BooleanSupplier isCancelled = () -> mQueryId.get() != queryId;
+        ArrayList<AppInfo> matches = new ArrayList<>(MAX_RESULTS_COUNT);
+        if (isCancelled.getAsBoolean() || !search(snapshot, query, isCancelled, matches)) {
+            SearchLatencyStats.APPS.onQueryCancelled();
+            return;
+        }
+        ArrayList<AdapterItem> result = toAdapterItems(matches);
+        mResultHandler.post(() -> {
+            if (isCancelled.getAsBoolean()) {
+                SearchLatencyStats.APPS.onQueryCancelled();
+                return;
+            }
+            SearchLatencyStats.APPS.onQueryCompleted(
+                    SystemClock.elapsedRealtimeNanos() - startTime);
+            callback.onSearchResult(query, result);
+        });
+    }
+
+    @WorkerThread
+    private boolean search(Snapshot snapshot, String query, BooleanSupplier isCancelled,
+            ArrayList<AppInfo> out) {
+        if (!FeatureFlags.ENABLE_FUZZY_SEARCH.get()) {
+            return mIncrementalSearch.search(
+                    snapshot, query, MAX_RESULTS_COUNT, isCancelled, out);
+        }
+        // Ranked results can't be refined incrementally as typo tolerance depends on the query
+        // length, so always score the full snapshot.
+        IntArray positions = new IntArray(MAX_RESULTS_COUNT);
+        if (!snapshot.rank(new Query(query), mFuzzyMatcher, isCancelled, MAX_RESULTS_COUNT,
+                positions)) {
+            return false;
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            out.add(snapshot.getApp(positions.get(i)));
+        }
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        mQueryId.incrementAndGet();
+        SEARCH_EXECUTOR.execute(mIncrementalSearch::reset);
+    }
+
     /**
      * Filters {@link AppInfo}s matching specified query
      */
@@ -92,4 +169,12 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         }
         return result;
     }
+
+    private static ArrayList<AdapterItem> toAdapterItems(List<AppInfo> apps) {
+        final ArrayList<AdapterItem> result = new ArrayList<>(apps.size());
+        for (int i = 0; i < apps.size(); i++) {
+            result.add(AdapterItem.asApp(i, "", apps.get(i), i));
+        }
+        return result;
+    }
 }
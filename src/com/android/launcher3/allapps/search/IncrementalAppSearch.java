@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.AppSearchIndex;
+import com.android.launcher3.model.AppSearchIndex.Query;
+import com.android.launcher3.model.AppSearchIndex.Snapshot;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.util.IntArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Performs app title search over an {@link AppSearchIndex} snapshot, reusing the results of
+ * previous queries in the same typing session:
+ *   1) When the new query extends the last one, only the apps matching the last query are
+ *      checked.
+ *   2) When the new query is an earlier query (eg, backspace), the cached result is returned.
+ * The results are always the same as a full search over the index.
+ */
+public class IncrementalAppSearch {
+
+    private static final BooleanSupplier NEVER_CANCELLED = () -> false;
+
+    private final ArrayList<Step> mSteps = new ArrayList<>();
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+
+    private Snapshot mSnapshot;
+
+    /**
+     * Adds up to {@param maxResults} apps matching the {@param query} to {@param out}
+     */
+    @WorkerThread
+    public void search(Snapshot snapshot, String query, int maxResults, List<AppInfo> out) {
+        search(snapshot, query, maxResults, NEVER_CANCELLED, out);
+    }
+
+    /**
+     * Adds up to {@param maxResults} apps matching the {@param query} to {@param out}.
+     *
+     * @param isCancelled polled periodically during the search to abort early
+     * @return false if the search was cancelled, in which case {@param out} is not modified
+     */
+    @WorkerThread
+    public boolean search(Snapshot snapshot, String query, int maxResults,
+            BooleanSupplier isCancelled, List<AppInfo> out) {
+        IntArray matches = getMatches(snapshot, new Query(query), isCancelled);
+        if (matches == null) {
+            return false;
+        }
+        int count = Math.min(maxResults, matches.size());
+        for (int i = 0; i < count; i++) {
+            out.add(snapshot.getApp(matches.get(i)));
+        }
+        return true;
+    }
+
+    private IntArray getMatches(Snapshot snapshot, Query query, BooleanSupplier isCancelled) {
+        if (mSnapshot != snapshot) {
+            // Positions are only valid within the same snapshot
+            mSteps.clear();
+            mSnapshot = snapshot;
+        }
+
+        // Drop all the cached steps which are not a prefix of the current query
+        while (!mSteps.isEmpty()) {
+            Step last = mSteps.get(mSteps.size() - 1);
+            if (last.query.text.equals(query.text)) {
+                return last.matches;
+            }
+            if (query.refines(last.query)) {
+                break;
+            }
+            mSteps.remove(mSteps.size() - 1);
+        }
+
+        IntArray matches = new IntArray();
+        boolean completed = mSteps.isEmpty()
+                ? snapshot.searchAll(query, mMatcher, isCancelled, matches)
+                : snapshot.filter(query, mMatcher, isCancelled,
+                        mSteps.get(mSteps.size() - 1).matches, matches);
+        if (!completed) {
+            return null;
+        }
+        mSteps.add(new Step(query, matches));
+        return matches;
+    }
+
+    /**
+     * Clears all the cached results
+     */
+    public void reset() {
+        mSteps.clear();
+        mSnapshot = null;
+    }
+
+    private static class Step {
+
+        final Query query;
+        final IntArray matches;
+
+        Step(Query query, IntArray matches) {
+            this.query = query;
+            this.matches = matches;
+        }
+    }
+}
@@ -92,6 +92,10 @@ public final class FeatureFlags {
     public static final BooleanFlag ENABLE_DEVICE_SEARCH = new DeviceFlag(
             "ENABLE_DEVICE_SEARCH", true, "Allows on device search in all apps");
 
+    public static final BooleanFlag ENABLE_FUZZY_SEARCH = getDebugFlag(
+            "ENABLE_FUZZY_SEARCH", false,
+            "Ranks app and widget search results, including acronym and typo matches");
+
     public static final BooleanFlag ENABLE_TWOLINE_ALLAPPS = getDebugFlag(
             "ENABLE_TWOLINE_ALLAPPS", false, "Enables two line label inside all apps.");
 
@@ -140,6 +144,24 @@ public final class FeatureFlags {
             false,
             "Enable loading all apps icons in bulk.");
 
+    public static final BooleanFlag ENABLE_PARALLEL_LOADER = getDebugFlag(
+            "ENABLE_PARALLEL_LOADER", true,
+            "Query apps, deep shortcuts and widgets in parallel with loading the workspace");
+
+    public static final BooleanFlag ENABLE_MODEL_SNAPSHOT = getDebugFlag(
+            "ENABLE_MODEL_SNAPSHOT", false,
+            "Bind the first screen from a snapshot of the last load on process start");
+
+    public static final BooleanFlag ENABLE_MODEL_WRITE_COALESCING = getDebugFlag(
+            "ENABLE_MODEL_WRITE_COALESCING", true,
+            "Write the item updates of a main thread task in a single transaction, merging the "
+            + "updates of the same item");
+
+    public static final BooleanFlag ENABLE_MODEL_WRITE_STACK_TRACES = getDebugFlag(
+            "ENABLE_MODEL_WRITE_STACK_TRACES", false,
+            "Capture the stack of every item write, to report where inconsistent writes come "
+            + "from");
+
     // Keep as DeviceFlag for remote disable in emergency.
     public static final BooleanFlag ENABLE_OVERVIEW_SELECTIONS = new DeviceFlag(
             "ENABLE_OVERVIEW_SELECTIONS", true, "Show Select Mode button in Overview Actions");
@@ -204,6 +226,24 @@ public final class FeatureFlags {
             "ENABLE_OVERVIEW_GRID", true, "Uses grid overview layout. "
             + "Only applicable on large screen devices.");
 
+    public static final BooleanFlag ENABLE_OVERVIEW_THUMBNAIL_PREFETCH = getDebugFlag(
+            "ENABLE_OVERVIEW_THUMBNAIL_PREFETCH", true,
+            "Prefetch the thumbnails of the tasks a fling in overview is heading to");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_RECENTS_UPDATE = getDebugFlag(
+            "ENABLE_INCREMENTAL_RECENTS_UPDATE", true,
+            "Add, remove, move and rebind only the changed task views when the recent tasks "
+            + "change, instead of rebuilding all of them");
+
+    public static final BooleanFlag ENABLE_TASK_ICON_DISK_CACHE = getDebugFlag(
+            "ENABLE_TASK_ICON_DISK_CACHE", true,
+            "Store the rendered task icons on disk, so that they are not rendered again after a "
+            + "restart");
+
+    public static final BooleanFlag ENABLE_SPECULATIVE_REORDER = getDebugFlag(
+            "ENABLE_SPECULATIVE_REORDER", true,
+            "Precompute in the background the reorder of the cells where an item is dragged");
+
     public static final BooleanFlag ENABLE_TWO_PANEL_HOME = getDebugFlag(
             "ENABLE_TWO_PANEL_HOME", true,
             "Uses two panel on home screen. Only applicable on large screen devices.");
@@ -22,6 +22,7 @@ import android.content.ComponentName;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.DragEvent;
 import android.view.KeyEvent;
@@ -90,6 +91,13 @@ public abstract class DragController<T extends ActivityContext>
     private int mLastTouchClassification;
     protected int mDistanceSinceScroll = 0;
 
+    // The velocity of the drag in pixels per second, smoothed over the recent move events
+    private float mVelocityX;
+    private float mVelocityY;
+    private int mLastMoveX;
+    private int mLastMoveY;
+    private long mLastMoveTime;
+
     protected boolean mIsInPreDrag;
 
     /**
@@ -332,6 +340,8 @@ public abstract class DragController<T extends ActivityContext>
         }
         mIsInPreDrag = false;
         mOptions = null;
+        mVelocityX = mVelocityY = 0;
+        mLastMoveTime = 0;
         for (DragListener listener : new ArrayList<>(mListeners)) {
             listener.onDragEnd();
         }
@@ -442,6 +452,7 @@ public abstract class DragController<T extends ActivityContext>
 
     protected void handleMoveEvent(int x, int y) {
         mDragObject.dragView.move(x, y);
+        updateVelocity(x, y);
 
         // Drop on someone?
         final int[] coordinates = mCoordinatesTemp;
@@ -468,6 +479,37 @@ public abstract class DragController<T extends ActivityContext>
         return mDistanceSinceScroll;
     }
 
+    /**
+     * Returns the horizontal velocity of the drag, in pixels per second
+     */
+    public float getDragVelocityX() {
+        return mVelocityX;
+    }
+
+    /**
+     * Returns the vertical velocity of the drag, in pixels per second
+     */
+    public float getDragVelocityY() {
+        return mVelocityY;
+    }
+
+    private void updateVelocity(int x, int y) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mLastMoveTime;
+        if (mLastMoveTime == 0) {
+            mVelocityX = mVelocityY = 0;
+        } else if (elapsed > 0) {
+            // Average with the previous velocity, as the move events are noisy
+            mVelocityX = (mVelocityX + (x - mLastMoveX) * 1000f / elapsed) / 2;
+            mVelocityY = (mVelocityY + (y - mLastMoveY) * 1000f / elapsed) / 2;
+        } else {
+            return;
+        }
+        mLastMoveX = x;
+        mLastMoveY = y;
+        mLastMoveTime = now;
+    }
+
     public void forceTouchMove() {
         int[] placeholderCoordinates = mCoordinatesTemp;
         DropTarget dropTarget = findDropTarget(mLastTouch.x, mLastTouch.y, placeholderCoordinates);
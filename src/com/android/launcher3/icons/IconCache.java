@@ -22,6 +22,7 @@ import static com.android.launcher3.widget.WidgetSections.NO_CATEGORY;
 
 import static java.util.stream.Collectors.groupingBy;
 
+import android.app.ActivityManager;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
@@ -47,6 +48,7 @@ import androidx.annotation.NonNull;
 
 import com.android.launcher3.InvariantDeviceProfile;
 import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.R;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.icons.ComponentWithLabel.ComponentCachingLogic;
@@ -60,16 +62,21 @@ import com.android.launcher3.model.data.PackageItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
+import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.InstantAppResolver;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.widget.WidgetSections;
 import com.android.launcher3.widget.WidgetSections.WidgetSection;
 
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -95,6 +102,19 @@ public class IconCache extends BaseIconCache {
 
     private int mPendingIconRequestCount = 0;
 
+    // Lock free copy of the resolved entries of the memory cache, so that cache hits do not wait
+    // on the cache lock, which is held during db reads and icon loading. Entries are only added
+    // or removed while holding the lock.
+    private final IconMemoryCache mMemoryCache;
+    private final Map<PackageUserKey, IconMemoryCache.Entry> mResolvedPackageEntries =
+            new ConcurrentHashMap<>();
+
+    // Number of lookups served from the resolved entries, and number of lookups which went to
+    // the underlying cache under the lock, where they are served from its memory cache, the icon
+    // db or the package manager
+    private final AtomicInteger mMemoryHitCount = new AtomicInteger();
+    private final AtomicInteger mLockedLookupCount = new AtomicInteger();
+
     public IconCache(Context context, InvariantDeviceProfile idp) {
         this(context, idp, LauncherFiles.APP_ICONS_DB, new IconProvider(context));
     }
@@ -110,6 +130,19 @@ public class IconCache extends BaseIconCache {
         mUserManager = UserCache.INSTANCE.get(mContext);
         mInstantAppResolver = InstantAppResolver.newInstance(mContext);
         mIconProvider = iconProvider;
+        mMemoryCache = new IconMemoryCache(getDefaultMemoryBudget(context), this::releaseLocked);
+    }
+
+    /**
+     * Returns the budget for the high-res bitmaps held in memory, as the configured percent of
+     * the heap available to the app
+     */
+    private static long getDefaultMemoryBudget(Context context) {
+        ActivityManager am = context.getSystemService(ActivityManager.class);
+        long heapBytes = am.getMemoryClass() * 1024L * 1024L;
+        int percent = context.getResources().getInteger(
+                R.integer.config_iconMemoryCacheHeapPercent);
+        return heapBytes * percent / (am.isLowRamDevice() ? 200 : 100);
     }
 
     @Override
@@ -145,6 +178,63 @@ public class IconCache extends BaseIconCache {
         }
     }
 
+    @Override
+    public synchronized void removeIconsForPkg(String packageName, UserHandle user) {
+        super.removeIconsForPkg(packageName, user);
+        clearResolvedEntries(packageName, user);
+    }
+
+    @Override
+    public synchronized <T> void addIconToDBAndMemCache(T object, CachingLogic<T> cachingLogic,
+            PackageInfo info, long userSerial, boolean replaceExisting) {
+        super.addIconToDBAndMemCache(object, cachingLogic, info, userSerial, replaceExisting);
+        mMemoryCache.removeLocked(new ComponentKey(
+                cachingLogic.getComponent(object), cachingLogic.getUser(object)));
+    }
+
+    @Override
+    public synchronized void remove(ComponentName componentName, UserHandle user) {
+        super.remove(componentName, user);
+        mMemoryCache.removeLocked(new ComponentKey(componentName, user));
+    }
+
+    /**
+     * Releases the high-res entry demoted by {@link #mMemoryCache} from the underlying cache
+     */
+    private void releaseLocked(ComponentKey key) {
+        super.remove(key.componentName, key.user);
+    }
+
+    @Override
+    public void updateIconParams(int iconDpi, int iconPixelSize) {
+        mMemoryCache.invalidateAll();
+        mResolvedPackageEntries.clear();
+        super.updateIconParams(iconDpi, iconPixelSize);
+        // The underlying cache is cleared on the worker thread, clear any entry resolved until then
+        mWorkerHandler.post(() -> {
+            synchronized (IconCache.this) {
+                mMemoryCache.clearLocked();
+                mResolvedPackageEntries.clear();
+            }
+        });
+    }
+
+    /**
+     * Demotes the icons held in memory according to the memory trim {@param level}
+     */
+    public void onTrimMemory(int level) {
+        mWorkerHandler.post(() -> {
+            synchronized (IconCache.this) {
+                mMemoryCache.trimMemoryLocked(level);
+            }
+        });
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        mMemoryCache.dump(prefix, writer);
+        writer.println(prefix + "  packageEntries=" + mResolvedPackageEntries.size());
+    }
+
     /**
      * Closes the cache DB. This will clear any in-memory cache.
      */
@@ -153,6 +243,10 @@ public class IconCache extends BaseIconCache {
         getUpdateHandler();
 
         mIconDb.close();
+        synchronized (this) {
+            mMemoryCache.clearLocked();
+            mResolvedPackageEntries.clear();
+        }
     }
 
     /**
@@ -206,7 +300,7 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param info} with the icon and label for {@param activityInfo}
      */
-    public synchronized void getTitleAndIcon(ItemInfoWithIcon info,
+    public void getTitleAndIcon(ItemInfoWithIcon info,
             LauncherActivityInfo activityInfo, boolean useLowResIcon) {
         // If we already have activity info, no need to use package icon
         getTitleAndIcon(info, () -> activityInfo, false, useLowResIcon);
@@ -288,7 +382,7 @@ public class IconCache extends BaseIconCache {
      * Fill in {@param info} with the icon and label. If the
      * corresponding activity is not found, it reverts to the package icon.
      */
-    public synchronized void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
+    public void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
         // null info means not installed, but if we have a component from the intent then
         // we should still look in the cache for restored app icons.
         if (info.getTargetComponent() == null) {
@@ -312,14 +406,25 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param mWorkspaceItemInfo} with the icon and label for {@param info}
      */
-    public synchronized void getTitleAndIcon(
+    public void getTitleAndIcon(
             @NonNull ItemInfoWithIcon infoInOut,
             @NonNull Supplier<LauncherActivityInfo> activityInfoProvider,
             boolean usePkgIcon, boolean useLowResIcon) {
-        CacheEntry entry = cacheLocked(infoInOut.getTargetComponent(), infoInOut.user,
-                activityInfoProvider, mLauncherActivityInfoCachingLogic, usePkgIcon,
-                useLowResIcon);
-        applyCacheEntry(entry, infoInOut);
+        ComponentName cn = infoInOut.getTargetComponent();
+        IconMemoryCache.Entry resolved = cn == null ? null
+                : mMemoryCache.get(new ComponentKey(cn, infoInOut.user), useLowResIcon);
+        if (resolved != null) {
+            mMemoryHitCount.incrementAndGet();
+            resolved.applyTo(infoInOut);
+            return;
+        }
+        mLockedLookupCount.incrementAndGet();
+        synchronized (this) {
+            CacheEntry entry = cacheLocked(cn, infoInOut.user, activityInfoProvider,
+                    mLauncherActivityInfoCachingLogic, usePkgIcon, useLowResIcon);
+            applyCacheEntry(entry, infoInOut);
+            addResolvedEntryLocked(cn, infoInOut.user, entry);
+        }
     }
 
     /**
@@ -353,7 +458,30 @@ public class IconCache extends BaseIconCache {
     /**
      * Load and fill icons requested in iconRequestInfos using a single bulk sql query.
      */
-    public synchronized <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulk(
+    public <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulk(
+            List<IconRequestInfo<T>> iconRequestInfos) {
+        // Apply the resolved entries without the lock, and only query the db for the rest
+        List<IconRequestInfo<T>> pendingRequests = new ArrayList<>(iconRequestInfos.size());
+        for (IconRequestInfo<T> request : iconRequestInfos) {
+            ComponentName cn = request.itemInfo.getTargetComponent();
+            IconMemoryCache.Entry resolved = cn == null ? null : mMemoryCache.get(
+                    new ComponentKey(cn, request.itemInfo.user), request.useLowResIcon);
+            if (resolved != null) {
+                resolved.applyTo(request.itemInfo);
+            } else {
+                pendingRequests.add(request);
+            }
+        }
+        mMemoryHitCount.addAndGet(iconRequestInfos.size() - pendingRequests.size());
+        if (!pendingRequests.isEmpty()) {
+            mLockedLookupCount.addAndGet(pendingRequests.size());
+            synchronized (this) {
+                getTitlesAndIconsInBulkLocked(pendingRequests);
+            }
+        }
+    }
+
+    private <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulkLocked(
             List<IconRequestInfo<T>> iconRequestInfos) {
         Map<Pair<UserHandle, Boolean>, List<IconRequestInfo<T>>> iconLoadSubsectionsMap =
                 iconRequestInfos.stream()
@@ -392,6 +520,7 @@ public class IconCache extends BaseIconCache {
                         for (IconRequestInfo<T> iconRequest : duplicateIconRequests) {
                             applyCacheEntry(entry, iconRequest.itemInfo);
                         }
+                        addResolvedEntryLocked(cn, sectionKey.first, entry);
                     }
                 }
             } catch (SQLiteException e) {
@@ -407,11 +536,25 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param infoInOut} with the corresponding icon and label.
      */
-    public synchronized void getTitleAndIconForApp(
+    public void getTitleAndIconForApp(
             PackageItemInfo infoInOut, boolean useLowResIcon) {
-        CacheEntry entry = getEntryForPackageLocked(
-                infoInOut.packageName, infoInOut.user, useLowResIcon);
-        applyCacheEntry(entry, infoInOut);
+        PackageUserKey key = new PackageUserKey(infoInOut.packageName, infoInOut.user);
+        IconMemoryCache.Entry resolved = mResolvedPackageEntries.get(key);
+        if (resolved != null) {
+            mMemoryHitCount.incrementAndGet();
+            resolved.applyTo(infoInOut);
+        } else {
+            mLockedLookupCount.incrementAndGet();
+            synchronized (this) {
+                CacheEntry entry = getEntryForPackageLocked(
+                        infoInOut.packageName, infoInOut.user, useLowResIcon);
+                applyCacheEntry(entry, infoInOut);
+                if (entry.bitmap != null && !entry.bitmap.isNullOrLowRes()
+                        && !isDefaultIcon(entry.bitmap, infoInOut.user)) {
+                    mResolvedPackageEntries.put(key, new IconMemoryCache.Entry(entry));
+                }
+            }
+        }
         if (infoInOut.widgetCategory != NO_CATEGORY) {
             WidgetSection widgetSection = WidgetSections.getWidgetSections(mContext)
                     .get(infoInOut.widgetCategory);
@@ -421,6 +564,22 @@ public class IconCache extends BaseIconCache {
         }
     }
 
+    /**
+     * Returns the number of title and icon lookups served from the resolved entries, without
+     * taking the cache lock, since the cache was created
+     */
+    public int getMemoryHitCount() {
+        return mMemoryHitCount.get();
+    }
+
+    /**
+     * Returns the number of title and icon lookups which were not resolved in memory, and went
+     * to the underlying cache, since the cache was created
+     */
+    public int getLockedLookupCount() {
+        return mLockedLookupCount.get();
+    }
+
     protected void applyCacheEntry(CacheEntry entry, ItemInfoWithIcon info) {
         info.title = Utilities.trim(entry.title);
         info.contentDescription = entry.contentDescription;
@@ -431,9 +590,30 @@ public class IconCache extends BaseIconCache {
         return mIconProvider.getIcon(info, mIconDpi);
     }
 
-    public void updateSessionCache(PackageUserKey key, PackageInstaller.SessionInfo info) {
+    public synchronized void updateSessionCache(PackageUserKey key,
+            PackageInstaller.SessionInfo info) {
         cachePackageInstallInfo(key.mPackageName, key.mUser, info.getAppIcon(),
                 info.getAppLabel());
+        clearResolvedEntries(key.mPackageName, key.mUser);
+    }
+
+    /**
+     * Makes {@param entry} available to lock free lookups, if it is a low-res entry or a final
+     * high-res entry. Must be called while holding the cache lock.
+     */
+    private void addResolvedEntryLocked(ComponentName cn, UserHandle user, CacheEntry entry) {
+        if (cn == null || entry.bitmap == null) {
+            return;
+        }
+        if (entry.bitmap.isLowRes()
+                || (!entry.bitmap.isNullOrLowRes() && !isDefaultIcon(entry.bitmap, user))) {
+            mMemoryCache.putLocked(new ComponentKey(cn, user), entry);
+        }
+    }
+
+    private void clearResolvedEntries(String packageName, UserHandle user) {
+        mMemoryCache.removePackageLocked(packageName, user);
+        mResolvedPackageEntries.remove(new PackageUserKey(packageName, user));
     }
 
     @Override
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+
+import android.os.UserHandle;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.Utilities;
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
+import com.android.launcher3.util.ComponentKey;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Size aware memory tier of {@link IconCache}, holding immutable copies of the resolved cache
+ * entries. Lookups are lock free, while all the modifications must be made holding the lock
+ * of the icon cache.
+ *
+ * When the high-res bitmaps exceed the memory budget, the least recently used entries are
+ * demoted to low-res: the bitmap is dropped, but the title and color are kept so that low-res
+ * lookups are still served from memory.
+ */
+public class IconMemoryCache {
+
+    // Fraction of the budget to trim to when the budget is exceeded, so that adding an entry to
+    // a full cache does not trim it every time
+    private static final float TRIM_TARGET_FRACTION = 0.9f;
+
+    private final Map<ComponentKey, Entry> mEntries = new ConcurrentHashMap<>();
+    private final Consumer<ComponentKey> mOnDemoted;
+
+    private final AtomicLong mAccessCounter = new AtomicLong();
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private final long mBudgetBytes;
+
+    // Guarded by the icon cache lock, volatile so that it can be dumped from any thread
+    private volatile long mResidentBytes;
+    private volatile int mDemotions;
+
+    /**
+     * @param onDemoted called when the high-res bitmap of an entry is dropped, so that it can
+     *                  also be released from the underlying cache
+     */
+    public IconMemoryCache(long budgetBytes, Consumer<ComponentKey> onDemoted) {
+        mBudgetBytes = budgetBytes;
+        mOnDemoted = onDemoted;
+    }
+
+    /**
+     * Returns the entry for {@param key}, or null if it is not cached with the requested
+     * resolution. A high-res entry is returned for low-res lookups.
+     */
+    @Nullable
+    public Entry get(ComponentKey key, boolean useLowResIcon) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || (entry.isLowRes() && !useLowResIcon)) {
+            mMisses.incrementAndGet();
+            return null;
+        }
+        mHits.incrementAndGet();
+        entry.lastAccess = mAccessCounter.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Adds {@param cacheEntry} to the cache, demoting other entries if the budget is exceeded.
+     * A low-res entry never replaces a high-res entry.
+     */
+    public void putLocked(ComponentKey key, CacheEntry cacheEntry) {
+        Entry entry = new Entry(cacheEntry);
+        Entry existing = mEntries.get(key);
+        if (existing != null) {
+            if (entry.isLowRes() && !existing.isLowRes()) {
+                return;
+            }
+            mResidentBytes -= existing.bytes;
+        }
+        entry.lastAccess = mAccessCounter.incrementAndGet();
+        mEntries.put(key, entry);
+        mResidentBytes += entry.bytes;
+        if (mResidentBytes > mBudgetBytes) {
+            trimToSizeLocked((long) (mBudgetBytes * TRIM_TARGET_FRACTION));
+        }
+    }
+
+    public void removeLocked(ComponentKey key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mResidentBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Removes all the entries of {@param packageName} for {@param user}
+     */
+    public void removePackageLocked(String packageName, UserHandle user) {
+        for (ComponentKey key : new ArrayList<>(mEntries.keySet())) {
+            if (key.user.equals(user)
+                    && key.componentName.getPackageName().equals(packageName)) {
+                removeLocked(key);
+            }
+        }
+    }
+
+    public void clearLocked() {
+        mEntries.clear();
+        mResidentBytes = 0;
+    }
+
+    /**
+     * Drops all the entries without holding the icon cache lock, so that lookups stop returning
+     * them right away. Must be followed by {@link #clearLocked()}, which resets the resident size.
+     */
+    public void invalidateAll() {
+        mEntries.clear();
+    }
+
+    /**
+     * Demotes entries according to the memory trim {@param level}, as defined by
+     * {@link android.content.ComponentCallbacks2}
+     */
+    public void trimMemoryLocked(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSizeLocked(0);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            trimToSizeLocked(mBudgetBytes / 2);
+        }
+    }
+
+    /**
+     * Demotes the least recently used high-res entries until the resident size is at most
+     * {@param targetBytes}
+     */
+    private void trimToSizeLocked(long targetBytes) {
+        ArrayList<Map.Entry<ComponentKey, Entry>> highRes = new ArrayList<>();
+        for (Map.Entry<ComponentKey, Entry> e : mEntries.entrySet()) {
+            if (!e.getValue().isLowRes()) {
+                highRes.add(e);
+            }
+        }
+        highRes.sort((a, b) -> Long.compare(a.getValue().lastAccess, b.getValue().lastAccess));
+
+        for (int i = 0; i < highRes.size() && mResidentBytes > targetBytes; i++) {
+            ComponentKey key = highRes.get(i).getKey();
+            Entry entry = highRes.get(i).getValue();
+            Entry lowRes = entry.demote();
+            mEntries.put(key, lowRes);
+            mResidentBytes -= entry.bytes;
+            mDemotions++;
+            mOnDemoted.accept(key);
+        }
+    }
+
+    public long getResidentBytes() {
+        return mResidentBytes;
+    }
+
+    /**
+     * Returns the fraction of lookups served from memory, or 0 if there were no lookups
+     */
+    public float getHitRate() {
+        long hits = mHits.get();
+        long total = hits + mMisses.get();
+        return total == 0 ? 0 : (float) hits / total;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        int highRes = 0;
+        for (Entry entry : mEntries.values()) {
+            if (!entry.isLowRes()) {
+                highRes++;
+            }
+        }
+        writer.println(prefix + "IconMemoryCache:"
+                + " entries=" + mEntries.size()
+                + " highRes=" + highRes
+                + " residentKb=" + mResidentBytes / 1024
+                + " budgetKb=" + mBudgetBytes / 1024
+                + " hits=" + mHits.get()
+                + " misses=" + mMisses.get()
+                + " hitRate=" + getHitRate()
+                + " demotions=" + mDemotions);
+    }
+
+    /**
+     * Immutable copy of a {@link CacheEntry}, as the entries of the underlying cache can be
+     * modified in place while holding its lock.
+     */
+    public static class Entry {
+
+        final CharSequence title;
+        final CharSequence contentDescription;
+        final BitmapInfo bitmap;
+        final int bytes;
+
+        // Value of the access counter at the last lookup, used for LRU demotion
+        volatile long lastAccess;
+
+        Entry(CacheEntry entry) {
+            this(Utilities.trim(entry.title), entry.contentDescription, entry.bitmap);
+        }
+
+        private Entry(CharSequence title, CharSequence contentDescription, BitmapInfo bitmap) {
+            this.title = title;
+            this.contentDescription = contentDescription;
+            this.bitmap = bitmap;
+            bytes = bitmap.isNullOrLowRes() ? 0 : bitmap.icon.getAllocationByteCount();
+        }
+
+        boolean isLowRes() {
+            return bitmap.isNullOrLowRes();
+        }
+
+        Entry demote() {
+            Entry entry = new Entry(title, contentDescription,
+                    BitmapInfo.of(BitmapInfo.LOW_RES_ICON, bitmap.color));
+            entry.lastAccess = lastAccess;
+            return entry;
+        }
+
+        /** Same as {@link IconCache#applyCacheEntry(CacheEntry, ItemInfoWithIcon)} */
+        public void applyTo(ItemInfoWithIcon info) {
+            info.title = title;
+            info.contentDescription = contentDescription;
+            info.bitmap = bitmap;
+        }
+    }
+}
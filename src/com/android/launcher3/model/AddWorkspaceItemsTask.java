@@ -39,7 +39,7 @@ import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.pm.PackageInstallInfo;
-import com.android.launcher3.util.GridOccupancy;
+import com.android.launcher3.util.BitGridOccupancy;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.PackageManagerHelper;
@@ -335,7 +335,7 @@ public class AddWorkspaceItemsTask extends BaseModelUpdateTask {
             int[] xy, int spanX, int spanY) {
         InvariantDeviceProfile profile = app.getInvariantDeviceProfile();
 
-        GridOccupancy occupied = new GridOccupancy(profile.numColumns, profile.numRows);
+        BitGridOccupancy occupied = new BitGridOccupancy(profile.numColumns, profile.numRows);
         if (occupiedPos != null) {
             for (ItemInfo r : occupiedPos) {
                 occupied.markCells(r, true);
@@ -71,6 +71,8 @@ public class AllAppsList {
 
     private AlphabeticIndexCompat mIndex;
 
+    private final AppSearchIndex mSearchIndex = new AppSearchIndex();
+
     /**
      * @see Callbacks#FLAG_HAS_SHORTCUT_PERMISSION
      * @see Callbacks#FLAG_QUIET_MODE_ENABLED
@@ -146,6 +148,7 @@ public class AllAppsList {
         }
 
         data.add(info);
+        mSearchIndex.add(info);
         mDataChanged = true;
     }
 
@@ -170,6 +173,7 @@ public class AllAppsList {
         }
 
         data.add(promiseAppInfo);
+        mSearchIndex.add(promiseAppInfo);
         mDataChanged = true;
 
         return promiseAppInfo;
@@ -177,7 +181,7 @@ public class AllAppsList {
 
     public void updateSectionName(AppInfo appInfo) {
         appInfo.sectionName = mIndex.computeSectionName(appInfo.title);
-
+        mSearchIndex.onTitlesChanged();
     }
 
     /** Updates the given PackageInstallInfo's associated AppInfo's installation info. */
@@ -209,6 +213,7 @@ public class AllAppsList {
 
     private void removeApp(int index) {
         AppInfo removed = data.remove(index);
+        mSearchIndex.remove(index);
         if (removed != null) {
             mDataChanged = true;
             mRemoveListener.accept(removed);
@@ -217,6 +222,7 @@ public class AllAppsList {
 
     public void clear() {
         data.clear();
+        mSearchIndex.clear();
         mDataChanged = false;
         // Reset the index as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
@@ -269,6 +275,7 @@ public class AllAppsList {
             if (info.user.equals(user) && packages.contains(info.componentName.getPackageName())) {
                 mIconCache.updateTitleAndIcon(info);
                 info.sectionName = mIndex.computeSectionName(info.title);
+                mSearchIndex.onTitlesChanged();
                 mDataChanged = true;
             }
         }
@@ -306,6 +313,7 @@ public class AllAppsList {
 
                     mIconCache.getTitleAndIcon(applicationInfo, info, false /* useLowResIcon */);
                     applicationInfo.sectionName = mIndex.computeSectionName(applicationInfo.title);
+                    mSearchIndex.onTitlesChanged();
                     applicationInfo.setProgressLevel(
                             PackageManagerHelper.getLoadingProgress(info),
                             PackageInstallInfo.STATUS_INSTALLED_DOWNLOADING);
@@ -357,7 +365,16 @@ public class AllAppsList {
         return null;
     }
 
+    /**
+     * Returns the title search index, which is kept in sync with {@link #data}
+     */
+    public AppSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
     public AppInfo[] copyData() {
+        // Refresh the search snapshot along with the apps published to the UI
+        mSearchIndex.getSnapshot();
         AppInfo[] result = data.toArray(EMPTY_ARRAY);
         Arrays.sort(result, COMPONENT_KEY_COMPARATOR);
         return result;
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.AllAppsList.DEFAULT_APPLICATIONS_NUMBER;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.FuzzyMatcher;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.search.TokenizedString;
+import com.android.launcher3.util.IntArray;
+
+import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Title search index for {@link AllAppsList}. Entries are kept in the same order as
+ * {@link AllAppsList#data} and hold the pre-computed word boundaries of each title, so that
+ * a query only needs to compare the query at the known word starts.
+ */
+public class AppSearchIndex {
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>(DEFAULT_APPLICATIONS_NUMBER);
+
+    /** Incremented every time the indexed apps or their titles change */
+    private int mModCount;
+
+    /** The last snapshot taken on the model thread, can be read on any thread */
+    private volatile Snapshot mSnapshot;
+
+    void add(AppInfo info) {
+        mEntries.add(new Entry(info));
+        mModCount++;
+    }
+
+    void remove(int index) {
+        mEntries.remove(index);
+        mModCount++;
+    }
+
+    void clear() {
+        mEntries.clear();
+        mModCount++;
+    }
+
+    /**
+     * Called when the title of one or more apps has been updated
+     */
+    void onTitlesChanged() {
+        mModCount++;
+    }
+
+    /**
+     * Returns the number of apps in the index
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns an immutable snapshot of the current state of the index, creating a new one if
+     * the index has changed since the last snapshot. Must be called on the model thread.
+     */
+    @WorkerThread
+    public Snapshot getSnapshot() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot != null && snapshot.mModCount == mModCount) {
+            return snapshot;
+        }
+        int total = mEntries.size();
+        AppInfo[] apps = new AppInfo[total];
+        TokenizedString[] tokens = new TokenizedString[total];
+        for (int i = 0; i < total; i++) {
+            Entry entry = mEntries.get(i);
+            // Refreshing the tokens can increment the mod count, so read it after the loop
+            tokens[i] = entry.getTokens();
+            apps[i] = entry.app;
+        }
+        snapshot = new Snapshot(apps, tokens, mModCount);
+        mSnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Returns the last snapshot created by {@link #getSnapshot()}, or null if no snapshot was
+     * created yet. Can be called on any thread.
+     */
+    @AnyThread
+    @Nullable
+    public Snapshot getLastSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * An immutable copy of the index which can be searched on any thread.
+     */
+    public static class Snapshot {
+
+        /** Number of entries after which a cancellation check is performed */
+        private static final int CANCEL_CHECK_INTERVAL = 32;
+
+        private final AppInfo[] mApps;
+        private final TokenizedString[] mTokens;
+        private final int mModCount;
+
+        private Snapshot(AppInfo[] apps, TokenizedString[] tokens, int modCount) {
+            mApps = apps;
+            mTokens = tokens;
+            mModCount = modCount;
+        }
+
+        /**
+         * Returns the number of apps in the snapshot
+         */
+        public int size() {
+            return mApps.length;
+        }
+
+        /**
+         * Returns the app at the given position in the snapshot
+         */
+        public AppInfo getApp(int position) {
+            return mApps[position];
+        }
+
+        /**
+         * Adds the position of every app matching the {@param query} to {@param out}.
+         *
+         * @return false if the search was cancelled before completion
+         */
+        public boolean searchAll(Query query, StringMatcher matcher, BooleanSupplier isCancelled,
+                IntArray out) {
+            int total = mTokens.length;
+            for (int i = 0; i < total; i++) {
+                if (i % CANCEL_CHECK_INTERVAL == 0 && isCancelled.getAsBoolean()) {
+                    return false;
+                }
+                if (query.matches(mTokens[i], matcher)) {
+                    out.add(i);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Adds the positions from {@param candidates} which match the {@param query} to
+         * {@param out}. The candidates must have been computed against this snapshot.
+         *
+         * @return false if the search was cancelled before completion
+         */
+        public boolean filter(Query query, StringMatcher matcher, BooleanSupplier isCancelled,
+                IntArray candidates, IntArray out) {
+            int total = candidates.size();
+            for (int i = 0; i < total; i++) {
+                if (i % CANCEL_CHECK_INTERVAL == 0 && isCancelled.getAsBoolean()) {
+                    return false;
+                }
+                int position = candidates.get(i);
+                if (query.matches(mTokens[position], matcher)) {
+                    out.add(position);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Scores every app against the {@param query} and adds the positions of up to
+         * {@param maxResults} best matches to {@param out}, ordered by score. Apps with the
+         * same score are kept in the snapshot order.
+         *
+         * @return false if the search was cancelled before completion
+         */
+        public boolean rank(Query query, FuzzyMatcher matcher, BooleanSupplier isCancelled,
+                int maxResults, IntArray out) {
+            if (maxResults <= 0) {
+                return true;
+            }
+            int[] topScores = new int[maxResults];
+            int[] topPositions = new int[maxResults];
+            int count = 0;
+
+            int total = mTokens.length;
+            for (int i = 0; i < total; i++) {
+                if (i % CANCEL_CHECK_INTERVAL == 0 && isCancelled.getAsBoolean()) {
+                    return false;
+                }
+                int score = matcher.score(query.text, query.isSimple, query.isHan, mTokens[i]);
+                if (score == FuzzyMatcher.NO_MATCH
+                        || (count == maxResults && score <= topScores[count - 1])) {
+                    continue;
+                }
+                // Insertion into the sorted top list, dropping the last entry if full
+                int index = count < maxResults ? count++ : count - 1;
+                while (index > 0 && topScores[index - 1] < score) {
+                    topScores[index] = topScores[index - 1];
+                    topPositions[index] = topPositions[index - 1];
+                    index--;
+                }
+                topScores[index] = score;
+                topPositions[index] = i;
+            }
+            for (int i = 0; i < count; i++) {
+                out.add(topPositions[i]);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A search query with the properties used for matching pre-computed.
+     */
+    public static class Query {
+
+        /** The query in lower case */
+        public final String text;
+        final boolean isSimple;
+        final boolean isHan;
+
+        public Query(String query) {
+            text = query.toLowerCase();
+            isSimple = TokenizedString.isSimple(text);
+            isHan = StringMatcherUtility.requestSimpleFuzzySearch(text);
+        }
+
+        /**
+         * Returns true if every app matching this query is guaranteed to also match
+         * {@param previous}, so that the results of this query can be computed by filtering
+         * the results of {@param previous}.
+         */
+        public boolean refines(Query previous) {
+            if (!text.startsWith(previous.text)) {
+                return false;
+            }
+            // Substring match and word-prefix match of an ASCII query are both monotonic when
+            // the query grows. Collator based matching of other scripts is not guaranteed to be,
+            // so it is always computed from scratch.
+            return previous.isHan ? isHan : (!isHan && isSimple && previous.isSimple);
+        }
+
+        boolean matches(TokenizedString tokens, StringMatcher matcher) {
+            return tokens.matches(text, isSimple, isHan, matcher);
+        }
+    }
+
+    private class Entry {
+
+        final AppInfo app;
+
+        private CharSequence mTitle;
+        private TokenizedString mTokens;
+
+        Entry(AppInfo app) {
+            this.app = app;
+            mTitle = app.title;
+            mTokens = TokenizedString.of(mTitle);
+        }
+
+        /**
+         * Returns the tokens for the current title of the app. Titles are often loaded in bulk
+         * after the app is added to the list, so the tokens are refreshed if the title changed.
+         */
+        TokenizedString getTokens() {
+            if (mTitle != app.title) {
+                mTitle = app.title;
+                mTokens = TokenizedString.of(mTitle);
+                mModCount++;
+            }
+            return mTokens;
+        }
+    }
+}
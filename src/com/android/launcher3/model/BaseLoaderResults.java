@@ -95,7 +95,24 @@ public abstract class BaseLoaderResults {
 
         for (Callbacks cb : mCallbacksList) {
             new WorkspaceBinder(cb, mUiExecutor, mApp, mBgDataModel, mMyBindingId,
-                    workspaceItems, appWidgets, extraItems, orderedScreenIds).bind();
+                    workspaceItems, appWidgets, extraItems, orderedScreenIds,
+                    false /* isSnapshot */).bind();
+        }
+    }
+
+    /**
+     * Binds the items of a {@link ModelSnapshot} before the workspace is loaded. The bound items
+     * are replaced by the next call to {@link #bindWorkspace(boolean)}.
+     */
+    public void bindWorkspaceSnapshot(ModelSnapshot snapshot) {
+        int bindingId;
+        synchronized (mBgDataModel) {
+            bindingId = ++mBgDataModel.lastBindId;
+        }
+        for (Callbacks cb : mCallbacksList) {
+            new WorkspaceBinder(cb, mUiExecutor, mApp, mBgDataModel, bindingId,
+                    new ArrayList<>(snapshot.items), new ArrayList<>(), new ArrayList<>(),
+                    snapshot.orderedScreenIds.clone(), true /* isSnapshot */).bind();
         }
     }
 
@@ -144,6 +161,7 @@ public abstract class BaseLoaderResults {
         private final ArrayList<LauncherAppWidgetInfo> mAppWidgets;
         private final IntArray mOrderedScreenIds;
         private final ArrayList<FixedContainerItems> mExtraItems;
+        private final boolean mIsSnapshot;
 
         WorkspaceBinder(Callbacks callbacks,
                 Executor uiExecutor,
@@ -153,7 +171,8 @@ public abstract class BaseLoaderResults {
                 ArrayList<ItemInfo> workspaceItems,
                 ArrayList<LauncherAppWidgetInfo> appWidgets,
                 ArrayList<FixedContainerItems> extraItems,
-                IntArray orderedScreenIds) {
+                IntArray orderedScreenIds,
+                boolean isSnapshot) {
             mCallbacks = callbacks;
             mUiExecutor = uiExecutor;
             mApp = app;
@@ -163,6 +182,7 @@ public abstract class BaseLoaderResults {
             mAppWidgets = appWidgets;
             mExtraItems = extraItems;
             mOrderedScreenIds = orderedScreenIds;
+            mIsSnapshot = isSnapshot;
         }
 
         private void bind() {
@@ -213,6 +233,14 @@ public abstract class BaseLoaderResults {
             Executor pendingExecutor = pendingTasks::add;
             bindWorkspaceItems(otherWorkspaceItems, pendingExecutor);
             bindAppWidgets(otherAppWidgets, pendingExecutor);
+            if (mIsSnapshot) {
+                // The snapshot items are not part of the model, so the workspace is kept loading,
+                // and thereby locked, until the actual workspace replaces them. The loader is
+                // still running, keep the model priority and the install queue paused as well.
+                executeCallbacksTask(c -> c.onInitialBindComplete(currentScreenIds, pendingTasks),
+                        mUiExecutor);
+                return;
+            }
             executeCallbacksTask(c -> c.finishBindingItems(currentScreenIds), pendingExecutor);
             pendingExecutor.execute(
                     () -> {
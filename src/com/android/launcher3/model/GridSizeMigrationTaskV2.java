@@ -42,7 +42,7 @@ import com.android.launcher3.graphics.LauncherPreviewRenderer;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
-import com.android.launcher3.util.GridOccupancy;
+import com.android.launcher3.util.BitGridOccupancy;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
@@ -359,7 +359,7 @@ public class GridSizeMigrationTaskV2 {
         private final DbReader mSrcReader;
         private final DbReader mDestReader;
         private final Context mContext;
-        private final GridOccupancy mOccupied;
+        private final BitGridOccupancy mOccupied;
         private final int mScreenId;
         private final int mTrgX;
         private final int mTrgY;
@@ -374,7 +374,7 @@ public class GridSizeMigrationTaskV2 {
             mSrcReader = srcReader;
             mDestReader = destReader;
             mContext = context;
-            mOccupied = new GridOccupancy(trgX, trgY);
+            mOccupied = new BitGridOccupancy(trgX, trgY);
             mScreenId = screenId;
             mTrgX = trgX;
             mTrgY = trgY;
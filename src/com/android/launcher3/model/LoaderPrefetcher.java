@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+import static com.android.launcher3.util.PackageManagerHelper.hasShortcutsPermission;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.ShortcutInfo;
+import android.os.Trace;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.shortcuts.ShortcutRequest;
+import com.android.launcher3.widget.WidgetManagerHelper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the system queries needed by {@link LoaderTask}, which do not depend on the workspace,
+ * in parallel on {@link com.android.launcher3.util.Executors#THREAD_POOL_EXECUTOR}, so that
+ * they overlap with loading and binding the workspace.
+ *
+ * The loader still consumes the results in its original order. Any query which failed or has
+ * no result for a user returns null, in which case the loader should run it again itself.
+ */
+class LoaderPrefetcher {
+
+    private static final String TAG = "LoaderPrefetcher";
+
+    // Interval at which the loader checks if it was stopped while waiting for a result
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final Future<Map<UserHandle, List<LauncherActivityInfo>>> mActivityLists;
+    private final Future<Map<UserHandle, List<ShortcutInfo>>> mDeepShortcuts;
+    // Null when the widgets are disabled, as the providers are not used
+    @Nullable
+    private final Future<List<AppWidgetProviderInfo>> mWidgetProviders;
+
+    LoaderPrefetcher(Context context, List<UserHandle> profiles) {
+        mActivityLists = THREAD_POOL_EXECUTOR.submit(() -> {
+            Trace.beginSection("PrefetchActivityLists");
+            try {
+                LauncherApps launcherApps = context.getSystemService(LauncherApps.class);
+                Map<UserHandle, List<LauncherActivityInfo>> result = new ArrayMap<>();
+                for (UserHandle user : profiles) {
+                    List<LauncherActivityInfo> apps = launcherApps.getActivityList(null, user);
+                    if (apps != null) {
+                        result.put(user, apps);
+                    }
+                }
+                return result;
+            } finally {
+                Trace.endSection();
+            }
+        });
+
+        mDeepShortcuts = THREAD_POOL_EXECUTOR.submit(() -> {
+            Trace.beginSection("PrefetchDeepShortcuts");
+            try {
+                Map<UserHandle, List<ShortcutInfo>> result = new ArrayMap<>();
+                if (!hasShortcutsPermission(context)) {
+                    return result;
+                }
+                UserManager userManager = context.getSystemService(UserManager.class);
+                for (UserHandle user : profiles) {
+                    if (userManager.isUserUnlocked(user)) {
+                        result.put(user,
+                                new ShortcutRequest(context, user).query(ShortcutRequest.ALL));
+                    }
+                }
+                return result;
+            } finally {
+                Trace.endSection();
+            }
+        });
+
+        mWidgetProviders = WidgetsModel.GO_DISABLE_WIDGETS ? null
+                : THREAD_POOL_EXECUTOR.submit(() -> {
+                    Trace.beginSection("PrefetchWidgetProviders");
+                    try {
+                        return new WidgetManagerHelper(context).getAllProviders(null);
+                    } finally {
+                        Trace.endSection();
+                    }
+                });
+    }
+
+    /**
+     * Returns the activities for {@param user}, or null if they should be queried again
+     */
+    @Nullable
+    List<LauncherActivityInfo> getActivityList(UserHandle user, Runnable verifyNotStopped) {
+        Map<UserHandle, List<LauncherActivityInfo>> result =
+                await(mActivityLists, verifyNotStopped);
+        return result == null ? null : result.get(user);
+    }
+
+    /**
+     * Returns all the deep shortcuts for {@param user}, or null if they should be queried again
+     */
+    @Nullable
+    List<ShortcutInfo> getDeepShortcuts(UserHandle user, Runnable verifyNotStopped) {
+        Map<UserHandle, List<ShortcutInfo>> result = await(mDeepShortcuts, verifyNotStopped);
+        return result == null ? null : result.get(user);
+    }
+
+    /**
+     * Returns all the widget providers, or null if they should be queried again
+     */
+    @Nullable
+    List<AppWidgetProviderInfo> getWidgetProviders(Runnable verifyNotStopped) {
+        return mWidgetProviders == null ? null : await(mWidgetProviders, verifyNotStopped);
+    }
+
+    /**
+     * Cancels any query which has not started yet
+     */
+    void cancel() {
+        mActivityLists.cancel(false);
+        mDeepShortcuts.cancel(false);
+        if (mWidgetProviders != null) {
+            mWidgetProviders.cancel(false);
+        }
+    }
+
+    @Nullable
+    private static <T> T await(Future<T> future, Runnable verifyNotStopped)
+            throws CancellationException {
+        while (true) {
+            verifyNotStopped.run();
+            try {
+                return future.get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Check if the loader was stopped and keep waiting
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | CancellationException e) {
+                Log.w(TAG, "Prefetch failed, falling back to a direct query", e);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.text.format.DateFormat;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.icons.IconCache;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Per-stage metrics of a single {@link LoaderTask} run. The metrics of the last few runs are
+ * kept in memory and included in the model dump.
+ *
+ * Stages are delimited by calls to {@link #endStage(String)}, and all counters reported in
+ * between are attributed to the stage being ended. The binder calls and the icon lookups are
+ * read from process wide counters, so they also include the calls made by other threads during
+ * the stage. This is only accessed on the loader thread until {@link #finish(int)}, after which
+ * it is never modified.
+ */
+public class LoaderStats {
+
+    private static final int HISTORY_SIZE = 5;
+
+    static final int RESULT_COMPLETED = 0;
+    static final int RESULT_CANCELLED = 1;
+    static final int RESULT_FAILED = 2;
+
+    // Guarded by itself
+    private static final ArrayDeque<LoaderStats> sHistory = new ArrayDeque<>(HISTORY_SIZE);
+
+    private final ArrayList<Stage> mStages = new ArrayList<>();
+
+    private long mStartTimeMillis;
+    private long mStartUptime;
+    private long mStartCpuTime;
+    private long mStageStartUptime;
+    private long mStageStartCpuTime;
+    private int mStageStartBinderCalls;
+    private int mStageStartIconMemoryHits;
+    private int mStageStartIconLookups;
+
+    @Nullable
+    private IconCache mIconCache;
+
+    // Counters for the current stage
+    private int mItems;
+    private int mDbRows;
+
+    private int mResult;
+    private long mTotalWallMs;
+    private long mTotalCpuMs;
+
+    /**
+     * Marks the beginning of the load
+     *
+     * @param iconCache the cache whose lookups are counted, if any
+     */
+    void start(@Nullable IconCache iconCache) {
+        mIconCache = iconCache;
+        mStartTimeMillis = System.currentTimeMillis();
+        mStartUptime = mStageStartUptime = SystemClock.uptimeMillis();
+        mStartCpuTime = mStageStartCpuTime = SystemClock.currentThreadTimeMillis();
+        mStageStartBinderCalls = Debug.getBinderSentTransactions();
+        mStageStartIconMemoryHits = getIconMemoryHits();
+        mStageStartIconLookups = getIconLookups();
+    }
+
+    void addItems(int count) {
+        mItems += count;
+    }
+
+    void addDbRows(int count) {
+        mDbRows += count;
+    }
+
+    /**
+     * Ends the current stage, attributing all the counters since the previous stage to it
+     */
+    void endStage(String name) {
+        long uptime = SystemClock.uptimeMillis();
+        long cpuTime = SystemClock.currentThreadTimeMillis();
+        // Binder transactions are not counted by kernels without binder stats
+        int binderCalls = Debug.getBinderSentTransactions();
+        int iconMemoryHits = getIconMemoryHits();
+        int iconLookups = getIconLookups();
+        Runtime runtime = Runtime.getRuntime();
+        mStages.add(new Stage(name, uptime - mStageStartUptime, cpuTime - mStageStartCpuTime,
+                mItems, mDbRows,
+                binderCalls < 0 || mStageStartBinderCalls < 0
+                        ? -1 : binderCalls - mStageStartBinderCalls,
+                iconMemoryHits - mStageStartIconMemoryHits,
+                iconLookups - mStageStartIconLookups,
+                (runtime.totalMemory() - runtime.freeMemory()) / 1024));
+        mStageStartUptime = uptime;
+        mStageStartCpuTime = cpuTime;
+        mStageStartBinderCalls = binderCalls;
+        mStageStartIconMemoryHits = iconMemoryHits;
+        mStageStartIconLookups = iconLookups;
+        mItems = mDbRows = 0;
+    }
+
+    private int getIconMemoryHits() {
+        return mIconCache == null ? 0 : mIconCache.getMemoryHitCount();
+    }
+
+    private int getIconLookups() {
+        return mIconCache == null ? 0 : mIconCache.getLockedLookupCount();
+    }
+
+    /**
+     * Marks the end of the load and adds it to the history
+     */
+    void finish(int result) {
+        mResult = result;
+        mTotalWallMs = SystemClock.uptimeMillis() - mStartUptime;
+        mTotalCpuMs = SystemClock.currentThreadTimeMillis() - mStartCpuTime;
+        synchronized (sHistory) {
+            if (sHistory.size() == HISTORY_SIZE) {
+                sHistory.removeFirst();
+            }
+            sHistory.addLast(this);
+        }
+    }
+
+    /**
+     * Dumps the metrics of the last few loads, oldest first
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        ArrayList<LoaderStats> history;
+        synchronized (sHistory) {
+            history = new ArrayList<>(sHistory);
+        }
+        writer.println(prefix + "Loader stats: loads=" + history.size());
+        for (LoaderStats stats : history) {
+            stats.dumpLoad(prefix + "\t", writer);
+        }
+    }
+
+    private void dumpLoad(String prefix, PrintWriter writer) {
+        writer.println(prefix + DateFormat.format("MM-dd HH:mm:ss", mStartTimeMillis)
+                + " result=" + (mResult == RESULT_COMPLETED ? "completed"
+                        : mResult == RESULT_CANCELLED ? "cancelled" : "failed")
+                + " wallMs=" + mTotalWallMs
+                + " cpuMs=" + mTotalCpuMs);
+        for (Stage stage : mStages) {
+            StringBuilder sb = new StringBuilder(prefix).append("\t").append(stage.name)
+                    .append(": wallMs=").append(stage.wallMs)
+                    .append(" cpuMs=").append(stage.cpuMs);
+            appendIfSet(sb, " items=", stage.items);
+            appendIfSet(sb, " dbRows=", stage.dbRows);
+            sb.append(" binderCalls=")
+                    .append(stage.binderCalls < 0 ? "unavailable" : stage.binderCalls);
+            appendIfSet(sb, " iconMemoryHits=", stage.iconMemoryHits);
+            appendIfSet(sb, " iconCacheLookups=", stage.iconLookups);
+            sb.append(" heapKb=").append(stage.heapKb);
+            writer.println(sb);
+        }
+    }
+
+    private static void appendIfSet(StringBuilder sb, String label, int value) {
+        if (value != 0) {
+            sb.append(label).append(value);
+        }
+    }
+
+    private static class Stage {
+
+        final String name;
+        final long wallMs;
+        final long cpuMs;
+        final int items;
+        final int dbRows;
+        // -1 if the binder calls are not counted
+        final int binderCalls;
+        final int iconMemoryHits;
+        final int iconLookups;
+        final long heapKb;
+
+        Stage(String name, long wallMs, long cpuMs, int items, int dbRows, int binderCalls,
+                int iconMemoryHits, int iconLookups, long heapKb) {
+            this.name = name;
+            this.wallMs = wallMs;
+            this.cpuMs = cpuMs;
+            this.items = items;
+            this.dbRows = dbRows;
+            this.binderCalls = binderCalls;
+            this.iconMemoryHits = iconMemoryHits;
+            this.iconLookups = iconLookups;
+            this.heapKb = heapKb;
+        }
+    }
+}
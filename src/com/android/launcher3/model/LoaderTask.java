@@ -24,6 +24,7 @@ import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_LO
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SAFEMODE;
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SUSPENDED;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 import static com.android.launcher3.util.PackageManagerHelper.hasShortcutsPermission;
 import static com.android.launcher3.util.PackageManagerHelper.isSystemApp;
 
@@ -139,6 +140,9 @@ public class LoaderTask implements Runnable {
     protected final Map<ComponentKey, AppWidgetProviderInfo> mWidgetProvidersMap = new ArrayMap<>();
 
     private boolean mStopped;
+    @Nullable
+    private LoaderPrefetcher mPrefetcher;
+    private final LoaderStats mStats = new LoaderStats();
 
     private final Set<PackageUserKey> mPendingPackages = new HashSet<>();
     private boolean mItemsDeleted = false;
@@ -200,7 +204,26 @@ public class LoaderTask implements Runnable {
         Object traceToken = TraceHelper.INSTANCE.beginSection(TAG);
         TimingLogger logger = new TimingLogger(TAG, "run");
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
+        mStats.start(mIconCache);
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
+            if (FeatureFlags.ENABLE_PARALLEL_LOADER.get()) {
+                // Start the queries for all apps, deep shortcuts and widgets, so that they
+                // overlap with loading and binding the workspace
+                mPrefetcher = new LoaderPrefetcher(mApp.getContext(),
+                        mUserCache.getUserProfiles());
+            }
+
+            if (FeatureFlags.ENABLE_MODEL_SNAPSHOT.get() && mBgDataModel.lastBindId == 0) {
+                // Nothing was bound in this process yet, show the workspace from the last load
+                // until the actual workspace is bound
+                ModelSnapshot snapshot = ModelSnapshot.read(
+                        mApp.getContext(), mApp.getInvariantDeviceProfile());
+                if (snapshot != null) {
+                    mResults.bindWorkspaceSnapshot(snapshot);
+                    logASplit(logger, "bindWorkspaceSnapshot");
+                }
+            }
+
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
             Trace.beginSection("LoadWorkspace");
             try {
@@ -208,6 +231,7 @@ public class LoaderTask implements Runnable {
             } finally {
                 Trace.endSection();
             }
+            mStats.addItems(mBgDataModel.itemsIdMap.size());
             logASplit(logger, "loadWorkspace");
 
             // Sanitize data re-syncs widgets/shortcuts based on the workspace loaded from db.
@@ -242,6 +266,7 @@ public class LoaderTask implements Runnable {
             } finally {
                 Trace.endSection();
             }
+            mStats.addItems(mBgAllAppsList.data.size());
             logASplit(logger, "loadAllApps");
 
             verifyNotStopped();
@@ -270,6 +295,7 @@ public class LoaderTask implements Runnable {
 
             // third step
             List<ShortcutInfo> allDeepShortcuts = loadDeepShortcuts();
+            mStats.addItems(allDeepShortcuts.size());
             logASplit(logger, "loadDeepShortcuts");
 
             verifyNotStopped();
@@ -289,8 +315,11 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
 
             // fourth step
+            List<AppWidgetProviderInfo> widgetProviders = mPrefetcher == null
+                    ? null : mPrefetcher.getWidgetProviders(this::verifyNotStopped);
             List<ComponentWithLabelAndIcon> allWidgetsList =
-                    mBgDataModel.widgetsModel.update(mApp, null);
+                    mBgDataModel.widgetsModel.update(mApp, null, widgetProviders);
+            mStats.addItems(allWidgetsList.size());
             logASplit(logger, "load widgets");
 
             verifyNotStopped();
@@ -314,14 +343,29 @@ public class LoaderTask implements Runnable {
 
             mModelDelegate.modelLoadComplete();
             transaction.commit();
+
+            if (FeatureFlags.ENABLE_MODEL_SNAPSHOT.get()
+                    && mApp.getInvariantDeviceProfile().dbFile.equals(mDbName)) {
+                ModelSnapshot snapshot = ModelSnapshot.capture(
+                        mApp.getContext(), mApp.getInvariantDeviceProfile(), mBgDataModel);
+                THREAD_POOL_EXECUTOR.execute(() -> snapshot.write(mApp.getContext()));
+                logASplit(logger, "captureModelSnapshot");
+            }
             memoryLogger.clearLogs();
+            mStats.finish(LoaderStats.RESULT_COMPLETED);
         } catch (CancellationException e) {
             // Loader stopped, ignore
             logASplit(logger, "Cancelled");
+            mStats.finish(LoaderStats.RESULT_CANCELLED);
         } catch (Exception e) {
             memoryLogger.printLogs();
+            mStats.finish(LoaderStats.RESULT_FAILED);
             throw e;
         } finally {
+            if (mPrefetcher != null) {
+                mPrefetcher.cancel();
+                mPrefetcher = null;
+            }
             logger.dumpToLog();
         }
         TraceHelper.INSTANCE.endSection(traceToken);
@@ -439,6 +483,7 @@ public class LoaderTask implements Runnable {
                 List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos = new ArrayList<>();
 
                 while (!mStopped && c.moveToNext()) {
+                    mStats.addDbRows(1);
                     try {
                         if (c.user == null) {
                             // User has been deleted, remove the item.
@@ -957,7 +1002,11 @@ public class LoaderTask implements Runnable {
         List<IconRequestInfo<AppInfo>> iconRequestInfos = new ArrayList<>();
         for (UserHandle user : profiles) {
             // Query for the set of apps
-            final List<LauncherActivityInfo> apps = mLauncherApps.getActivityList(null, user);
+            List<LauncherActivityInfo> apps = mPrefetcher == null
+                    ? null : mPrefetcher.getActivityList(user, this::verifyNotStopped);
+            if (apps == null) {
+                apps = mLauncherApps.getActivityList(null, user);
+            }
             // Fail if we don't have any apps
             // TODO: Fix this. Only fail for the current user.
             if (apps == null || apps.isEmpty()) {
@@ -1026,8 +1075,12 @@ public class LoaderTask implements Runnable {
         if (mBgAllAppsList.hasShortcutHostPermission()) {
             for (UserHandle user : mUserCache.getUserProfiles()) {
                 if (mUserManager.isUserUnlocked(user)) {
-                    List<ShortcutInfo> shortcuts = new ShortcutRequest(mApp.getContext(), user)
-                            .query(ShortcutRequest.ALL);
+                    List<ShortcutInfo> shortcuts = mPrefetcher == null
+                            ? null : mPrefetcher.getDeepShortcuts(user, this::verifyNotStopped);
+                    if (shortcuts == null) {
+                        shortcuts = new ShortcutRequest(mApp.getContext(), user)
+                                .query(ShortcutRequest.ALL);
+                    }
                     allShortcuts.addAll(shortcuts);
                     mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
                 }
@@ -1104,8 +1157,9 @@ public class LoaderTask implements Runnable {
         FileLog.d(TAG, widgetDimension.toString());
     }
 
-    private static void logASplit(final TimingLogger logger, final String label) {
+    private void logASplit(final TimingLogger logger, final String label) {
         logger.addSplit(label);
+        mStats.endStage(label);
         if (DEBUG) {
             Log.d(TAG, label);
         }
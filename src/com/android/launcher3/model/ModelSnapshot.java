@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_FOLDER;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_SHORTCUT;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.UserHandle;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.Utilities;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.icons.GraphicsUtils;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.IntArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * A compact copy of the hotseat and the first workspace screen, including the icons, which is
+ * written once the model is loaded. On the next process start it can be bound before the
+ * launcher db is read, and the bound items are replaced once the model is actually loaded.
+ *
+ * The snapshot is only valid for the db generation it was written for, which is incremented on
+ * the first db change after a snapshot is captured, and for the same grid and locale. Widgets
+ * are not part of the snapshot.
+ */
+public class ModelSnapshot {
+
+    private static final String TAG = "ModelSnapshot";
+
+    private static final int VERSION = 1;
+    private static final String KEY_DB_GENERATION = "model_snapshot_db_generation";
+
+    private static final Object GENERATION_LOCK = new Object();
+    // Whether a snapshot may have been written for the current generation. This is conservatively
+    // true at process start, as a snapshot of a previous process can exist.
+    private static boolean sGenerationInUse = true;
+
+    public final IntArray orderedScreenIds;
+    /** Top level items, folder contents are part of the corresponding {@link FolderInfo} */
+    public final ArrayList<ItemInfo> items;
+
+    private final long mDbGeneration;
+    private final String mConfigKey;
+
+    private ModelSnapshot(IntArray orderedScreenIds, ArrayList<ItemInfo> items,
+            long dbGeneration, String configKey) {
+        this.orderedScreenIds = orderedScreenIds;
+        this.items = items;
+        mDbGeneration = dbGeneration;
+        mConfigKey = configKey;
+    }
+
+    /**
+     * Called whenever the launcher db is modified, invalidating any existing snapshot. The
+     * generation is only written when it could have been used by a snapshot since the previous
+     * change, so that the changes of a transaction, or of consecutive transactions, don't each
+     * write the preferences.
+     */
+    public static void onDbChanged(Context context) {
+        synchronized (GENERATION_LOCK) {
+            if (!sGenerationInUse) {
+                return;
+            }
+            SharedPreferences prefs = Utilities.getDevicePrefs(context);
+            // Written synchronously, so that a snapshot is never read with a stale generation
+            prefs.edit().putLong(KEY_DB_GENERATION, prefs.getLong(KEY_DB_GENERATION, 0) + 1)
+                    .commit();
+            sGenerationInUse = false;
+        }
+    }
+
+    private static long getDbGeneration(Context context) {
+        synchronized (GENERATION_LOCK) {
+            sGenerationInUse = true;
+            return Utilities.getDevicePrefs(context).getLong(KEY_DB_GENERATION, 0);
+        }
+    }
+
+    private static String getConfigKey(InvariantDeviceProfile idp) {
+        return idp.dbFile + ',' + idp.numColumns + ',' + idp.numRows + ','
+                + idp.numDatabaseHotseatIcons + ',' + Locale.getDefault().toLanguageTag();
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getCacheDir(), LauncherFiles.MODEL_SNAPSHOT);
+    }
+
+    /**
+     * Creates a snapshot of the loaded {@param dataModel}. This only copies the items, so that
+     * the slower {@link #write(Context)} can happen on a different thread.
+     */
+    @WorkerThread
+    public static ModelSnapshot capture(Context context, InvariantDeviceProfile idp,
+            BgDataModel dataModel) {
+        long dbGeneration = getDbGeneration(context);
+        IntArray orderedScreenIds = new IntArray();
+        ArrayList<ItemInfo> items = new ArrayList<>();
+        synchronized (dataModel) {
+            orderedScreenIds.addAll(dataModel.collectWorkspaceScreens());
+            int firstScreen = orderedScreenIds.isEmpty() ? -1 : orderedScreenIds.get(0);
+            for (ItemInfo info : dataModel.workspaceItems) {
+                boolean isVisible = info.container == CONTAINER_HOTSEAT
+                        || (info.container == CONTAINER_DESKTOP && info.screenId == firstScreen);
+                if (!isVisible) {
+                    continue;
+                }
+                if (info instanceof FolderInfo) {
+                    FolderInfo folder = (FolderInfo) info;
+                    FolderInfo copy = new FolderInfo();
+                    copy.copyFrom(folder);
+                    copy.title = folder.title;
+                    copy.options = folder.options;
+                    for (WorkspaceItemInfo child : folder.contents) {
+                        if (child.intent != null) {
+                            copy.contents.add(copyItem(child));
+                        }
+                    }
+                    items.add(copy);
+                } else if (info instanceof WorkspaceItemInfo
+                        && ((WorkspaceItemInfo) info).intent != null) {
+                    items.add(copyItem((WorkspaceItemInfo) info));
+                }
+            }
+        }
+        return new ModelSnapshot(orderedScreenIds, items, dbGeneration, getConfigKey(idp));
+    }
+
+    private static WorkspaceItemInfo copyItem(WorkspaceItemInfo info) {
+        WorkspaceItemInfo copy = new WorkspaceItemInfo(info);
+        copy.options = info.options;
+        return copy;
+    }
+
+    /**
+     * Writes this snapshot to disk, replacing any previous snapshot
+     */
+    @WorkerThread
+    public void write(Context context) {
+        UserCache userCache = UserCache.INSTANCE.get(context);
+        AtomicFile file = new AtomicFile(getFile(context));
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(VERSION);
+            out.writeLong(mDbGeneration);
+            out.writeUTF(mConfigKey);
+            out.writeInt(orderedScreenIds.size());
+            for (int i = 0; i < orderedScreenIds.size(); i++) {
+                out.writeInt(orderedScreenIds.get(i));
+            }
+            out.writeInt(items.size());
+            for (ItemInfo info : items) {
+                writeItem(out, info, userCache);
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write model snapshot", e);
+            file.failWrite(fos);
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, ItemInfo info, UserCache userCache)
+            throws IOException {
+        out.writeInt(info.itemType);
+        out.writeInt(info.id);
+        out.writeInt(info.container);
+        out.writeInt(info.screenId);
+        out.writeInt(info.cellX);
+        out.writeInt(info.cellY);
+        out.writeInt(info.spanX);
+        out.writeInt(info.spanY);
+        out.writeInt(info.rank);
+        out.writeLong(userCache.getSerialNumberForUser(info.user));
+        out.writeUTF(info.title == null ? "" : info.title.toString());
+
+        if (info instanceof FolderInfo) {
+            FolderInfo folder = (FolderInfo) info;
+            out.writeInt(folder.options);
+            out.writeInt(folder.contents.size());
+            for (WorkspaceItemInfo child : folder.contents) {
+                writeItem(out, child, userCache);
+            }
+            return;
+        }
+
+        WorkspaceItemInfo item = (WorkspaceItemInfo) info;
+        out.writeUTF(item.intent.toUri(0));
+        out.writeInt(item.status);
+        out.writeInt(item.options);
+        out.writeInt(item.runtimeStatusFlags);
+        byte[] icon = item.bitmap.isNullOrLowRes()
+                ? null : GraphicsUtils.flattenBitmap(item.bitmap.icon);
+        if (icon == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(icon.length);
+            out.write(icon);
+            out.writeInt(item.bitmap.color);
+        }
+    }
+
+    /**
+     * Returns the snapshot written for the current db and {@param idp}, or null if there is no
+     * such snapshot.
+     */
+    @WorkerThread
+    @Nullable
+    public static ModelSnapshot read(Context context, InvariantDeviceProfile idp) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+        UserCache userCache = UserCache.INSTANCE.get(context);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new AtomicFile(file).openRead()))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            long dbGeneration = in.readLong();
+            String configKey = in.readUTF();
+            if (dbGeneration != getDbGeneration(context)
+                    || !configKey.equals(getConfigKey(idp))) {
+                return null;
+            }
+            int screenCount = in.readInt();
+            IntArray orderedScreenIds = new IntArray(screenCount);
+            for (int i = 0; i < screenCount; i++) {
+                orderedScreenIds.add(in.readInt());
+            }
+            int itemCount = in.readInt();
+            ArrayList<ItemInfo> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                ItemInfo info = readItem(in, userCache);
+                if (info != null) {
+                    items.add(info);
+                }
+            }
+            return new ModelSnapshot(orderedScreenIds, items, dbGeneration, configKey);
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            Log.e(TAG, "Failed to read model snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the next item, returning null if the item can not be shown anymore
+     */
+    @Nullable
+    private static ItemInfo readItem(DataInputStream in, UserCache userCache)
+            throws IOException, URISyntaxException {
+        int itemType = in.readInt();
+        ItemInfo info;
+        if (itemType == ITEM_TYPE_FOLDER) {
+            info = new FolderInfo();
+        } else if (itemType == ITEM_TYPE_APPLICATION || itemType == ITEM_TYPE_SHORTCUT
+                || itemType == ITEM_TYPE_DEEP_SHORTCUT) {
+            info = new WorkspaceItemInfo();
+        } else {
+            throw new IOException("Unknown item type " + itemType);
+        }
+        info.itemType = itemType;
+        info.id = in.readInt();
+        info.container = in.readInt();
+        info.screenId = in.readInt();
+        info.cellX = in.readInt();
+        info.cellY = in.readInt();
+        info.spanX = in.readInt();
+        info.spanY = in.readInt();
+        info.rank = in.readInt();
+        UserHandle user = userCache.getUserForSerialNumber(in.readLong());
+        info.user = user;
+        info.title = in.readUTF();
+
+        if (info instanceof FolderInfo) {
+            FolderInfo folder = (FolderInfo) info;
+            folder.options = in.readInt();
+            int childCount = in.readInt();
+            for (int i = 0; i < childCount; i++) {
+                ItemInfo child = readItem(in, userCache);
+                if (child instanceof WorkspaceItemInfo) {
+                    folder.contents.add((WorkspaceItemInfo) child);
+                }
+            }
+            return user == null ? null : folder;
+        }
+
+        WorkspaceItemInfo item = (WorkspaceItemInfo) info;
+        item.intent = Intent.parseUri(in.readUTF(), 0);
+        item.status = in.readInt();
+        item.options = in.readInt();
+        item.runtimeStatusFlags = in.readInt();
+        int iconSize = in.readInt();
+        if (iconSize > 0) {
+            byte[] icon = new byte[iconSize];
+            in.readFully(icon);
+            int color = in.readInt();
+            Bitmap bitmap = BitmapFactory.decodeByteArray(icon, 0, iconSize);
+            if (bitmap != null) {
+                item.bitmap = new BitmapInfo(bitmap, color);
+            }
+        }
+        return user == null ? null : item;
+    }
+}
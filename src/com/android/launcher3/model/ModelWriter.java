@@ -23,9 +23,11 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.net.Uri;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherModel;
@@ -44,15 +46,18 @@ import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.ContentWriter;
 import com.android.launcher3.util.Executors;
+import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.LooperExecutor;
 import com.android.launcher3.widget.LauncherAppWidgetHost;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -64,6 +69,15 @@ public class ModelWriter {
 
     private static final String TAG = "ModelWriter";
 
+    // Whether the stacks of all the writes are captured, which is turned on once a write has been
+    // found inconsistent with the model, so that the origin of the next ones is known
+    private static volatile boolean sCaptureStackTraces;
+    private static final AtomicInteger sCapturedStackTraces = new AtomicInteger();
+    // Writes of an item which isn't the one in the model, but is equal to it
+    private static final AtomicInteger sEquivalentItemWrites = new AtomicInteger();
+    // Writes of an item which doesn't match the one in the model
+    private static final AtomicInteger sMismatchedItemWrites = new AtomicInteger();
+
     private final Context mContext;
     private final LauncherModel mModel;
     private final BgDataModel mBgDataModel;
@@ -79,6 +93,14 @@ public class ModelWriter {
     private final List<Runnable> mDeleteRunnables = new ArrayList<>();
     private boolean mPreparingToUndo;
 
+    // The updates requested by the current main thread task, which are written together
+    private final Object mUpdatesLock = new Object();
+    private UpdateItemsRunnable mPendingUpdates;
+    private final Runnable mFlushUpdates = this::flushUpdates;
+    private int mUpdateBatchCount;
+
+    private final ModelVerifier mNoOpVerifier;
+
     public ModelWriter(Context context, LauncherModel model, BgDataModel dataModel,
             boolean hasVerticalHotseat, boolean verifyChanges,
             @Nullable Callbacks owner) {
@@ -89,6 +111,7 @@ public class ModelWriter {
         mVerifyChanges = verifyChanges;
         mOwner = owner;
         mUiExecutor = Executors.MAIN_EXECUTOR;
+        mNoOpVerifier = new ModelVerifier();
     }
 
     private void updateItemInfoProps(
@@ -121,7 +144,22 @@ public class ModelWriter {
         }
     }
 
-    private void checkItemInfoLocked(int itemId, ItemInfo item, StackTraceElement[] stackTrace) {
+    /**
+     * Returns the stack of the current write if stacks are captured, or null. By default, only
+     * the name of the operation is kept to identify where a write comes from, as walking the
+     * stack of every write is costly.
+     */
+    @Nullable
+    private static StackTraceElement[] captureStackTrace() {
+        if (!sCaptureStackTraces && !FeatureFlags.ENABLE_MODEL_WRITE_STACK_TRACES.get()) {
+            return null;
+        }
+        sCapturedStackTraces.incrementAndGet();
+        return new Throwable().getStackTrace();
+    }
+
+    private void checkItemInfoLocked(int itemId, ItemInfo item, String operation,
+            @Nullable StackTraceElement[] stackTrace) {
         ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
         if (modelItem != null && item != modelItem) {
             // check all the data is consistent
@@ -139,6 +177,7 @@ public class ModelWriter {
                         modelItem.spanX == item.spanX &&
                         modelItem.spanY == item.spanY) {
                     // For all intents and purposes, this is the same object
+                    sEquivalentItemWrites.incrementAndGet();
                     return;
                 }
             }
@@ -146,10 +185,13 @@ public class ModelWriter {
             // the modelItem needs to match up perfectly with item if our model is
             // to be consistent with the database-- for now, just require
             // modelItem == item or the equality check above
+            sMismatchedItemWrites.incrementAndGet();
+            sCaptureStackTraces = true;
             String msg = "item: " + ((item != null) ? item.toString() : "null") +
                     "modelItem: " +
                     ((modelItem != null) ? modelItem.toString() : "null") +
-                    "Error: ItemInfo passed to checkItemInfo doesn't match original";
+                    "Error: ItemInfo passed to checkItemInfo doesn't match original, in " +
+                    operation;
             RuntimeException e = new RuntimeException(msg);
             if (stackTrace != null) {
                 e.setStackTrace(stackTrace);
@@ -166,13 +208,14 @@ public class ModelWriter {
         updateItemInfoProps(item, container, screenId, cellX, cellY);
         notifyItemModified(item);
 
-        enqueueDeleteRunnable(new UpdateItemRunnable(item, () ->
+        enqueueUpdate(item, () ->
                 new ContentWriter(mContext)
                         .put(Favorites.CONTAINER, item.container)
                         .put(Favorites.CELLX, item.cellX)
                         .put(Favorites.CELLY, item.cellY)
                         .put(Favorites.RANK, item.rank)
-                        .put(Favorites.SCREEN, item.screenId)));
+                        .put(Favorites.SCREEN, item.screenId)
+                        .getValues(mContext), "moveItemInDatabase", true /* canUndo */);
     }
 
     /**
@@ -180,7 +223,6 @@ public class ModelWriter {
      * cellX, cellY have already been updated on the ItemInfos.
      */
     public void moveItemsInDatabase(final ArrayList<ItemInfo> items, int container, int screen) {
-        ArrayList<ContentValues> contentValues = new ArrayList<>();
         int count = items.size();
         notifyOtherCallbacks(c -> c.bindItemsModified(items));
 
@@ -195,9 +237,8 @@ public class ModelWriter {
             values.put(Favorites.RANK, item.rank);
             values.put(Favorites.SCREEN, item.screenId);
 
-            contentValues.add(values);
+            enqueueUpdate(item, () -> values, "moveItemsInDatabase", true /* canUndo */);
         }
-        enqueueDeleteRunnable(new UpdateItemsRunnable(items, contentValues));
     }
 
     /**
@@ -210,7 +251,7 @@ public class ModelWriter {
         item.spanY = spanY;
         notifyItemModified(item);
 
-        MODEL_EXECUTOR.execute(new UpdateItemRunnable(item, () ->
+        enqueueUpdate(item, () ->
                 new ContentWriter(mContext)
                         .put(Favorites.CONTAINER, item.container)
                         .put(Favorites.CELLX, item.cellX)
@@ -218,7 +259,8 @@ public class ModelWriter {
                         .put(Favorites.RANK, item.rank)
                         .put(Favorites.SPANX, item.spanX)
                         .put(Favorites.SPANY, item.spanY)
-                        .put(Favorites.SCREEN, item.screenId)));
+                        .put(Favorites.SCREEN, item.screenId)
+                        .getValues(mContext), "modifyItemInDatabase", false /* canUndo */);
     }
 
     /**
@@ -226,11 +268,11 @@ public class ModelWriter {
      */
     public void updateItemInDatabase(ItemInfo item) {
         notifyItemModified(item);
-        MODEL_EXECUTOR.execute(new UpdateItemRunnable(item, () -> {
+        enqueueUpdate(item, () -> {
             ContentWriter writer = new ContentWriter(mContext);
             item.onAddToDatabase(writer);
-            return writer;
-        }));
+            return writer.getValues(mContext);
+        }, "updateItemInDatabase", false /* canUndo */);
     }
 
     private void notifyItemModified(ItemInfo item) {
@@ -249,9 +291,9 @@ public class ModelWriter {
         item.id = Settings.call(cr, Settings.METHOD_NEW_ITEM_ID).getInt(Settings.EXTRA_VALUE);
         notifyOtherCallbacks(c -> c.bindItems(Collections.singletonList(item), false));
 
-        ModelVerifier verifier = new ModelVerifier();
-        final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
-        MODEL_EXECUTOR.execute(() -> {
+        ModelVerifier verifier = createVerifier();
+        final StackTraceElement[] stackTrace = captureStackTrace();
+        executeOnModelThread(() -> {
             // Write the item on background thread, as some properties might have been updated in
             // the background.
             final ContentWriter writer = new ContentWriter(mContext);
@@ -261,7 +303,7 @@ public class ModelWriter {
             cr.insert(Favorites.CONTENT_URI, writer.getValues(mContext));
 
             synchronized (mBgDataModel) {
-                checkItemInfoLocked(item.id, item, stackTrace);
+                checkItemInfoLocked(item.id, item, "addItemToDatabase", stackTrace);
                 mBgDataModel.addItem(mContext, item, true);
                 verifier.verifyModel();
             }
@@ -288,7 +330,7 @@ public class ModelWriter {
      * Removes the specified items from the database
      */
     public void deleteItemsFromDatabase(final Collection<? extends ItemInfo> items) {
-        ModelVerifier verifier = new ModelVerifier();
+        ModelVerifier verifier = createVerifier();
         FileLog.d(TAG, "removing items from db " + items.stream().map(
                 (item) -> item.getTargetComponent() == null ? ""
                         : item.getTargetComponent().getPackageName()).collect(
@@ -309,7 +351,7 @@ public class ModelWriter {
      * Remove the specified folder and all its contents from the database.
      */
     public void deleteFolderAndContentsFromDatabase(final FolderInfo info) {
-        ModelVerifier verifier = new ModelVerifier();
+        ModelVerifier verifier = createVerifier();
         notifyDelete(Collections.singleton(info));
 
         enqueueDeleteRunnable(() -> {
@@ -365,26 +407,104 @@ public class ModelWriter {
      */
     private void enqueueDeleteRunnable(Runnable r) {
         if (mPreparingToUndo) {
-            mDeleteRunnables.add(r);
+            mDeleteRunnables.add(() -> executeOnModelThread(r));
         } else {
-            MODEL_EXECUTOR.execute(r);
+            executeOnModelThread(r);
         }
     }
 
     public void commitDelete() {
         mPreparingToUndo = false;
         for (Runnable runnable : mDeleteRunnables) {
-            MODEL_EXECUTOR.execute(runnable);
+            runnable.run();
         }
         mDeleteRunnables.clear();
     }
 
+    /**
+     * Runs {@param r} on the model thread, after the updates requested before it are written
+     */
+    private void executeOnModelThread(Runnable r) {
+        flushUpdates();
+        mModel.flushPendingWrites();
+        MODEL_EXECUTOR.execute(r);
+    }
+
+    /**
+     * Writes the values of {@param item} to the DB. The updates requested on the main thread are
+     * handed to the model thread together, in a single transaction, once the main thread handles
+     * its next message. The updates to the same item are merged into one. An update is never
+     * written after an operation requested after it, nor after the model tasks and loads
+     * enqueued through {@link LauncherModel} after it.
+     *
+     * @param operation The name of the operation, reported if the update is inconsistent
+     * @param canUndo whether the update is deferred with the delete operations, see
+     *        {@link #prepareToUndoDelete()}
+     */
+    private void enqueueUpdate(ItemInfo item, Supplier<ContentValues> values, String operation,
+            boolean canUndo) {
+        if (canUndo && mPreparingToUndo) {
+            UpdateItemRunnable update = new UpdateItemRunnable(item, values, operation);
+            mDeleteRunnables.add(() -> enqueueUpdate(update));
+        } else {
+            enqueueUpdate(new UpdateItemRunnable(item, values, operation));
+        }
+    }
+
+    private void enqueueUpdate(UpdateItemRunnable update) {
+        boolean scheduleFlush;
+        synchronized (mUpdatesLock) {
+            scheduleFlush = mPendingUpdates == null;
+            if (scheduleFlush) {
+                mPendingUpdates = new UpdateItemsRunnable();
+            }
+            mPendingUpdates.add(update);
+        }
+        if (!FeatureFlags.ENABLE_MODEL_WRITE_COALESCING.get()
+                || Looper.myLooper() != mUiExecutor.getLooper()) {
+            // Only coalesce the updates of the main thread, others are written right away as
+            // the callers may expect the DB to be up to date
+            flushUpdates();
+        } else if (scheduleFlush) {
+            mUiExecutor.post(mFlushUpdates);
+            mModel.addPendingWriter(this);
+        }
+    }
+
+    /**
+     * Hands the pending updates to the model thread, without waiting for the next main thread
+     * message. This should be called before the process may be stopped.
+     */
+    public void flushUpdates() {
+        UpdateItemsRunnable updates;
+        synchronized (mUpdatesLock) {
+            updates = mPendingUpdates;
+            mPendingUpdates = null;
+        }
+        if (updates != null) {
+            mModel.removePendingWriter(this);
+            MODEL_EXECUTOR.execute(updates);
+        }
+    }
+
+    /**
+     * Returns the number of transactions used to write the updates of items
+     */
+    @VisibleForTesting
+    public int getUpdateBatchCount() {
+        synchronized (mUpdatesLock) {
+            return mUpdateBatchCount;
+        }
+    }
+
     /**
      * Aborts a previous delete operation pending commit
      */
     public void abortDelete() {
         mPreparingToUndo = false;
         mDeleteRunnables.clear();
+        // Write the updates which were not deferred before reloading
+        flushUpdates();
         // We do a full reload here instead of just a rebind because Folders change their internal
         // state when dragging an item out, which clobbers the rebind unless we load from the DB.
         mModel.forceReload();
@@ -405,67 +525,114 @@ public class ModelWriter {
     }
 
     private class UpdateItemRunnable extends UpdateItemBaseRunnable {
-        private final ItemInfo mItem;
-        private final Supplier<ContentWriter> mWriter;
+        private ItemInfo mItem;
         private final int mItemId;
+        private final ArrayList<Supplier<ContentValues>> mValues = new ArrayList<>(1);
 
-        UpdateItemRunnable(ItemInfo item, Supplier<ContentWriter> writer) {
+        UpdateItemRunnable(ItemInfo item, Supplier<ContentValues> values, String operation) {
+            super(operation);
             mItem = item;
-            mWriter = writer;
             mItemId = item.id;
+            mValues.add(values);
+        }
+
+        /**
+         * Merges a later update of the same item into this one, which is then reported and
+         * verified as the later update
+         */
+        void merge(UpdateItemRunnable update) {
+            mItem = update.mItem;
+            mValues.addAll(update.mValues);
+            setSource(update);
+        }
+
+        ContentValues getValues() {
+            // The values are read on the model thread, as some properties might have been
+            // updated in the background. The later updates override the earlier ones.
+            if (mValues.size() == 1) {
+                return mValues.get(0).get();
+            }
+            ContentValues values = new ContentValues();
+            for (Supplier<ContentValues> update : mValues) {
+                values.putAll(update.get());
+            }
+            return values;
         }
 
         @Override
         public void run() {
             Uri uri = Favorites.getContentUri(mItemId);
-            mContext.getContentResolver().update(uri, mWriter.get().getValues(mContext),
-                    null, null);
+            mContext.getContentResolver().update(uri, getValues(), null, null);
             updateItemArrays(mItem, mItemId);
         }
     }
 
-    private class UpdateItemsRunnable extends UpdateItemBaseRunnable {
-        private final ArrayList<ContentValues> mValues;
-        private final ArrayList<ItemInfo> mItems;
-
-        UpdateItemsRunnable(ArrayList<ItemInfo> items, ArrayList<ContentValues> values) {
-            mValues = values;
-            mItems = items;
+    /**
+     * The updates requested by a main thread task, which are written in a single transaction
+     */
+    private class UpdateItemsRunnable implements Runnable {
+        private final IntSparseArrayMap<UpdateItemRunnable> mUpdates = new IntSparseArrayMap<>();
+
+        void add(UpdateItemRunnable update) {
+            UpdateItemRunnable pending = mUpdates.get(update.mItemId);
+            if (pending != null) {
+                pending.merge(update);
+            } else {
+                mUpdates.put(update.mItemId, update);
+            }
         }
 
         @Override
         public void run() {
-            ArrayList<ContentProviderOperation> ops = new ArrayList<>();
-            int count = mItems.size();
-            for (int i = 0; i < count; i++) {
-                ItemInfo item = mItems.get(i);
-                final int itemId = item.id;
-                final Uri uri = Favorites.getContentUri(itemId);
-                ContentValues values = mValues.get(i);
-
-                ops.add(ContentProviderOperation.newUpdate(uri).withValues(values).build());
-                updateItemArrays(item, itemId);
+            synchronized (mUpdatesLock) {
+                mUpdateBatchCount++;
+            }
+            if (mUpdates.size() == 1) {
+                mUpdates.valueAt(0).run();
+                return;
+            }
+
+            ArrayList<ContentProviderOperation> ops = new ArrayList<>(mUpdates.size());
+            for (UpdateItemRunnable update : mUpdates) {
+                Uri uri = Favorites.getContentUri(update.mItemId);
+                ops.add(ContentProviderOperation.newUpdate(uri)
+                        .withValues(update.getValues()).build());
             }
             try {
                 mContext.getContentResolver().applyBatch(LauncherProvider.AUTHORITY, ops);
             } catch (Exception e) {
                 e.printStackTrace();
             }
+            for (UpdateItemRunnable update : mUpdates) {
+                update.updateItemArrays(update.mItem, update.mItemId);
+            }
         }
     }
 
     private abstract class UpdateItemBaseRunnable implements Runnable {
-        private final StackTraceElement[] mStackTrace;
-        private final ModelVerifier mVerifier = new ModelVerifier();
+        private String mOperation;
+        @Nullable
+        private StackTraceElement[] mStackTrace;
+        private ModelVerifier mVerifier = createVerifier();
+
+        UpdateItemBaseRunnable(String operation) {
+            mOperation = operation;
+            mStackTrace = captureStackTrace();
+        }
 
-        UpdateItemBaseRunnable() {
-            mStackTrace = new Throwable().getStackTrace();
+        /**
+         * Reports and verifies this update as {@param update}
+         */
+        protected void setSource(UpdateItemBaseRunnable update) {
+            mOperation = update.mOperation;
+            mStackTrace = update.mStackTrace;
+            mVerifier = update.mVerifier;
         }
 
         protected void updateItemArrays(ItemInfo item, int itemId) {
             // Lock on mBgLock *after* the db operation
             synchronized (mBgDataModel) {
-                checkItemInfoLocked(itemId, item, mStackTrace);
+                checkItemInfoLocked(itemId, item, mOperation, mStackTrace);
 
                 if (item.container != Favorites.CONTAINER_DESKTOP &&
                         item.container != Favorites.CONTAINER_HOTSEAT) {
@@ -506,6 +673,20 @@ public class ModelWriter {
         }
     }
 
+    private ModelVerifier createVerifier() {
+        // The verifiers don't do anything if the changes aren't verified, so share one
+        return mVerifyChanges ? new ModelVerifier() : mNoOpVerifier;
+    }
+
+    /**
+     * Dumps the counts of the writes found inconsistent with the model
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ModelWriter: equivalentItemWrites=" + sEquivalentItemWrites.get()
+                + " mismatchedItemWrites=" + sMismatchedItemWrites.get()
+                + " capturedStackTraces=" + sCapturedStackTraces.get());
+    }
+
     /**
      * Utility class to verify model updates are propagated properly to the callback.
      */
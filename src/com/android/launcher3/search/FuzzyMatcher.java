@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+/**
+ * Scores a query against a {@link TokenizedString}, supporting (from best to worst):
+ *   1) Exact match of the full string
+ *   2) Prefix match of a word, same as {@link StringMatcherUtility#matches}
+ *   3) Acronym match, where every query character starts a word (eg, "gm" for "Google Maps")
+ *   4) Subsequence match, starting at a word (eg, "gmal" for "Gmail")
+ *   5) Prefix match of a word with a small number of typos (eg, "calander" for "Calendar")
+ *
+ * The matcher keeps scratch buffers between calls and does not allocate once warmed up, when
+ * both the query and the target are printable ASCII. A single instance should be used for
+ * scoring all entries, on a single thread.
+ */
+public class FuzzyMatcher {
+
+    public static final int NO_MATCH = 0;
+
+    private static final int SCORE_EXACT = 500;
+    private static final int SCORE_WORD_PREFIX = 400;
+    private static final int SCORE_ACRONYM = 300;
+    private static final int SCORE_SUBSEQUENCE = 200;
+    private static final int SCORE_TYPO = 100;
+
+    /** Penalty for every word before the matching word */
+    private static final int WORD_PENALTY = 10;
+    /** Penalty for every typo */
+    private static final int TYPO_PENALTY = 30;
+    /** Maximum penalty within a match category, so that categories never overlap */
+    private static final int MAX_PENALTY = 99;
+
+    /** Minimum query length for acronym and subsequence matching */
+    private static final int MIN_FUZZY_QUERY_LENGTH = 2;
+    /** Minimum query length for allowing one typo, two typos are allowed at twice the length */
+    private static final int MIN_TYPO_QUERY_LENGTH = 4;
+
+    private final StringMatcher mMatcher;
+
+    // Scratch rows for the edit distance computation
+    private int[] mPrevRow = new int[16];
+    private int[] mCurRow = new int[16];
+
+    public FuzzyMatcher() {
+        this(StringMatcher.getInstance());
+    }
+
+    public FuzzyMatcher(StringMatcher matcher) {
+        mMatcher = matcher;
+    }
+
+    /**
+     * Returns the score of {@param query} against {@param target}, or {@link #NO_MATCH}. Higher
+     * scores are better matches.
+     *
+     * @param query the search query in lower case
+     * @param isSimpleQuery result of {@link TokenizedString#isSimple(String)} for the query
+     * @param isHanQuery result of {@link StringMatcherUtility#requestSimpleFuzzySearch(String)}
+     *                   for the query
+     */
+    public int score(String query, boolean isSimpleQuery, boolean isHanQuery,
+            TokenizedString target) {
+        int queryLength = query.length();
+        if (queryLength == 0) {
+            return NO_MATCH;
+        }
+        if (isHanQuery) {
+            int index = target.lowerText.indexOf(query);
+            return index < 0 ? NO_MATCH : SCORE_WORD_PREFIX - Math.min(index, MAX_PENALTY);
+        }
+
+        int word = target.findWordMatch(query, isSimpleQuery, mMatcher);
+        if (word >= 0) {
+            if (word == 0 && queryLength == target.text.length()) {
+                return SCORE_EXACT;
+            }
+            // Prefer earlier words, then shorter strings
+            int extraChars = target.text.length() - queryLength;
+            return SCORE_WORD_PREFIX
+                    - Math.min(word * WORD_PENALTY + Math.min(extraChars, WORD_PENALTY - 1),
+                    MAX_PENALTY);
+        }
+        if (queryLength < MIN_FUZZY_QUERY_LENGTH) {
+            return NO_MATCH;
+        }
+
+        int skipped = matchAcronym(query, target);
+        if (skipped >= 0) {
+            return SCORE_ACRONYM - Math.min(skipped, MAX_PENALTY);
+        }
+        int gaps = matchSubsequence(query, target);
+        if (gaps >= 0) {
+            return SCORE_SUBSEQUENCE - Math.min(gaps, MAX_PENALTY);
+        }
+
+        int maxTypos = queryLength < MIN_TYPO_QUERY_LENGTH ? 0
+                : (queryLength < 2 * MIN_TYPO_QUERY_LENGTH ? 1 : 2);
+        if (maxTypos > 0) {
+            int typos = minWordPrefixDistance(query, target, maxTypos);
+            if (typos <= maxTypos) {
+                return SCORE_TYPO - typos * TYPO_PENALTY;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Returns the number of words skipped if every character of the query is the first
+     * character of a word, in order, or -1 otherwise.
+     */
+    private static int matchAcronym(String query, TokenizedString target) {
+        int queryLength = query.length();
+        int wordCount = target.getWordCount();
+        if (wordCount < queryLength) {
+            return -1;
+        }
+        String text = target.text;
+        int q = 0;
+        int skipped = 0;
+        for (int w = 0; w < wordCount && q < queryLength; w++) {
+            if (Character.toLowerCase(text.charAt(target.getWordStart(w))) == query.charAt(q)) {
+                q++;
+            } else {
+                skipped++;
+            }
+        }
+        return q == queryLength ? skipped : -1;
+    }
+
+    /**
+     * Returns the number of characters skipped if the query is a subsequence of the target
+     * starting at a word boundary, or -1 otherwise.
+     */
+    private static int matchSubsequence(String query, TokenizedString target) {
+        String text = target.text;
+        int textLength = text.length();
+        int queryLength = query.length();
+        char first = query.charAt(0);
+        for (int w = 0; w < target.getWordCount(); w++) {
+            int start = target.getWordStart(w);
+            if (textLength - start < queryLength) {
+                return -1;
+            }
+            if (Character.toLowerCase(text.charAt(start)) != first) {
+                continue;
+            }
+            int q = 1;
+            int gaps = 0;
+            for (int i = start + 1; i < textLength && q < queryLength; i++) {
+                if (Character.toLowerCase(text.charAt(i)) == query.charAt(q)) {
+                    q++;
+                } else {
+                    gaps++;
+                }
+            }
+            if (q == queryLength) {
+                return gaps;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the minimum edit distance between the query and a prefix of any word in the
+     * target, or a value greater than {@param maxDistance} if there is no such prefix.
+     */
+    private int minWordPrefixDistance(String query, TokenizedString target, int maxDistance) {
+        int queryLength = query.length();
+        if (mPrevRow.length <= queryLength) {
+            mPrevRow = new int[queryLength + 1];
+            mCurRow = new int[queryLength + 1];
+        }
+
+        String text = target.text;
+        int textLength = text.length();
+        int best = maxDistance + 1;
+        for (int w = 0; w < target.getWordCount() && best > 0; w++) {
+            int start = target.getWordStart(w);
+            int end = Math.min(textLength, start + queryLength + maxDistance);
+
+            // Row for the empty text prefix, query chars can only be inserted
+            int[] prev = mPrevRow;
+            int[] cur = mCurRow;
+            for (int i = 0; i <= queryLength; i++) {
+                prev[i] = i;
+            }
+            best = Math.min(best, prev[queryLength]);
+
+            for (int j = start; j < end; j++) {
+                char c = Character.toLowerCase(text.charAt(j));
+                cur[0] = j - start + 1;
+                int rowMin = cur[0];
+                for (int i = 1; i <= queryLength; i++) {
+                    int cost = query.charAt(i - 1) == c ? 0 : 1;
+                    cur[i] = Math.min(Math.min(prev[i] + 1, cur[i - 1] + 1), prev[i - 1] + cost);
+                    rowMin = Math.min(rowMin, cur[i]);
+                }
+                best = Math.min(best, cur[queryLength]);
+                if (rowMin >= best) {
+                    // No further text character can improve the distance
+                    break;
+                }
+                int[] tmp = prev;
+                prev = cur;
+                cur = tmp;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Aggregated latency of search queries, from the time a query is issued until its results
+ * are delivered to the UI thread.
+ */
+public class SearchLatencyStats {
+
+    /** Upper bounds (exclusive, in milliseconds) of the histogram buckets */
+    private static final int[] BUCKETS_MS = new int[] {1, 2, 4, 8, 16, 32};
+
+    public static final SearchLatencyStats APPS = new SearchLatencyStats("AppSearch");
+    public static final SearchLatencyStats WIDGETS = new SearchLatencyStats("WidgetSearch");
+
+    private final String mName;
+    private final int[] mHistogram = new int[BUCKETS_MS.length + 1];
+
+    private int mCompletedCount;
+    private int mCancelledCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+    private long mLastNanos;
+
+    private SearchLatencyStats(String name) {
+        mName = name;
+    }
+
+    /**
+     * Records a query which delivered its results after {@param latencyNanos}
+     */
+    public synchronized void onQueryCompleted(long latencyNanos) {
+        mCompletedCount++;
+        mTotalNanos += latencyNanos;
+        mMaxNanos = Math.max(mMaxNanos, latencyNanos);
+        mLastNanos = latencyNanos;
+
+        long latencyMs = latencyNanos / 1_000_000;
+        int bucket = 0;
+        while (bucket < BUCKETS_MS.length && latencyMs >= BUCKETS_MS[bucket]) {
+            bucket++;
+        }
+        mHistogram[bucket]++;
+    }
+
+    /**
+     * Records a query which was superseded by a newer query before delivering results
+     */
+    public synchronized void onQueryCancelled() {
+        mCancelledCount++;
+    }
+
+    /**
+     * Clears all the recorded data
+     */
+    public synchronized void reset() {
+        mCompletedCount = 0;
+        mCancelledCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+        mLastNanos = 0;
+        Arrays.fill(mHistogram, 0);
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + mName + " latency:"
+                + " completed=" + mCompletedCount
+                + " cancelled=" + mCancelledCount
+                + " avgUs=" + (mCompletedCount == 0 ? 0 : mTotalNanos / mCompletedCount / 1000)
+                + " maxUs=" + mMaxNanos / 1000
+                + " lastUs=" + mLastNanos / 1000);
+        StringBuilder histogram = new StringBuilder(prefix).append("\thistogram:");
+        for (int i = 0; i < mHistogram.length; i++) {
+            histogram.append(i < BUCKETS_MS.length
+                    ? " <" + BUCKETS_MS[i] : " >=" + BUCKETS_MS[i - 1]);
+            histogram.append("ms=").append(mHistogram[i]);
+        }
+        writer.println(histogram);
+    }
+}
@@ -58,6 +58,15 @@ public class StringMatcherUtility {
         return false;
     }
 
+    /**
+     * Same as {@link #matches(String, String, StringMatcher)} but uses the pre-computed word
+     * boundaries of {@code target}.
+     */
+    public static boolean matches(String query, TokenizedString target, StringMatcher matcher) {
+        return target.matches(query, TokenizedString.isSimple(query),
+                requestSimpleFuzzySearch(query), matcher);
+    }
+
     /**
      * Returns true if the current point should be a break point. Following cases
      * are considered as break points:
@@ -66,7 +75,7 @@ public class StringMatcherUtility {
      *      3) Any capital character after a digit or small character
      *      4) Any capital character before a small character
      */
-    private static boolean isBreak(int thisType, int prevType, int nextType) {
+    static boolean isBreak(int thisType, int prevType, int nextType) {
         switch (prevType) {
             case Character.UNASSIGNED:
             case Character.SPACE_SEPARATOR:
@@ -147,7 +156,7 @@ public class StringMatcherUtility {
     /**
      * Matching optimization to search in Chinese.
      */
-    private static boolean requestSimpleFuzzySearch(String s) {
+    public static boolean requestSimpleFuzzySearch(String s) {
         for (int i = 0; i < s.length(); ) {
             int codepoint = s.codePointAt(i);
             i += Character.charCount(codepoint);
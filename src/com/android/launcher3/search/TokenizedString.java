@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+/**
+ * A string which has been pre-processed for {@link StringMatcherUtility}, so that repeated
+ * queries against the same target do not need to re-compute the word boundaries.
+ */
+public final class TokenizedString {
+
+    private static final int[] NO_BREAKS = new int[0];
+
+    public static final TokenizedString EMPTY = new TokenizedString("");
+
+    /** The original string */
+    public final String text;
+    /** Lower case representation of {@link #text}, used for simple fuzzy search */
+    public final String lowerText;
+
+    /** Sorted list of char offsets in {@link #text} where a word starts */
+    private final int[] mBreaks;
+    /**
+     * True if the string only contains printable ASCII characters, in which case a case
+     * insensitive region match is equivalent to a primary strength collation match.
+     */
+    private final boolean mIsSimple;
+
+    private TokenizedString(String text) {
+        this.text = text;
+        this.lowerText = text.toLowerCase();
+        mIsSimple = isSimple(text);
+        mBreaks = computeBreaks(text);
+    }
+
+    /**
+     * Returns a tokenized representation of {@param target}
+     */
+    public static TokenizedString of(@Nullable CharSequence target) {
+        return target == null || target.length() == 0
+                ? EMPTY : new TokenizedString(target.toString());
+    }
+
+    /**
+     * Returns {@code true} is {@code query} is a prefix substring of a complete word/phrase in
+     * this string. The result is same as
+     * {@link StringMatcherUtility#matches(String, String, StringMatcher)}
+     *
+     * @param query the search query in lower case
+     * @param isSimpleQuery result of {@link #isSimple(String)} for the query
+     * @param isHanQuery result of {@link StringMatcherUtility#requestSimpleFuzzySearch(String)}
+     *                   for the query
+     */
+    public boolean matches(String query, boolean isSimpleQuery, boolean isHanQuery,
+            StringMatcher matcher) {
+        if (isHanQuery) {
+            return query.length() > 0 && lowerText.contains(query);
+        }
+        return findWordMatch(query, isSimpleQuery, matcher) >= 0;
+    }
+
+    /**
+     * Returns the index of the first word which starts with {@code query}, or -1 if there is
+     * no such word. Unlike {@link #matches}, this does not handle the simple fuzzy search.
+     *
+     * @see #matches(String, boolean, boolean, StringMatcher)
+     */
+    public int findWordMatch(String query, boolean isSimpleQuery, StringMatcher matcher) {
+        int queryLength = query.length();
+        int targetLength = text.length();
+        if (targetLength < queryLength || queryLength <= 0) {
+            return -1;
+        }
+
+        int end = targetLength - queryLength;
+        boolean regionMatch = isSimpleQuery && mIsSimple;
+        for (int i = 0; i < mBreaks.length; i++) {
+            int b = mBreaks[i];
+            if (b > end) {
+                // Breaks are sorted, no other break can fit the query
+                return -1;
+            }
+            if (regionMatch) {
+                if (text.regionMatches(true, b, query, 0, queryLength)) {
+                    return i;
+                }
+            } else if (matcher.matches(query, text.substring(b, b + queryLength))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of words in this string
+     */
+    public int getWordCount() {
+        return mBreaks.length;
+    }
+
+    /**
+     * Returns the char offset at which the word at {@param index} starts
+     */
+    public int getWordStart(int index) {
+        return mBreaks[index];
+    }
+
+    /**
+     * Returns true if the string is made up only of printable ASCII characters
+     */
+    public static boolean isSimple(String s) {
+        for (int i = s.length() - 1; i >= 0; i--) {
+            char c = s.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] computeBreaks(String target) {
+        int targetLength = target.length();
+        if (targetLength == 0) {
+            return NO_BREAKS;
+        }
+        int[] breaks = new int[targetLength];
+        int count = 0;
+
+        int lastType;
+        int thisType = Character.UNASSIGNED;
+        int nextType = Character.getType(target.codePointAt(0));
+        for (int i = 0; i < targetLength; i++) {
+            lastType = thisType;
+            thisType = nextType;
+            nextType = i < (targetLength - 1)
+                    ? Character.getType(target.codePointAt(i + 1)) : Character.UNASSIGNED;
+            if (StringMatcherUtility.isBreak(thisType, lastType, nextType)) {
+                breaks[count++] = i;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(breaks, 0, result, 0, count);
+        return result;
+    }
+}
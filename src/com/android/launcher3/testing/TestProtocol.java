@@ -109,6 +109,9 @@ public final class TestProtocol {
     public static final String REQUEST_GET_GRID_TASK_SIZE_RECT_FOR_TABLET =
             "get-grid-task-size-rect-for-tablet";
     public static final String REQUEST_ENABLE_ROTATION = "enable_rotation";
+    public static final String REQUEST_GET_GESTURE_FRAME_METRICS = "get-gesture-frame-metrics";
+    public static final String REQUEST_RESET_GESTURE_FRAME_METRICS =
+            "reset-gesture-frame-metrics";
 
     public static Long sForcePauseTimeout;
     public static final String REQUEST_SET_FORCE_PAUSE_TIMEOUT = "set-force-pause-timeout";
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import android.graphics.Rect;
+
+import com.android.launcher3.model.data.ItemInfo;
+
+import java.util.Arrays;
+
+/**
+ * Utility object to manage the occupancy in a grid, with the same behavior as
+ * {@link GridOccupancy}. Each row is stored as a bitmask, where bit x is set if the cell in
+ * column x is occupied, so that regions are checked and marked a row at a time.
+ *
+ * The grid can have at most {@link #MAX_COUNT_X} columns.
+ */
+public class BitGridOccupancy {
+
+    public static final int MAX_COUNT_X = Long.SIZE;
+
+    private final int mCountX;
+    private final int mCountY;
+    // Mask of the bits which represent a cell of a row
+    private final long mRowMask;
+    private final long[] mRows;
+
+    public BitGridOccupancy(int countX, int countY) {
+        if (countX > MAX_COUNT_X) {
+            throw new IllegalArgumentException("Grid too wide: " + countX);
+        }
+        mCountX = countX;
+        mCountY = countY;
+        mRowMask = spanMask(0, countX);
+        mRows = new long[countY];
+    }
+
+    public int getCountX() {
+        return mCountX;
+    }
+
+    public int getCountY() {
+        return mCountY;
+    }
+
+    public boolean isOccupied(int x, int y) {
+        return (mRows[y] & (1L << x)) != 0;
+    }
+
+    /**
+     * Returns the cells of row {@param y} as a bitmask, where bit x is set if the cell in column
+     * x is occupied
+     */
+    long getRow(int y) {
+        return mRows[y];
+    }
+
+    /**
+     * Find the first vacant cell, if there is one.
+     *
+     * @param vacantOut Holds the x and y coordinate of the vacant cell
+     * @param spanX Horizontal cell span.
+     * @param spanY Vertical cell span.
+     *
+     * @return true if a vacant cell was found
+     */
+    public boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
+        if (spanX > mCountX) {
+            return false;
+        }
+        // Columns where a region of width spanX can start
+        long startMask = spanMask(0, mCountX - spanX + 1);
+        for (int y = 0; (y + spanY) <= mCountY; y++) {
+            long occupied = 0;
+            for (int j = y; j < y + spanY; j++) {
+                occupied |= mRows[j];
+            }
+            long starts = vacantRunStarts(~occupied & mRowMask, spanX) & startMask;
+            if (starts != 0) {
+                vacantOut[0] = Long.numberOfTrailingZeros(starts);
+                vacantOut[1] = y;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void copyTo(BitGridOccupancy dest) {
+        System.arraycopy(mRows, 0, dest.mRows, 0, mCountY);
+    }
+
+    public void copyTo(GridOccupancy dest) {
+        for (int y = 0; y < mCountY; y++) {
+            for (int x = 0; x < mCountX; x++) {
+                dest.cells[x][y] = isOccupied(x, y);
+            }
+        }
+    }
+
+    /**
+     * Copies the cells of {@param src}, which must be at least as large as this grid
+     */
+    public void copyFrom(GridOccupancy src) {
+        for (int y = 0; y < mCountY; y++) {
+            long row = 0;
+            for (int x = 0; x < mCountX; x++) {
+                if (src.cells[x][y]) {
+                    row |= 1L << x;
+                }
+            }
+            mRows[y] = row;
+        }
+    }
+
+    /**
+     * Marks the cells occupied in {@param other} as occupied in this grid
+     */
+    public void union(BitGridOccupancy other) {
+        int countY = Math.min(mCountY, other.mCountY);
+        for (int y = 0; y < countY; y++) {
+            mRows[y] |= other.mRows[y] & mRowMask;
+        }
+    }
+
+    /**
+     * Marks the cells which are vacant in {@param other} as vacant in this grid
+     */
+    public void intersect(BitGridOccupancy other) {
+        int countY = Math.min(mCountY, other.mCountY);
+        for (int y = 0; y < countY; y++) {
+            mRows[y] &= other.mRows[y];
+        }
+        for (int y = countY; y < mCountY; y++) {
+            mRows[y] = 0;
+        }
+    }
+
+    /**
+     * Returns whether a cell is occupied in both this grid and {@param other}
+     */
+    public boolean intersects(BitGridOccupancy other) {
+        int countY = Math.min(mCountY, other.mCountY);
+        for (int y = 0; y < countY; y++) {
+            if ((mRows[y] & other.mRows[y]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
+        int x2 = x + spanX - 1;
+        int y2 = y + spanY - 1;
+        if (x < 0 || y < 0 || x2 >= mCountX || y2 >= mCountY) {
+            return false;
+        }
+        long mask = spanMask(x, spanX);
+        for (int j = y; j <= y2; j++) {
+            if ((mRows[j] & mask) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
+        if (cellX < 0 || cellY < 0) return;
+        long mask = spanMask(cellX, Math.min(spanX, mCountX - cellX));
+        int y2 = Math.min(cellY + spanY, mCountY);
+        for (int y = cellY; y < y2; y++) {
+            if (value) {
+                mRows[y] |= mask;
+            } else {
+                mRows[y] &= ~mask;
+            }
+        }
+    }
+
+    public void markCells(Rect r, boolean value) {
+        markCells(r.left, r.top, r.width(), r.height(), value);
+    }
+
+    public void markCells(CellAndSpan cell, boolean value) {
+        markCells(cell.cellX, cell.cellY, cell.spanX, cell.spanY, value);
+    }
+
+    public void markCells(ItemInfo item, boolean value) {
+        markCells(item.cellX, item.cellY, item.spanX, item.spanY, value);
+    }
+
+    public void clear() {
+        Arrays.fill(mRows, 0);
+    }
+
+    /**
+     * Returns a mask of {@param span} bits starting at bit {@param start}
+     */
+    private static long spanMask(int start, int span) {
+        if (span <= 0 || start >= Long.SIZE) {
+            return 0;
+        }
+        return (span >= Long.SIZE ? -1L : (1L << span) - 1) << start;
+    }
+
+    /**
+     * Returns a mask where bit x is set if the bits x to x + {@param span} - 1 are set in
+     * {@param vacant}
+     */
+    private static long vacantRunStarts(long vacant, int span) {
+        long starts = vacant;
+        int length = 1;
+        // Each step doubles the length of the runs found so far, up to span
+        while (length < span && starts != 0) {
+            int shift = Math.min(length, span - length);
+            starts &= starts >>> shift;
+            length += shift;
+        }
+        return starts;
+    }
+}
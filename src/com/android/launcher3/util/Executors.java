@@ -75,6 +75,14 @@ public class Executors {
     public static final LooperExecutor MODEL_EXECUTOR =
             new LooperExecutor(createAndStartNewLooper("launcher-loader"));
 
+    /**
+     * Executor used for running search queries, so that a query does not wait behind model
+     * updates and loader work.
+     */
+    public static final LooperExecutor SEARCH_EXECUTOR =
+            new LooperExecutor(
+                    createAndStartNewLooper("launcher-search", Process.THREAD_PRIORITY_FOREGROUND));
+
     /**
      * A simple ThreadFactory to set the thread name and priority when used with executors.
      */
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches reorder solutions of a {@link ReorderSolver} speculatively on a background thread,
+ * from a snapshot of its layout, and adds them back to the solver on the main thread. A request
+ * replaces the requests which haven't started yet, and the solutions are dropped if the layout
+ * has changed by the time they are ready.
+ */
+public class ReorderPrecomputer {
+
+    // Only used on the main thread
+    private final ReorderSolver mSolver;
+    // Only used on the background thread
+    private ReorderSolver mBackgroundSolver;
+
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    public ReorderPrecomputer(ReorderSolver solver) {
+        mSolver = solver;
+    }
+
+    /**
+     * Precomputes the solutions of the layout currently loaded in the solver, for regions of
+     * {@param spanX} by {@param spanY} cells at the first {@param cellCount} positions of
+     * {@param cells}, given as (x, y) pairs. Must be called on the main thread.
+     */
+    public void precompute(int[] cells, int cellCount, int spanX, int spanY) {
+        ReorderSolver.Snapshot snapshot = mSolver.createSnapshot();
+        int[] candidates = Arrays.copyOf(cells, cellCount * 2);
+        int generation = mGeneration.incrementAndGet();
+        UI_HELPER_EXECUTOR.execute(() -> {
+            if (generation != mGeneration.get()) {
+                // A newer request was made, or the requests were cancelled
+                return;
+            }
+            if (mBackgroundSolver == null
+                    || mBackgroundSolver.getCountX() != snapshot.getCountX()
+                    || mBackgroundSolver.getCountY() != snapshot.getCountY()) {
+                mBackgroundSolver = new ReorderSolver(snapshot.getCountX(), snapshot.getCountY());
+            }
+            ReorderSolver.Precomputation precomputation =
+                    mBackgroundSolver.precompute(snapshot, candidates, spanX, spanY);
+            MAIN_EXECUTOR.execute(() -> mSolver.addPrecomputed(precomputation));
+        });
+    }
+
+    /**
+     * Cancels the requests which haven't started yet
+     */
+    public void cancel() {
+        mGeneration.incrementAndGet();
+    }
+}
@@ -0,0 +1,999 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds how the items of a grid can be rearranged so that a region of the grid becomes vacant,
+ * for example to make space for an item being dragged.
+ *
+ * The items are identified by their index in the layout, and all the state of the search is kept
+ * in primitive arrays which are reused between searches. The solutions are memoized per region
+ * and direction, and are kept until the layout is changed, so that a drag hovering over the same
+ * cells doesn't search again.
+ *
+ * A layout is described by calling {@link #beginLayout()}, {@link #addItem} for each item and
+ * {@link #endLayout}.
+ *
+ * Solutions can also be searched ahead of time on another thread: a {@link Snapshot} of the
+ * layout is given to a separate solver, which {@link #precompute}s the solutions of some regions,
+ * and the results are {@link #addPrecomputed added} back to the solver of the layout. Results
+ * computed for a layout which has changed since are discarded.
+ */
+public class ReorderSolver {
+
+    private static final int LEFT = 1 << 0;
+    private static final int TOP = 1 << 1;
+    private static final int RIGHT = 1 << 2;
+    private static final int BOTTOM = 1 << 3;
+
+    private static final int MAX_MEMOIZED_SOLUTIONS = 256;
+
+    // The directions in which the solutions are precomputed, as a drag can come from any side
+    private static final int[][] PRECOMPUTED_DIRECTIONS = new int[][] {
+            {1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    // Identifies each version of the layouts, across all the solvers
+    private static final AtomicInteger sLayoutIds = new AtomicInteger();
+
+    private final int mCountX;
+    private final int mCountY;
+
+    // The items of the layout
+    private int mItemCount;
+    private int mLoadingCount;
+    private int[] mItemCellX = new int[0];
+    private int[] mItemCellY = new int[0];
+    private int[] mItemSpanX = new int[0];
+    private int[] mItemSpanY = new int[0];
+    private boolean[] mCanReorder = new boolean[0];
+    private int mIgnoredItem = -1;
+    private boolean mLayoutChanged = true;
+    private int mLayoutId;
+    private final BitGridOccupancy mOccupied;
+    private Snapshot mSnapshot;
+
+    // The state of the current search
+    private int[] mCellX = new int[0];
+    private int[] mCellY = new int[0];
+    private int[] mSavedCellX = new int[0];
+    private int[] mSavedCellY = new int[0];
+    private int[] mSortedItems = new int[0];
+    private int[] mSortKeys = new int[0];
+    private int[] mIntersecting = new int[0];
+    private int mIntersectingCount;
+    private final BitGridOccupancy mTmpOccupied;
+    private final BitGridOccupancy mBlockOccupied;
+    private int mDropX;
+    private int mDropY;
+    private int mDropSpanX;
+    private int mDropSpanY;
+    private final int[] mDirection = new int[2];
+    private final int[] mTmpDirection = new int[2];
+    private final int[] mTmpLocation = new int[2];
+
+    // The cluster of items being pushed, with the edges of the cluster facing each side
+    private int[] mCluster = new int[0];
+    private int mClusterCount;
+    private boolean[] mInCluster = new boolean[0];
+    private final int[] mLeftEdge;
+    private final int[] mRightEdge;
+    private final int[] mTopEdge;
+    private final int[] mBottomEdge;
+    private int mDirtyEdges;
+    private int mClusterLeft;
+    private int mClusterTop;
+    private int mClusterRight;
+    private int mClusterBottom;
+
+    private final SparseArray<Solution> mSolutions = new SparseArray<>();
+    private final ArrayList<Solution> mSolutionPool = new ArrayList<>();
+    private final Solution mNoSolution = new Solution();
+
+    public ReorderSolver(int countX, int countY) {
+        mCountX = countX;
+        mCountY = countY;
+        mOccupied = new BitGridOccupancy(countX, countY);
+        mTmpOccupied = new BitGridOccupancy(countX, countY);
+        mBlockOccupied = new BitGridOccupancy(countX, countY);
+        mLeftEdge = new int[countY];
+        mRightEdge = new int[countY];
+        mTopEdge = new int[countX];
+        mBottomEdge = new int[countX];
+    }
+
+    public int getCountX() {
+        return mCountX;
+    }
+
+    public int getCountY() {
+        return mCountY;
+    }
+
+    /**
+     * Returns an id of the current layout, which changes whenever the layout changes
+     */
+    public int getLayoutId() {
+        return mLayoutId;
+    }
+
+    /**
+     * Starts describing the layout to solve. The items must then be added in the same order as
+     * for the previous layout, so that the memoized solutions can be kept if nothing changed.
+     */
+    public void beginLayout() {
+        mLoadingCount = 0;
+    }
+
+    /**
+     * Adds an item to the layout, and returns its index
+     */
+    public int addItem(int cellX, int cellY, int spanX, int spanY, boolean canReorder) {
+        int index = mLoadingCount++;
+        ensureCapacity(mLoadingCount);
+        if (index >= mItemCount || mItemCellX[index] != cellX || mItemCellY[index] != cellY
+                || mItemSpanX[index] != spanX || mItemSpanY[index] != spanY
+                || mCanReorder[index] != canReorder) {
+            mItemCellX[index] = cellX;
+            mItemCellY[index] = cellY;
+            mItemSpanX[index] = spanX;
+            mItemSpanY[index] = spanY;
+            mCanReorder[index] = canReorder;
+            mLayoutChanged = true;
+        }
+        return index;
+    }
+
+    /**
+     * Finishes describing the layout.
+     *
+     * @param occupied The cells occupied in the layout, which can differ from the cells of the
+     *        items, for example when the item being dragged has been removed from the grid.
+     * @param ignoredItem The index of the item being placed, which is moved to the target region
+     *        instead of being pushed, or -1 if that item is not in the layout.
+     */
+    public void endLayout(GridOccupancy occupied, int ignoredItem) {
+        if (mLoadingCount != mItemCount || ignoredItem != mIgnoredItem) {
+            mItemCount = mLoadingCount;
+            mIgnoredItem = ignoredItem;
+            mLayoutChanged = true;
+        }
+        mTmpOccupied.copyFrom(occupied);
+        for (int y = 0; y < mCountY && !mLayoutChanged; y++) {
+            mLayoutChanged = mTmpOccupied.getRow(y) != mOccupied.getRow(y);
+        }
+        if (mLayoutChanged) {
+            mTmpOccupied.copyTo(mOccupied);
+            clearSolutions();
+            mLayoutId = sLayoutIds.incrementAndGet();
+            mLayoutChanged = false;
+        }
+    }
+
+    /**
+     * Returns an immutable copy of the current layout, which can be used on any thread
+     */
+    public Snapshot createSnapshot() {
+        if (mSnapshot == null || mSnapshot.mLayoutId != mLayoutId) {
+            mSnapshot = new Snapshot(this);
+        }
+        return mSnapshot;
+    }
+
+    /**
+     * Solves the layout of {@param snapshot} for the regions of {@param spanX} by
+     * {@param spanY} cells at each of the {@param cells}, in all directions.
+     *
+     * @param cells The positions of the regions, as (x, y) pairs
+     * @return A copy of the solutions, which can be handed to another thread
+     */
+    public Precomputation precompute(Snapshot snapshot, int[] cells, int spanX, int spanY) {
+        loadSnapshot(snapshot);
+        Precomputation result = new Precomputation(mLayoutId);
+        for (int i = 0; i + 1 < cells.length; i += 2) {
+            for (int[] direction : PRECOMPUTED_DIRECTIONS) {
+                Solution solution = solve(cells[i], cells[i + 1], spanX, spanY, direction);
+                int key = getSolutionKey(cells[i], cells[i + 1], spanX, spanY, direction);
+                if (solution != mNoSolution && result.mSolutions.indexOfKey(key) < 0) {
+                    result.mSolutions.put(key, new Solution(solution));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the solutions precomputed by another solver, if they were computed for the current
+     * layout. Solutions already memoized are kept.
+     *
+     * @return The number of solutions added
+     */
+    public int addPrecomputed(Precomputation precomputation) {
+        if (precomputation.mLayoutId != mLayoutId) {
+            // The layout has changed since, the solutions are stale
+            return 0;
+        }
+        SparseArray<Solution> solutions = precomputation.mSolutions;
+        if (mSolutions.size() + solutions.size() > MAX_MEMOIZED_SOLUTIONS) {
+            // Favor the precomputed solutions, which are for where the drag is heading
+            clearSolutions();
+        }
+        int added = 0;
+        for (int i = 0; i < solutions.size() && mSolutions.size() < MAX_MEMOIZED_SOLUTIONS; i++) {
+            int key = solutions.keyAt(i);
+            if (mSolutions.indexOfKey(key) < 0) {
+                mSolutions.put(key, solutions.valueAt(i));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private void loadSnapshot(Snapshot snapshot) {
+        if (snapshot.mCountX != mCountX || snapshot.mCountY != mCountY) {
+            throw new IllegalArgumentException("Snapshot of a " + snapshot.mCountX + "x"
+                    + snapshot.mCountY + " grid, expected " + mCountX + "x" + mCountY);
+        }
+        if (snapshot.mLayoutId == mLayoutId) {
+            return;
+        }
+        int count = snapshot.mCellX.length;
+        ensureCapacity(count);
+        System.arraycopy(snapshot.mCellX, 0, mItemCellX, 0, count);
+        System.arraycopy(snapshot.mCellY, 0, mItemCellY, 0, count);
+        System.arraycopy(snapshot.mSpanX, 0, mItemSpanX, 0, count);
+        System.arraycopy(snapshot.mSpanY, 0, mItemSpanY, 0, count);
+        System.arraycopy(snapshot.mCanReorder, 0, mCanReorder, 0, count);
+        mItemCount = mLoadingCount = count;
+        mIgnoredItem = snapshot.mIgnoredItem;
+        snapshot.mOccupied.copyTo(mOccupied);
+        clearSolutions();
+        mLayoutId = snapshot.mLayoutId;
+        mLayoutChanged = false;
+    }
+
+    /**
+     * Finds a rearrangement of the items so that the region of {@param spanX} by {@param spanY}
+     * cells at ({@param cellX}, {@param cellY}) is vacant, by pushing the items which intersect
+     * the region, preferably along {@param direction}.
+     *
+     * @param direction The favored direction in which the items should move, with components of
+     *        -1, 0 or 1
+     * @return The solution, which is owned by this solver and stays valid until the layout is
+     *         changed
+     */
+    public Solution solve(int cellX, int cellY, int spanX, int spanY, int[] direction) {
+        // Return early for invalid cell positions
+        if (cellX < 0 || cellY < 0 || cellX >= mCountX || cellY >= mCountY
+                || spanX <= 0 || spanY <= 0 || spanX > mCountX || spanY > mCountY) {
+            return mNoSolution;
+        }
+        mDirection[0] = Integer.signum(direction[0]);
+        mDirection[1] = Integer.signum(direction[1]);
+        int key = getSolutionKey(cellX, cellY, spanX, spanY, direction);
+
+        Solution solution = mSolutions.get(key);
+        if (solution == null) {
+            if (mSolutions.size() >= MAX_MEMOIZED_SOLUTIONS) {
+                clearSolutions();
+            }
+            solution = mSolutionPool.isEmpty()
+                    ? new Solution() : mSolutionPool.remove(mSolutionPool.size() - 1);
+            solution.set(rearrangementExists(cellX, cellY, spanX, spanY, mDirection),
+                    mItemCount, mCellX, mCellY, mIntersecting, mIntersectingCount);
+            mSolutions.put(key, solution);
+        }
+        return solution;
+    }
+
+    /**
+     * Packs a region and a direction in the key of its memoized solution
+     */
+    private static int getSolutionKey(int cellX, int cellY, int spanX, int spanY,
+            int[] direction) {
+        return cellX | (cellY << 6) | ((spanX - 1) << 12) | ((spanY - 1) << 18)
+                | ((Integer.signum(direction[0]) + 1) << 24)
+                | ((Integer.signum(direction[1]) + 1) << 26);
+    }
+
+    @VisibleForTesting
+    void clearSolutions() {
+        for (int i = mSolutions.size() - 1; i >= 0; i--) {
+            mSolutionPool.add(mSolutions.valueAt(i));
+        }
+        mSolutions.clear();
+    }
+
+    private void ensureCapacity(int count) {
+        if (mItemCellX.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, mItemCellX.length * 2);
+        mItemCellX = Arrays.copyOf(mItemCellX, capacity);
+        mItemCellY = Arrays.copyOf(mItemCellY, capacity);
+        mItemSpanX = Arrays.copyOf(mItemSpanX, capacity);
+        mItemSpanY = Arrays.copyOf(mItemSpanY, capacity);
+        mCanReorder = Arrays.copyOf(mCanReorder, capacity);
+        mCellX = new int[capacity];
+        mCellY = new int[capacity];
+        mSavedCellX = new int[capacity];
+        mSavedCellY = new int[capacity];
+        mSortedItems = new int[capacity];
+        mSortKeys = new int[capacity];
+        mIntersecting = new int[capacity];
+        mCluster = new int[capacity];
+        mInCluster = new boolean[capacity];
+    }
+
+    private boolean rearrangementExists(int cellX, int cellY, int spanX, int spanY,
+            int[] direction) {
+        // Start from the current state of the layout, which is manipulated as necessary
+        System.arraycopy(mItemCellX, 0, mCellX, 0, mItemCount);
+        System.arraycopy(mItemCellY, 0, mCellY, 0, mItemCount);
+        mOccupied.copyTo(mTmpOccupied);
+        // The items start in child order for each search. The push attempts of a search then
+        // sort them in place, as CellLayout sorted the views of its item configuration.
+        for (int i = 0; i < mItemCount; i++) {
+            mSortedItems[i] = i;
+        }
+
+        mDropX = cellX;
+        mDropY = cellY;
+        mDropSpanX = spanX;
+        mDropSpanY = spanY;
+
+        // Mark the desired location of the item being placed
+        if (mIgnoredItem >= 0) {
+            mCellX[mIgnoredItem] = cellX;
+            mCellY[mIgnoredItem] = cellY;
+        }
+        mIntersectingCount = 0;
+        for (int i = 0; i < mItemCount; i++) {
+            if (i == mIgnoredItem) continue;
+            if (mCellX[i] < cellX + spanX && cellX < mCellX[i] + mItemSpanX[i]
+                    && mCellY[i] < cellY + spanY && cellY < mCellY[i] + mItemSpanY[i]) {
+                if (!mCanReorder[i]) {
+                    return false;
+                }
+                mIntersecting[mIntersectingCount++] = i;
+            }
+        }
+
+        // First we try to find a solution which respects the push mechanic. That is,
+        // we try to find a solution such that no displaced item travels through another item
+        // without also displacing that item.
+        if (attemptPushInDirection(direction)) {
+            return true;
+        }
+
+        // Next we try moving the items as a block, but without requiring the push mechanic.
+        if (addItemsToTempLocation(direction)) {
+            return true;
+        }
+
+        // Ok, they couldn't move as a block, let's move them individually
+        for (int i = 0; i < mIntersectingCount; i++) {
+            if (!addItemToTempLocation(mIntersecting[i], direction)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // This method tries to find a reordering solution which satisfies the push mechanic by trying
+    // to push items in each of the cardinal directions, in an order based on the direction vector
+    // passed.
+    private boolean attemptPushInDirection(int[] direction) {
+        if ((Math.abs(direction[0]) + Math.abs(direction[1])) > 1) {
+            // If the direction vector has two non-zero components, we try pushing
+            // separately in each of the components.
+            int temp = direction[1];
+            direction[1] = 0;
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            direction[1] = temp;
+            temp = direction[0];
+            direction[0] = 0;
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            // Revert the direction
+            direction[0] = temp;
+
+            // Now we try pushing in each component of the opposite direction
+            direction[0] *= -1;
+            direction[1] *= -1;
+            temp = direction[1];
+            direction[1] = 0;
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            direction[1] = temp;
+            temp = direction[0];
+            direction[0] = 0;
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            // revert the direction
+            direction[0] = temp;
+            direction[0] *= -1;
+            direction[1] *= -1;
+        } else {
+            // If the direction vector has a single non-zero component, we push first in the
+            // direction of the vector
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            // Then we try the opposite direction
+            direction[0] *= -1;
+            direction[1] *= -1;
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            // Switch the direction back
+            direction[0] *= -1;
+            direction[1] *= -1;
+
+            // If we have failed to find a push solution with the above, then we try
+            // to find a solution by pushing along the perpendicular axis.
+
+            // Swap the components
+            int temp = direction[1];
+            direction[1] = direction[0];
+            direction[0] = temp;
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            // Then we try the opposite direction
+            direction[0] *= -1;
+            direction[1] *= -1;
+            if (pushItemsToTempLocation(direction)) {
+                return true;
+            }
+            // Switch the direction back
+            direction[0] *= -1;
+            direction[1] *= -1;
+
+            // Swap the components back
+            temp = direction[1];
+            direction[1] = direction[0];
+            direction[0] = temp;
+        }
+        return false;
+    }
+
+    private boolean pushItemsToTempLocation(int[] direction) {
+        // The cluster starts with the items intersecting the region
+        for (int i = 0; i < mClusterCount; i++) {
+            mInCluster[mCluster[i]] = false;
+        }
+        mClusterCount = 0;
+        for (int i = 0; i < mIntersectingCount; i++) {
+            addToCluster(mIntersecting[i]);
+        }
+        resetEdges();
+        computeClusterBounds();
+
+        // Determine the edge of the cluster that will be leading the push and how far
+        // the cluster must be shifted.
+        int whichEdge;
+        int pushDistance;
+        if (direction[0] < 0) {
+            whichEdge = LEFT;
+            pushDistance = mClusterRight - mDropX;
+        } else if (direction[0] > 0) {
+            whichEdge = RIGHT;
+            pushDistance = mDropX + mDropSpanX - mClusterLeft;
+        } else if (direction[1] < 0) {
+            whichEdge = TOP;
+            pushDistance = mClusterBottom - mDropY;
+        } else {
+            whichEdge = BOTTOM;
+            pushDistance = mDropY + mDropSpanY - mClusterTop;
+        }
+
+        // Break early for invalid push distance.
+        if (pushDistance <= 0) {
+            return false;
+        }
+
+        // Mark the occupied state as false for the group of items we want to move.
+        for (int i = 0; i < mClusterCount; i++) {
+            markItem(mCluster[i], false);
+        }
+
+        // We save the current configuration -- if we fail to find a solution we will revert
+        // to the initial state. The process of finding a solution modifies the configuration
+        // in place, hence the need for revert in the failure case.
+        System.arraycopy(mCellX, 0, mSavedCellX, 0, mItemCount);
+        System.arraycopy(mCellY, 0, mSavedCellY, 0, mItemCount);
+
+        // The pushing algorithm is simplified by considering the items in the order in which
+        // they would be pushed by the cluster. For example, if the cluster is leading with its
+        // left edge, we consider sort the items by their right edge, from right to left.
+        sortItemsForEdgePush(whichEdge);
+
+        boolean fail = false;
+        while (pushDistance > 0 && !fail) {
+            for (int k = 0; k < mItemCount; k++) {
+                int item = mSortedItems[k];
+                // For each item that isn't in the cluster, we see if the leading edge of the
+                // cluster is contacting the edge of that item. If so, we add that item to the
+                // cluster.
+                if (!mInCluster[item] && item != mIgnoredItem
+                        && isItemTouchingEdge(item, whichEdge)) {
+                    if (!mCanReorder[item]) {
+                        fail = true;
+                        break;
+                    }
+                    addToCluster(item);
+                    resetEdges();
+                    // Adding item to cluster, mark it as not occupied.
+                    markItem(item, false);
+                }
+            }
+            pushDistance--;
+
+            // The cluster has been completed, now we move the whole thing over in the appropriate
+            // direction.
+            shiftCluster(whichEdge);
+        }
+
+        // Due to the nature of the algorithm, the only check required to verify a valid solution
+        // is to ensure that completed shifted cluster lies completely within the grid.
+        computeClusterBounds();
+        boolean foundSolution = !fail && mClusterLeft >= 0 && mClusterRight <= mCountX
+                && mClusterTop >= 0 && mClusterBottom <= mCountY;
+        if (!foundSolution) {
+            System.arraycopy(mSavedCellX, 0, mCellX, 0, mItemCount);
+            System.arraycopy(mSavedCellY, 0, mCellY, 0, mItemCount);
+        }
+
+        // In either case, we set the occupied array as marked for the location of the items
+        for (int i = 0; i < mClusterCount; i++) {
+            markItem(mCluster[i], true);
+        }
+        return foundSolution;
+    }
+
+    private boolean addItemsToTempLocation(int[] direction) {
+        if (mIntersectingCount == 0) return true;
+
+        // We construct a rect which represents the entire group of items
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < mIntersectingCount; i++) {
+            int item = mIntersecting[i];
+            left = Math.min(left, mCellX[item]);
+            top = Math.min(top, mCellY[item]);
+            right = Math.max(right, mCellX[item] + mItemSpanX[item]);
+            bottom = Math.max(bottom, mCellY[item] + mItemSpanY[item]);
+            // Mark the occupied state as false for the group of items we want to move.
+            markItem(item, false);
+        }
+
+        // We mark more precisely which parts of the bounding rect are truly occupied, allowing
+        // for interlocking.
+        mBlockOccupied.clear();
+        for (int i = 0; i < mIntersectingCount; i++) {
+            int item = mIntersecting[i];
+            mBlockOccupied.markCells(mCellX[item] - left, mCellY[item] - top,
+                    mItemSpanX[item], mItemSpanY[item], true);
+        }
+        mTmpOccupied.markCells(mDropX, mDropY, mDropSpanX, mDropSpanY, true);
+
+        boolean success = findNearestArea(left, top, right - left, bottom - top, direction,
+                mBlockOccupied, mTmpLocation);
+
+        // If we successfully found a location by pushing the block of items, we commit it
+        if (success) {
+            int deltaX = mTmpLocation[0] - left;
+            int deltaY = mTmpLocation[1] - top;
+            for (int i = 0; i < mIntersectingCount; i++) {
+                mCellX[mIntersecting[i]] += deltaX;
+                mCellY[mIntersecting[i]] += deltaY;
+            }
+        }
+
+        // In either case, we set the occupied array as marked for the location of the items
+        for (int i = 0; i < mIntersectingCount; i++) {
+            markItem(mIntersecting[i], true);
+        }
+        return success;
+    }
+
+    private boolean addItemToTempLocation(int item, int[] direction) {
+        markItem(item, false);
+        mTmpOccupied.markCells(mDropX, mDropY, mDropSpanX, mDropSpanY, true);
+
+        boolean success = findNearestArea(mCellX[item], mCellY[item], mItemSpanX[item],
+                mItemSpanY[item], direction, null, mTmpLocation);
+        if (success) {
+            mCellX[item] = mTmpLocation[0];
+            mCellY[item] = mTmpLocation[1];
+        }
+        markItem(item, true);
+        return success;
+    }
+
+    /**
+     * Finds the vacant area nearest to ({@param cellX}, {@param cellY}) which fits the given
+     * span, using unit grid distances and favoring {@param direction} between areas at the same
+     * distance.
+     *
+     * @param blockOccupied The cells of the span which need to be vacant, or null if all of them
+     *        need to be vacant. This is used when trying to move a group of items.
+     * @return true if an area was found, in which case its position is stored in {@param result}
+     */
+    private boolean findNearestArea(int cellX, int cellY, int spanX, int spanY, int[] direction,
+            BitGridOccupancy blockOccupied, int[] result) {
+        float bestDistance = Float.MAX_VALUE;
+        int bestDirectionScore = Integer.MIN_VALUE;
+        long spanMask = spanX >= Long.SIZE ? -1L : (1L << spanX) - 1;
+
+        for (int y = 0; y < mCountY - (spanY - 1); y++) {
+            inner:
+            for (int x = 0; x < mCountX - (spanX - 1); x++) {
+                // First, let's see if this thing fits anywhere
+                for (int j = 0; j < spanY; j++) {
+                    long occupied = (mTmpOccupied.getRow(y + j) >>> x) & spanMask;
+                    if (blockOccupied != null) {
+                        occupied &= blockOccupied.getRow(j);
+                    }
+                    if (occupied != 0) {
+                        continue inner;
+                    }
+                }
+
+                float distance = (float) Math.hypot(x - cellX, y - cellY);
+                int comparison = Float.compare(distance, bestDistance);
+                if (comparison > 0) {
+                    continue;
+                }
+                computeDirectionVector(x - cellX, y - cellY, mTmpDirection);
+                // The direction score is just the dot product of the two candidate direction
+                // and that passed in.
+                int directionScore = direction[0] * mTmpDirection[0]
+                        + direction[1] * mTmpDirection[1];
+                if (comparison < 0 || directionScore > bestDirectionScore) {
+                    bestDistance = distance;
+                    bestDirectionScore = directionScore;
+                    result[0] = x;
+                    result[1] = y;
+                }
+            }
+        }
+        return bestDistance != Float.MAX_VALUE;
+    }
+
+    private void markItem(int item, boolean value) {
+        mTmpOccupied.markCells(mCellX[item], mCellY[item], mItemSpanX[item], mItemSpanY[item],
+                value);
+    }
+
+    private void addToCluster(int item) {
+        mCluster[mClusterCount++] = item;
+        mInCluster[item] = true;
+    }
+
+    private void shiftCluster(int whichEdge) {
+        for (int i = 0; i < mClusterCount; i++) {
+            int item = mCluster[i];
+            switch (whichEdge) {
+                case LEFT:
+                    mCellX[item]--;
+                    break;
+                case RIGHT:
+                    mCellX[item]++;
+                    break;
+                case TOP:
+                    mCellY[item]--;
+                    break;
+                case BOTTOM:
+                default:
+                    mCellY[item]++;
+                    break;
+            }
+        }
+        resetEdges();
+    }
+
+    private void computeClusterBounds() {
+        // An empty cluster has empty bounds at the origin
+        mClusterLeft = mClusterTop = mClusterRight = mClusterBottom = 0;
+        for (int i = 0; i < mClusterCount; i++) {
+            int item = mCluster[i];
+            int right = mCellX[item] + mItemSpanX[item];
+            int bottom = mCellY[item] + mItemSpanY[item];
+            if (i == 0) {
+                mClusterLeft = mCellX[item];
+                mClusterTop = mCellY[item];
+                mClusterRight = right;
+                mClusterBottom = bottom;
+            } else {
+                mClusterLeft = Math.min(mClusterLeft, mCellX[item]);
+                mClusterTop = Math.min(mClusterTop, mCellY[item]);
+                mClusterRight = Math.max(mClusterRight, right);
+                mClusterBottom = Math.max(mClusterBottom, bottom);
+            }
+        }
+    }
+
+    private void resetEdges() {
+        Arrays.fill(mTopEdge, -1);
+        Arrays.fill(mBottomEdge, -1);
+        Arrays.fill(mLeftEdge, -1);
+        Arrays.fill(mRightEdge, -1);
+        mDirtyEdges = LEFT | TOP | RIGHT | BOTTOM;
+    }
+
+    private void computeEdge(int which) {
+        for (int i = 0; i < mClusterCount; i++) {
+            int item = mCluster[i];
+            int cellX = mCellX[item];
+            int cellY = mCellY[item];
+            switch (which) {
+                case LEFT:
+                    for (int j = cellY; j < cellY + mItemSpanY[item]; j++) {
+                        if (cellX < mLeftEdge[j] || mLeftEdge[j] < 0) {
+                            mLeftEdge[j] = cellX;
+                        }
+                    }
+                    break;
+                case RIGHT:
+                    int right = cellX + mItemSpanX[item];
+                    for (int j = cellY; j < cellY + mItemSpanY[item]; j++) {
+                        if (right > mRightEdge[j]) {
+                            mRightEdge[j] = right;
+                        }
+                    }
+                    break;
+                case TOP:
+                    for (int j = cellX; j < cellX + mItemSpanX[item]; j++) {
+                        if (cellY < mTopEdge[j] || mTopEdge[j] < 0) {
+                            mTopEdge[j] = cellY;
+                        }
+                    }
+                    break;
+                case BOTTOM:
+                    int bottom = cellY + mItemSpanY[item];
+                    for (int j = cellX; j < cellX + mItemSpanX[item]; j++) {
+                        if (bottom > mBottomEdge[j]) {
+                            mBottomEdge[j] = bottom;
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+
+    private boolean isItemTouchingEdge(int item, int whichEdge) {
+        if ((mDirtyEdges & whichEdge) == whichEdge) {
+            computeEdge(whichEdge);
+            mDirtyEdges &= ~whichEdge;
+        }
+
+        int cellX = mCellX[item];
+        int cellY = mCellY[item];
+        switch (whichEdge) {
+            case LEFT:
+                for (int i = cellY; i < cellY + mItemSpanY[item]; i++) {
+                    if (mLeftEdge[i] == cellX + mItemSpanX[item]) {
+                        return true;
+                    }
+                }
+                break;
+            case RIGHT:
+                for (int i = cellY; i < cellY + mItemSpanY[item]; i++) {
+                    if (mRightEdge[i] == cellX) {
+                        return true;
+                    }
+                }
+                break;
+            case TOP:
+                for (int i = cellX; i < cellX + mItemSpanX[item]; i++) {
+                    if (mTopEdge[i] == cellY + mItemSpanY[item]) {
+                        return true;
+                    }
+                }
+                break;
+            case BOTTOM:
+                for (int i = cellX; i < cellX + mItemSpanX[item]; i++) {
+                    if (mBottomEdge[i] == cellY) {
+                        return true;
+                    }
+                }
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the items in the order in which they would be reached by the edge of the cluster.
+     * The sort is stable and is not reset between the push attempts of a search, so items at the
+     * same position keep the order of the previous attempt, or the child order for the first one.
+     */
+    private void sortItemsForEdgePush(int whichEdge) {
+        for (int i = 0; i < mItemCount; i++) {
+            int item = mSortedItems[i];
+            switch (whichEdge) {
+                case LEFT:
+                    mSortKeys[item] = -(mCellX[item] + mItemSpanX[item]);
+                    break;
+                case RIGHT:
+                    mSortKeys[item] = mCellX[item];
+                    break;
+                case TOP:
+                    mSortKeys[item] = -(mCellY[item] + mItemSpanY[item]);
+                    break;
+                case BOTTOM:
+                default:
+                    mSortKeys[item] = mCellY[item];
+                    break;
+            }
+        }
+        // Insertion sort, as there are few items and they are often already sorted
+        for (int i = 1; i < mItemCount; i++) {
+            int item = mSortedItems[i];
+            int key = mSortKeys[item];
+            int j = i - 1;
+            while (j >= 0 && mSortKeys[mSortedItems[j]] > key) {
+                mSortedItems[j + 1] = mSortedItems[j];
+                j--;
+            }
+            mSortedItems[j + 1] = item;
+        }
+    }
+
+    /**
+     * Computes a vector (x, y), where x,y are in {-1, 0, 1}, corresponding to the direction of
+     * ({@param deltaX}, {@param deltaY})
+     */
+    public static void computeDirectionVector(float deltaX, float deltaY, int[] result) {
+        double angle = Math.atan(deltaY / deltaX);
+
+        result[0] = 0;
+        result[1] = 0;
+        if (Math.abs(Math.cos(angle)) > 0.5f) {
+            result[0] = (int) Math.signum(deltaX);
+        }
+        if (Math.abs(Math.sin(angle)) > 0.5f) {
+            result[1] = (int) Math.signum(deltaY);
+        }
+    }
+
+    /**
+     * An immutable copy of a layout, see {@link #createSnapshot()}
+     */
+    public static class Snapshot {
+
+        private final int mCountX;
+        private final int mCountY;
+        private final int mLayoutId;
+        private final int mIgnoredItem;
+        private final int[] mCellX;
+        private final int[] mCellY;
+        private final int[] mSpanX;
+        private final int[] mSpanY;
+        private final boolean[] mCanReorder;
+        private final BitGridOccupancy mOccupied;
+
+        private Snapshot(ReorderSolver solver) {
+            mCountX = solver.mCountX;
+            mCountY = solver.mCountY;
+            mLayoutId = solver.mLayoutId;
+            mIgnoredItem = solver.mIgnoredItem;
+            mCellX = Arrays.copyOf(solver.mItemCellX, solver.mItemCount);
+            mCellY = Arrays.copyOf(solver.mItemCellY, solver.mItemCount);
+            mSpanX = Arrays.copyOf(solver.mItemSpanX, solver.mItemCount);
+            mSpanY = Arrays.copyOf(solver.mItemSpanY, solver.mItemCount);
+            mCanReorder = Arrays.copyOf(solver.mCanReorder, solver.mItemCount);
+            mOccupied = new BitGridOccupancy(mCountX, mCountY);
+            solver.mOccupied.copyTo(mOccupied);
+        }
+
+        public int getCountX() {
+            return mCountX;
+        }
+
+        public int getCountY() {
+            return mCountY;
+        }
+    }
+
+    /**
+     * Solutions found ahead of time for a version of a layout, see {@link #precompute}
+     */
+    public static class Precomputation {
+
+        private final int mLayoutId;
+        private final SparseArray<Solution> mSolutions = new SparseArray<>();
+
+        private Precomputation(int layoutId) {
+            mLayoutId = layoutId;
+        }
+
+        public int size() {
+            return mSolutions.size();
+        }
+    }
+
+    /**
+     * The positions of the items of a layout after a reorder
+     */
+    public static class Solution {
+
+        private boolean mIsSolution;
+        private int[] mCellX = new int[0];
+        private int[] mCellY = new int[0];
+        private boolean[] mIntersecting = new boolean[0];
+
+        private Solution() { }
+
+        private Solution(Solution other) {
+            mIsSolution = other.mIsSolution;
+            mCellX = other.mCellX.clone();
+            mCellY = other.mCellY.clone();
+            mIntersecting = other.mIntersecting.clone();
+        }
+
+        private void set(boolean isSolution, int count, int[] cellX, int[] cellY,
+                int[] intersecting, int intersectingCount) {
+            mIsSolution = isSolution;
+            if (mCellX.length < count) {
+                mCellX = new int[count];
+                mCellY = new int[count];
+                mIntersecting = new boolean[count];
+            }
+            System.arraycopy(cellX, 0, mCellX, 0, count);
+            System.arraycopy(cellY, 0, mCellY, 0, count);
+            Arrays.fill(mIntersecting, false);
+            for (int i = 0; i < intersectingCount; i++) {
+                mIntersecting[intersecting[i]] = true;
+            }
+        }
+
+        public boolean isSolution() {
+            return mIsSolution;
+        }
+
+        public int getCellX(int item) {
+            return mCellX[item];
+        }
+
+        public int getCellY(int item) {
+            return mCellY[item];
+        }
+
+        /**
+         * Returns whether the item was in the region made vacant, as opposed to being pushed
+         * by other items
+         */
+        public boolean isIntersecting(int item) {
+            return mIntersecting[item];
+        }
+    }
+}
@@ -16,79 +16,108 @@
 
 package com.android.launcher3.widget.picker.search;
 
-import static com.android.launcher3.search.StringMatcherUtility.matches;
+import static com.android.launcher3.util.Executors.SEARCH_EXECUTOR;
 
 import android.os.Handler;
+import android.os.SystemClock;
 
-import com.android.launcher3.model.WidgetItem;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
-import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.search.SearchLatencyStats;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
-import com.android.launcher3.widget.model.WidgetsListContentEntry;
-import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
-import com.android.launcher3.widget.model.WidgetsListSearchHeaderEntry;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
- * Implementation of {@link SearchAlgorithm} that posts a task to query on the main thread.
+ * Implementation of {@link SearchAlgorithm} that queries a {@link WidgetsSearchIndex} on the
+ * search executor and posts the result on the main thread.
  */
 public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<WidgetsListBaseEntry> {
 
     private final Handler mResultHandler;
     private final PopupDataProvider mDataProvider;
 
+    // Incremented for every new query, which cancels any query still in progress
+    private final AtomicInteger mQueryId = new AtomicInteger();
+
+    // Only accessed on the search executor
+    private WidgetsSearchIndex mIndex;
+
     public SimpleWidgetsSearchAlgorithm(PopupDataProvider dataProvider) {
         mResultHandler = new Handler();
         mDataProvider = dataProvider;
+
+        // Build the index ahead of the first query
+        List<WidgetsListBaseEntry> allWidgets = mDataProvider.getAllWidgets();
+        SEARCH_EXECUTOR.execute(() -> getIndex(allWidgets));
     }
 
     @Override
     public void doSearch(String query, SearchCallback<WidgetsListBaseEntry> callback) {
-        ArrayList<WidgetsListBaseEntry> result = getFilteredWidgets(mDataProvider, query);
-        mResultHandler.post(() -> callback.onSearchResult(query, result));
+        final int queryId = mQueryId.incrementAndGet();
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        // The widget list is only updated on the main thread, read it before switching threads
+        List<WidgetsListBaseEntry> allWidgets = mDataProvider.getAllWidgets();
+        SEARCH_EXECUTOR.execute(() -> {
+            BooleanSupplier isCancelled = () -> mQueryId.get() != queryId;
+            if (isCancelled.getAsBoolean()) {
+                SearchLatencyStats.WIDGETS.onQueryCancelled();
+                return;
+            }
+            WidgetsSearchIndex index = getIndex(allWidgets);
+            ArrayList<WidgetsListBaseEntry> result = FeatureFlags.ENABLE_FUZZY_SEARCH.get()
+                    ? index.searchRanked(query, isCancelled)
+                    : index.search(query, isCancelled);
+            if (result == null) {
+                SearchLatencyStats.WIDGETS.onQueryCancelled();
+                return;
+            }
+            mResultHandler.post(() -> {
+                if (isCancelled.getAsBoolean()) {
+                    SearchLatencyStats.WIDGETS.onQueryCancelled();
+                    return;
+                }
+                SearchLatencyStats.WIDGETS.onQueryCompleted(
+                        SystemClock.elapsedRealtimeNanos() - startTime);
+                callback.onSearchResult(query, result);
+            });
+        });
     }
 
     @Override
     public void cancel(boolean interruptActiveRequests) {
         if (interruptActiveRequests) {
+            mQueryId.incrementAndGet();
             mResultHandler.removeCallbacksAndMessages(/*token= */null);
         }
     }
 
+    /**
+     * Returns the index for {@param allWidgets}, rebuilding it only if the widgets changed
+     */
+    @WorkerThread
+    private WidgetsSearchIndex getIndex(List<WidgetsListBaseEntry> allWidgets) {
+        if (mIndex == null || !mIndex.isIndexOf(allWidgets)) {
+            mIndex = new WidgetsSearchIndex(allWidgets);
+        }
+        return mIndex;
+    }
+
     /**
      * Returns entries for all matched widgets
      */
     public static ArrayList<WidgetsListBaseEntry> getFilteredWidgets(
             PopupDataProvider dataProvider, String input) {
-        ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
-        dataProvider.getAllWidgets().stream()
-                .filter(entry -> entry instanceof WidgetsListHeaderEntry)
-                .forEach(headerEntry -> {
-                    List<WidgetItem> matchedWidgetItems = filterWidgetItems(
-                            input, headerEntry.mPkgItem.title.toString(), headerEntry.mWidgets);
-                    if (matchedWidgetItems.size() > 0) {
-                        results.add(new WidgetsListSearchHeaderEntry(headerEntry.mPkgItem,
-                                headerEntry.mTitleSectionName, matchedWidgetItems));
-                        results.add(new WidgetsListContentEntry(headerEntry.mPkgItem,
-                                headerEntry.mTitleSectionName, matchedWidgetItems));
-                    }
-                });
-        return results;
-    }
-
-    private static List<WidgetItem> filterWidgetItems(String query, String packageTitle,
-            List<WidgetItem> items) {
-        StringMatcher matcher = StringMatcher.getInstance();
-        if (matches(query, packageTitle, matcher)) {
-            return items;
-        }
-        return items.stream()
-                .filter(item -> matches(query, item.label, matcher))
-                .collect(Collectors.toList());
+        WidgetsSearchIndex index = new WidgetsSearchIndex(dataProvider.getAllWidgets());
+        return FeatureFlags.ENABLE_FUZZY_SEARCH.get()
+                ? index.searchRanked(input, () -> false)
+                : index.search(input);
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker.search;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.search.FuzzyMatcher;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.search.TokenizedString;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+import com.android.launcher3.widget.model.WidgetsListSearchHeaderEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Immutable search index over the widgets shown in the picker. Package titles and widget
+ * labels are tokenized once when the index is created, and the search result entries for a
+ * package matched by its title are created once and reused across queries.
+ */
+public class WidgetsSearchIndex {
+
+    private static final BooleanSupplier NEVER_CANCELLED = () -> false;
+
+    private final List<WidgetsListBaseEntry> mSource;
+    private final PackageEntry[] mPackages;
+
+    @WorkerThread
+    public WidgetsSearchIndex(List<WidgetsListBaseEntry> allWidgets) {
+        mSource = allWidgets;
+        ArrayList<PackageEntry> packages = new ArrayList<>();
+        for (WidgetsListBaseEntry entry : allWidgets) {
+            if (entry instanceof WidgetsListHeaderEntry) {
+                packages.add(new PackageEntry(entry));
+            }
+        }
+        mPackages = packages.toArray(new PackageEntry[packages.size()]);
+    }
+
+    /**
+     * Returns true if this index was built from {@param allWidgets}
+     */
+    public boolean isIndexOf(List<WidgetsListBaseEntry> allWidgets) {
+        return mSource == allWidgets;
+    }
+
+    /**
+     * Returns entries for all widgets matching the {@param query}
+     */
+    public ArrayList<WidgetsListBaseEntry> search(String query) {
+        return search(query, NEVER_CANCELLED);
+    }
+
+    /**
+     * Returns entries for all widgets matching the {@param query}, or null if the search was
+     * cancelled. {@param isCancelled} is polled once per package.
+     */
+    public ArrayList<WidgetsListBaseEntry> search(String query, BooleanSupplier isCancelled) {
+        String queryLower = query.toLowerCase();
+        boolean isSimple = TokenizedString.isSimple(queryLower);
+        boolean isHan = StringMatcherUtility.requestSimpleFuzzySearch(queryLower);
+        StringMatcher matcher = StringMatcher.getInstance();
+
+        ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
+        for (PackageEntry pkg : mPackages) {
+            if (isCancelled.getAsBoolean()) {
+                return null;
+            }
+            if (pkg.title.matches(queryLower, isSimple, isHan, matcher)) {
+                results.add(pkg.getSearchHeaderEntry());
+                results.add(pkg.getContentEntry());
+                continue;
+            }
+            List<WidgetItem> matchedItems = null;
+            for (int i = 0; i < pkg.labels.length; i++) {
+                if (pkg.labels[i].matches(queryLower, isSimple, isHan, matcher)) {
+                    if (matchedItems == null) {
+                        matchedItems = new ArrayList<>();
+                    }
+                    matchedItems.add(pkg.entry.mWidgets.get(i));
+                }
+            }
+            if (matchedItems != null) {
+                results.add(new WidgetsListSearchHeaderEntry(
+                        pkg.entry.mPkgItem, pkg.entry.mTitleSectionName, matchedItems));
+                results.add(new WidgetsListContentEntry(
+                        pkg.entry.mPkgItem, pkg.entry.mTitleSectionName, matchedItems));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Same as {@link #search(String, BooleanSupplier)}, but also includes widgets matched by
+     * {@link FuzzyMatcher}, with the best matching packages first.
+     */
+    public ArrayList<WidgetsListBaseEntry> searchRanked(String query,
+            BooleanSupplier isCancelled) {
+        String queryLower = query.toLowerCase();
+        boolean isSimple = TokenizedString.isSimple(queryLower);
+        boolean isHan = StringMatcherUtility.requestSimpleFuzzySearch(queryLower);
+        FuzzyMatcher matcher = new FuzzyMatcher();
+
+        ArrayList<RankedPackage> rankedPackages = new ArrayList<>();
+        for (PackageEntry pkg : mPackages) {
+            if (isCancelled.getAsBoolean()) {
+                return null;
+            }
+            int packageScore = matcher.score(queryLower, isSimple, isHan, pkg.title);
+            if (packageScore != FuzzyMatcher.NO_MATCH) {
+                rankedPackages.add(new RankedPackage(packageScore, pkg, null));
+                continue;
+            }
+            List<WidgetItem> matchedItems = null;
+            int bestScore = FuzzyMatcher.NO_MATCH;
+            for (int i = 0; i < pkg.labels.length; i++) {
+                int score = matcher.score(queryLower, isSimple, isHan, pkg.labels[i]);
+                if (score != FuzzyMatcher.NO_MATCH) {
+                    if (matchedItems == null) {
+                        matchedItems = new ArrayList<>();
+                    }
+                    matchedItems.add(pkg.entry.mWidgets.get(i));
+                    bestScore = Math.max(bestScore, score);
+                }
+            }
+            if (matchedItems != null) {
+                rankedPackages.add(new RankedPackage(bestScore, pkg, matchedItems));
+            }
+        }
+        // Stable sort, so packages with the same score keep their original order
+        rankedPackages.sort((a, b) -> Integer.compare(b.score, a.score));
+
+        ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
+        for (RankedPackage ranked : rankedPackages) {
+            PackageEntry pkg = ranked.pkg;
+            if (ranked.items == null) {
+                results.add(pkg.getSearchHeaderEntry());
+                results.add(pkg.getContentEntry());
+            } else {
+                results.add(new WidgetsListSearchHeaderEntry(
+                        pkg.entry.mPkgItem, pkg.entry.mTitleSectionName, ranked.items));
+                results.add(new WidgetsListContentEntry(
+                        pkg.entry.mPkgItem, pkg.entry.mTitleSectionName, ranked.items));
+            }
+        }
+        return results;
+    }
+
+    private static class PackageEntry {
+
+        final WidgetsListBaseEntry entry;
+        final TokenizedString title;
+        final TokenizedString[] labels;
+
+        private WidgetsListSearchHeaderEntry mSearchHeaderEntry;
+        private WidgetsListContentEntry mContentEntry;
+
+        PackageEntry(WidgetsListBaseEntry entry) {
+            this.entry = entry;
+            title = TokenizedString.of(entry.mPkgItem.title);
+            labels = new TokenizedString[entry.mWidgets.size()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = TokenizedString.of(entry.mWidgets.get(i).label);
+            }
+        }
+
+        WidgetsListSearchHeaderEntry getSearchHeaderEntry() {
+            if (mSearchHeaderEntry == null) {
+                mSearchHeaderEntry = new WidgetsListSearchHeaderEntry(
+                        entry.mPkgItem, entry.mTitleSectionName, entry.mWidgets);
+            }
+            return mSearchHeaderEntry;
+        }
+
+        WidgetsListContentEntry getContentEntry() {
+            if (mContentEntry == null) {
+                mContentEntry = new WidgetsListContentEntry(
+                        entry.mPkgItem, entry.mTitleSectionName, entry.mWidgets);
+            }
+            return mContentEntry;
+        }
+    }
+
+    private static class RankedPackage {
+
+        final int score;
+        final PackageEntry pkg;
+        final List<WidgetItem> items;
+
+        RankedPackage(int score, PackageEntry pkg, List<WidgetItem> items) {
+            this.score = score;
+            this.pkg = pkg;
+            this.items = items;
+        }
+    }
+}
@@ -115,6 +115,16 @@ public class WidgetsModel {
      */
     public List<ComponentWithLabelAndIcon> update(
             LauncherAppState app, @Nullable PackageUserKey packageUser) {
+        return update(app, packageUser, null);
+    }
+
+    /**
+     * Same as {@link #update(LauncherAppState, PackageUserKey)}, but uses {@param providers}
+     * instead of querying the widget providers, when not null.
+     */
+    public List<ComponentWithLabelAndIcon> update(LauncherAppState app,
+            @Nullable PackageUserKey packageUser,
+            @Nullable List<AppWidgetProviderInfo> providers) {
         Preconditions.assertWorkerThread();
 
         Context context = app.getContext();
@@ -125,8 +135,10 @@ public class WidgetsModel {
             PackageManager pm = app.getContext().getPackageManager();
 
             // Widgets
-            WidgetManagerHelper widgetManager = new WidgetManagerHelper(context);
-            for (AppWidgetProviderInfo widgetInfo : widgetManager.getAllProviders(packageUser)) {
+            if (providers == null) {
+                providers = new WidgetManagerHelper(context).getAllProviders(packageUser);
+            }
+            for (AppWidgetProviderInfo widgetInfo : providers) {
                 LauncherAppWidgetProviderInfo launcherWidgetInfo =
                         LauncherAppWidgetProviderInfo.fromProviderInfo(context, widgetInfo);
 
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.AppFilter;
+import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link IncrementalAppSearch}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IncrementalAppSearchTest {
+
+    private static final int MAX_RESULTS = 5;
+    private static final String QUERY_CHARS = "acelmos 2电";
+    private static final String[] WORDS = new String[] {"Calculator", "Calendar", "Camera",
+            "Clock", "Maps", "Mail", "Messages", "Music", "Photos", "Settings", "Store", "Play",
+            "cam2", "Café", "电子邮件", "Oscar", "sCam"};
+
+    private AllAppsList mAllAppsList;
+    private Random mRandom;
+
+    @Before
+    public void setup() {
+        mAllAppsList = new AllAppsList(null, new AppFilter(getApplicationContext()));
+        mRandom = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            addApp(i);
+        }
+    }
+
+    @Test
+    public void randomQuerySequences_matchFullSearch() {
+        IncrementalAppSearch search = new IncrementalAppSearch();
+        for (int sequence = 0; sequence < 50; sequence++) {
+            StringBuilder query = new StringBuilder();
+            for (int step = 0; step < 20; step++) {
+                if (query.length() > 0 && mRandom.nextInt(4) == 0) {
+                    // Backspace
+                    query.setLength(query.length() - 1);
+                } else {
+                    query.append(QUERY_CHARS.charAt(mRandom.nextInt(QUERY_CHARS.length())));
+                }
+                if (query.length() == 0) {
+                    continue;
+                }
+                assertSameResults(search, query.toString());
+            }
+
+            // Modify the list between sequences
+            if (mRandom.nextBoolean()) {
+                addApp(1000 + sequence);
+            } else {
+                mAllAppsList.removePackage("pkg" + mRandom.nextInt(200), Process.myUserHandle());
+            }
+        }
+    }
+
+    @Test
+    public void titleChange_invalidatesCachedResults() {
+        IncrementalAppSearch search = new IncrementalAppSearch();
+        assertSameResults(search, "ca");
+
+        AppInfo info = mAllAppsList.data.get(0);
+        info.title = "Zebra";
+        mAllAppsList.updateSectionName(info);
+
+        assertSameResults(search, "cal");
+        assertSameResults(search, "z");
+    }
+
+    private void assertSameResults(IncrementalAppSearch search, String query) {
+        List<AppInfo> expected = linearSearch(mAllAppsList.data, query);
+        List<AppInfo> actual = new ArrayList<>();
+        search.search(mAllAppsList.getSearchIndex().getSnapshot(), query, MAX_RESULTS, actual);
+        assertEquals("query: " + query, expected, actual);
+    }
+
+    private void addApp(int id) {
+        int wordCount = 1 + mRandom.nextInt(3);
+        StringBuilder title = new StringBuilder();
+        for (int j = 0; j < wordCount; j++) {
+            if (j > 0) {
+                title.append(' ');
+            }
+            title.append(WORDS[mRandom.nextInt(WORDS.length)]);
+        }
+        ComponentName cn = new ComponentName("pkg" + id, "cls" + id);
+        mAllAppsList.add(new AppInfo(cn, title.toString(), Process.myUserHandle(),
+                new Intent().setComponent(cn)), null, false);
+    }
+
+    private static List<AppInfo> linearSearch(List<AppInfo> apps, String query) {
+        String queryLower = query.toLowerCase();
+        StringMatcher matcher = StringMatcher.getInstance();
+        List<AppInfo> result = new ArrayList<>();
+        for (AppInfo info : apps) {
+            if (result.size() < MAX_RESULTS
+                    && StringMatcherUtility.matches(queryLower, info.title.toString(), matcher)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.icons.cache.CachingLogic;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for concurrent lookups in {@link IconCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconCacheConcurrencyTest {
+
+    private static final String TAG = "IconCacheConcurrencyTest";
+
+    private static final int THREAD_COUNT = 4;
+    private static final int LOOKUPS_PER_THREAD = 5000;
+
+    private final ComponentName mComponent = new ComponentName(TEST_PACKAGE, TEST_ACTIVITY);
+
+    private LauncherModelHelper mModelHelper;
+    private IconCache mIconCache;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setup() {
+        mModelHelper = new LauncherModelHelper();
+        mIconCache = LauncherAppState.getInstance(mModelHelper.sandboxContext).getIconCache();
+        mExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+        addToCache("label-1");
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void cacheHit_doesNotWaitForCacheLock() throws Exception {
+        // Resolve the entry once
+        assertEquals("label-1", lookup().title.toString());
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            synchronized (mIconCache) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Release the lock
+                }
+            }
+        });
+        holder.start();
+        try {
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+            Future<WorkspaceItemInfo> hit = mExecutor.submit(this::lookup);
+            assertEquals("label-1", hit.get(1, TimeUnit.SECONDS).title.toString());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void cacheUpdate_invalidatesResolvedEntry() {
+        assertEquals("label-1", lookup().title.toString());
+        addToCache("label-2");
+        assertEquals("label-2", lookup().title.toString());
+
+        mIconCache.removeIconsForPkg(TEST_PACKAGE, Process.myUserHandle());
+        addToCache("label-3");
+        assertEquals("label-3", lookup().title.toString());
+    }
+
+    @Test
+    public void parallelLookups_throughput() throws Exception {
+        lookup();
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            futures.add(mExecutor.submit(() -> {
+                for (int j = 0; j < LOOKUPS_PER_THREAD; j++) {
+                    lookup();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        int lookups = THREAD_COUNT * LOOKUPS_PER_THREAD;
+        Log.d(TAG, "Lookups: " + lookups + " threads: " + THREAD_COUNT
+                + " totalMs: " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                + " lookups/ms: " + lookups * 1_000_000L / Math.max(elapsedNanos, 1));
+    }
+
+    private WorkspaceItemInfo lookup() {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.user = Process.myUserHandle();
+        info.intent = new Intent(Intent.ACTION_MAIN).setComponent(mComponent);
+        mIconCache.getTitleAndIcon(info, () -> null, false, false);
+        return info;
+    }
+
+    private void addToCache(String label) {
+        CachingLogic<ComponentName> logic = new CachingLogic<ComponentName>() {
+            @Override
+            public ComponentName getComponent(ComponentName cn) {
+                return cn;
+            }
+
+            @Override
+            public UserHandle getUser(ComponentName cn) {
+                return Process.myUserHandle();
+            }
+
+            @Override
+            public CharSequence getLabel(ComponentName cn) {
+                return label;
+            }
+
+            @NonNull
+            @Override
+            public BitmapInfo loadIcon(Context context, ComponentName cn) {
+                return BitmapInfo.of(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888),
+                        Color.RED);
+            }
+        };
+        UserManager um = mModelHelper.sandboxContext.getSystemService(UserManager.class);
+        mIconCache.addIconToDBAndMemCache(mComponent, logic, new PackageInfo(),
+                um.getSerialNumberForUser(Process.myUserHandle()), true);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.util.ComponentKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link IconMemoryCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconMemoryCacheTest {
+
+    private static final int ICON_SIZE = 10;
+    // Size of an ARGB_8888 icon
+    private static final int ICON_BYTES = ICON_SIZE * ICON_SIZE * 4;
+
+    private final List<ComponentKey> mDemoted = new ArrayList<>();
+    private IconMemoryCache mCache;
+
+    @Before
+    public void setup() {
+        mCache = new IconMemoryCache(3 * ICON_BYTES, mDemoted::add);
+    }
+
+    @Test
+    public void residentBytes_matchHighResEntries() {
+        mCache.putLocked(key(1), highRes());
+        mCache.putLocked(key(2), highRes());
+        assertEquals(2 * ICON_BYTES, mCache.getResidentBytes());
+
+        mCache.removeLocked(key(1));
+        assertEquals(ICON_BYTES, mCache.getResidentBytes());
+    }
+
+    @Test
+    public void budgetExceeded_demotesLeastRecentlyUsed() {
+        mCache.putLocked(key(1), highRes());
+        mCache.putLocked(key(2), highRes());
+        mCache.putLocked(key(3), highRes());
+        // Touch the first entry so that the second one is the least recently used
+        assertNotNull(mCache.get(key(1), false));
+
+        mCache.putLocked(key(4), highRes());
+
+        // Entries are demoted until below 90% of the budget
+        assertEquals(2, mDemoted.size());
+        assertEquals(key(2), mDemoted.get(0));
+        assertEquals(key(3), mDemoted.get(1));
+        assertEquals(2 * ICON_BYTES, mCache.getResidentBytes());
+        assertNotNull(mCache.get(key(1), false));
+
+        // The demoted entry is still served for low-res lookups
+        assertNull(mCache.get(key(2), false));
+        IconMemoryCache.Entry entry = mCache.get(key(2), true);
+        assertNotNull(entry);
+        assertTrue(entry.isLowRes());
+        assertEquals(Color.RED, entry.bitmap.color);
+    }
+
+    @Test
+    public void lowResEntry_doesNotReplaceHighRes() {
+        mCache.putLocked(key(1), highRes());
+        mCache.putLocked(key(1), lowRes());
+        assertNotNull(mCache.get(key(1), false));
+        assertEquals(ICON_BYTES, mCache.getResidentBytes());
+    }
+
+    @Test
+    public void trimMemory_demotesEntries() {
+        mCache.putLocked(key(1), highRes());
+        mCache.putLocked(key(2), highRes());
+        mCache.putLocked(key(3), highRes());
+
+        mCache.trimMemoryLocked(TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(ICON_BYTES, mCache.getResidentBytes());
+
+        mCache.trimMemoryLocked(TRIM_MEMORY_COMPLETE);
+        assertEquals(0, mCache.getResidentBytes());
+        assertEquals(3, mDemoted.size());
+    }
+
+    @Test
+    public void hitRate() {
+        mCache.putLocked(key(1), highRes());
+        mCache.get(key(1), false);
+        mCache.get(key(1), true);
+        mCache.get(key(2), true);
+        assertEquals(2 / 3f, mCache.getHitRate(), 0.001f);
+    }
+
+    private static ComponentKey key(int id) {
+        return new ComponentKey(
+                new ComponentName("com.example", "Activity" + id), Process.myUserHandle());
+    }
+
+    private static CacheEntry highRes() {
+        CacheEntry entry = new CacheEntry();
+        entry.title = "title";
+        entry.bitmap = BitmapInfo.of(
+                Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888), Color.RED);
+        return entry;
+    }
+
+    private static CacheEntry lowRes() {
+        CacheEntry entry = new CacheEntry();
+        entry.title = "title";
+        entry.bitmap = BitmapInfo.of(BitmapInfo.LOW_RES_ICON, Color.RED);
+        return entry;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Tests for {@link LoaderStats}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LoaderStatsTest {
+
+    @Test
+    public void countersAreAttributedToEndedStage() {
+        LoaderStats stats = new LoaderStats();
+        stats.start(null);
+        stats.addItems(10);
+        stats.addDbRows(12);
+        stats.endStage("stageOne");
+        stats.addDbRows(5);
+        stats.endStage("stageTwo");
+        stats.finish(LoaderStats.RESULT_COMPLETED);
+
+        String dump = dump();
+        String stageOne = findLine(dump, "stageOne:");
+        assertTrue(stageOne.contains("items=10"));
+        assertTrue(stageOne.contains("dbRows=12"));
+        assertTrue(stageOne.contains("binderCalls="));
+        assertFalse(stageOne.contains("iconMemoryHits="));
+
+        String stageTwo = findLine(dump, "stageTwo:");
+        assertTrue(stageTwo.contains("dbRows=5"));
+        assertFalse(stageTwo.contains("items="));
+    }
+
+    @Test
+    public void historyIsBounded() {
+        for (int i = 0; i < 20; i++) {
+            LoaderStats stats = new LoaderStats();
+            stats.start(null);
+            stats.endStage("stage" + i);
+            stats.finish(LoaderStats.RESULT_CANCELLED);
+        }
+        String dump = dump();
+        assertTrue(dump.contains("stage19:"));
+        assertFalse(dump.contains("stage0:"));
+
+        int loads = dump.split("result=", -1).length - 1;
+        assertEquals(5, loads);
+    }
+
+    private static String dump() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        LoaderStats.dump("", writer);
+        writer.flush();
+        return out.toString();
+    }
+
+    private static String findLine(String dump, String key) {
+        String found = null;
+        for (String line : dump.split("\n")) {
+            if (line.contains(key)) {
+                // Use the latest load in the history
+                found = line;
+            }
+        }
+        return found == null ? "" : found;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link ModelSnapshot}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ModelSnapshotTest {
+
+    private LauncherModelHelper mModelHelper;
+    private Context mContext;
+    private InvariantDeviceProfile mIdp;
+    private BgDataModel mDataModel;
+
+    @Before
+    public void setup() {
+        mModelHelper = new LauncherModelHelper();
+        mContext = mModelHelper.sandboxContext;
+        mIdp = InvariantDeviceProfile.INSTANCE.get(mContext);
+        mDataModel = new BgDataModel();
+
+        mDataModel.addItem(mContext, newItem(1, CONTAINER_DESKTOP, 0, 0), false);
+        mDataModel.addItem(mContext, newItem(2, CONTAINER_DESKTOP, 1, 0), false);
+        mDataModel.addItem(mContext, newItem(3, CONTAINER_HOTSEAT, 0, 0), false);
+
+        FolderInfo folder = new FolderInfo();
+        folder.id = 4;
+        folder.container = CONTAINER_DESKTOP;
+        folder.screenId = 0;
+        folder.cellX = 1;
+        folder.title = "Folder";
+        mDataModel.addItem(mContext, folder, false);
+        mDataModel.addItem(mContext, newItem(5, folder.id, 0, 0), false);
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void writeAndRead_containsFirstScreenAndHotseat() {
+        ModelSnapshot.capture(mContext, mIdp, mDataModel).write(mContext);
+        ModelSnapshot snapshot = ModelSnapshot.read(mContext, mIdp);
+
+        assertNotNull(snapshot);
+        assertEquals(0, snapshot.orderedScreenIds.get(0));
+        assertEquals(3, snapshot.items.size());
+        for (ItemInfo info : snapshot.items) {
+            assertTrue(info.id != 2);
+            if (info instanceof FolderInfo) {
+                assertEquals("Folder", info.title.toString());
+                assertEquals(1, ((FolderInfo) info).contents.size());
+                assertEquals(5, ((FolderInfo) info).contents.get(0).id);
+            } else {
+                WorkspaceItemInfo item = (WorkspaceItemInfo) info;
+                assertEquals(TEST_PACKAGE, item.getTargetComponent().getPackageName());
+                assertEquals(Process.myUserHandle(), item.user);
+                assertEquals(Color.RED, item.bitmap.color);
+                assertEquals(4, item.bitmap.icon.getWidth());
+            }
+        }
+    }
+
+    @Test
+    public void dbChanged_invalidatesSnapshot() {
+        ModelSnapshot.capture(mContext, mIdp, mDataModel).write(mContext);
+        assertNotNull(ModelSnapshot.read(mContext, mIdp));
+
+        ModelSnapshot.onDbChanged(mContext);
+        assertNull(ModelSnapshot.read(mContext, mIdp));
+    }
+
+    private static WorkspaceItemInfo newItem(int id, int container, int screenId, int cellX) {
+        WorkspaceItemInfo item = new WorkspaceItemInfo();
+        item.id = id;
+        item.itemType = ITEM_TYPE_APPLICATION;
+        item.container = container;
+        item.screenId = screenId;
+        item.cellX = cellX;
+        item.title = "Item " + id;
+        item.user = Process.myUserHandle();
+        item.intent = new Intent(Intent.ACTION_MAIN).setComponent(
+                new ComponentName(TEST_PACKAGE, TEST_ACTIVITY));
+        item.bitmap = new BitmapInfo(
+                Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888), Color.RED);
+        return item;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.APP_ICON;
+import static com.android.launcher3.util.LauncherModelHelper.DESKTOP;
+
+import static org.junit.Assert.assertEquals;
+
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for the way {@link ModelWriter} writes item updates
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ModelWriterTest {
+
+    private LauncherModelHelper mModelHelper;
+    private ModelWriter mWriter;
+    private ItemInfo mItem1;
+    private ItemInfo mItem2;
+
+    @Before
+    public void setUp() throws Exception {
+        mModelHelper = new LauncherModelHelper();
+        int id1 = mModelHelper.addItem(APP_ICON, 1, DESKTOP, 0, 0);
+        int id2 = mModelHelper.addItem(APP_ICON, 1, DESKTOP, 1, 0);
+        mModelHelper.loadModelSync();
+
+        mWriter = mModelHelper.getModel().getWriter(false, false, null);
+        mItem1 = mModelHelper.getBgDataModel().itemsIdMap.get(id1);
+        mItem2 = mModelHelper.getBgDataModel().itemsIdMap.get(id2);
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void testUpdatesOfAMainThreadTaskAreCoalesced() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            mWriter.moveItemInDatabase(mItem1, DESKTOP, 1, 2, 0);
+            mWriter.moveItemInDatabase(mItem2, DESKTOP, 1, 3, 0);
+            mWriter.moveItemInDatabase(mItem1, DESKTOP, 1, 4, 0);
+            mWriter.modifyItemInDatabase(mItem1, DESKTOP, 1, 4, 1, 2, 1);
+        }).get();
+        waitForWrites();
+
+        assertEquals(1, mWriter.getUpdateBatchCount());
+        assertItemInDatabase(mItem1, 4, 1, 2);
+        assertItemInDatabase(mItem2, 3, 0, 1);
+    }
+
+    @Test
+    public void testUpdatesAreWrittenBeforeLaterOperations() throws Exception {
+        WorkspaceItemInfo item = new WorkspaceItemInfo();
+        item.itemType = Favorites.ITEM_TYPE_APPLICATION;
+        MAIN_EXECUTOR.submit(() -> {
+            mWriter.moveItemInDatabase(mItem1, DESKTOP, 1, 2, 0);
+            // The item is only in the DB once the insertion is written
+            mWriter.addItemToDatabase(item, DESKTOP, 1, 0, 1);
+            mWriter.moveItemInDatabase(item, DESKTOP, 1, 3, 1);
+        }).get();
+        waitForWrites();
+
+        assertEquals(2, mWriter.getUpdateBatchCount());
+        assertItemInDatabase(mItem1, 2, 0, 1);
+        assertItemInDatabase(item, 3, 1, 1);
+    }
+
+    @Test
+    public void testUpdatesAreWrittenBeforeLaterModelTasks() throws Exception {
+        int[] cellX = new int[] {-1};
+        MAIN_EXECUTOR.submit(() -> {
+            mWriter.moveItemInDatabase(mItem1, DESKTOP, 1, 2, 0);
+            mModelHelper.getModel().enqueueModelUpdateTask(new BaseModelUpdateTask() {
+                @Override
+                public void execute(LauncherAppState app, BgDataModel dataModel,
+                        AllAppsList apps) {
+                    cellX[0] = queryCellX(mItem1);
+                }
+            });
+        }).get();
+        waitForWrites();
+
+        assertEquals(2, cellX[0]);
+    }
+
+    @Test
+    public void testUpdatesDeferredForUndo() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            mWriter.prepareToUndoDelete();
+            mWriter.moveItemInDatabase(mItem1, DESKTOP, 1, 2, 0);
+        }).get();
+        waitForWrites();
+        assertEquals(0, mWriter.getUpdateBatchCount());
+        assertItemInDatabase(mItem1, 0, 0, 1);
+
+        MAIN_EXECUTOR.submit(mWriter::commitDelete).get();
+        waitForWrites();
+        assertEquals(1, mWriter.getUpdateBatchCount());
+        assertItemInDatabase(mItem1, 2, 0, 1);
+    }
+
+    private static void waitForWrites() throws Exception {
+        // The updates are handed to the model thread by the next main thread message
+        MAIN_EXECUTOR.submit(() -> { }).get();
+        MODEL_EXECUTOR.submit(() -> { }).get();
+    }
+
+    private int queryCellX(ItemInfo item) {
+        try (Cursor c = mModelHelper.sandboxContext.getContentResolver().query(
+                Favorites.getContentUri(item.id), new String[] {Favorites.CELLX},
+                null, null, null)) {
+            return c.moveToNext() ? c.getInt(0) : -1;
+        }
+    }
+
+    private void assertItemInDatabase(ItemInfo item, int cellX, int cellY, int spanX) {
+        try (Cursor c = mModelHelper.sandboxContext.getContentResolver().query(
+                Favorites.getContentUri(item.id),
+                new String[] {Favorites.CELLX, Favorites.CELLY, Favorites.SPANX},
+                null, null, null)) {
+            assertEquals(1, c.getCount());
+            c.moveToNext();
+            assertEquals(cellX, c.getInt(0));
+            assertEquals(cellY, c.getInt(1));
+            assertEquals(spanX, c.getInt(2));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static com.android.launcher3.util.BenchmarkUtils.countAllocations;
+import static com.android.launcher3.util.BenchmarkUtils.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link FuzzyMatcher}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class FuzzyMatcherTest {
+
+    private static final String TAG = "FuzzyMatcherTest";
+
+    private static final String[] CORPUS = new String[] {
+            "Calculator", "Calendar", "Camera", "Chrome", "Clock", "Contacts", "Drive", "Files",
+            "Gmail", "Google", "Google Maps", "Google Play Store", "Google Photos", "Keep Notes",
+            "Maps", "Messages", "Music", "News", "Phone", "Photos", "Play Games", "Settings",
+            "Sound Recorder", "Weather", "YouTube", "YouTube Music", "电子邮件"};
+
+    /** Pairs of query and the expected best result from {@link #CORPUS} */
+    private static final String[][] RELEVANCE = new String[][] {
+            {"calc", "Calculator"},
+            {"cal", "Calendar"},
+            {"maps", "Maps"},
+            {"gm", "Gmail"},
+            {"gma", "Gmail"},
+            {"goma", "Google Maps"},
+            {"gps", "Google Play Store"},
+            {"ytm", "YouTube Music"},
+            {"sr", "Sound Recorder"},
+            {"calander", "Calendar"},
+            {"setings", "Settings"},
+            {"wether", "Weather"},
+            {"gmal", "Gmail"},
+            {"kn", "Keep Notes"},
+            {"邮件", "电子邮件"},
+    };
+
+    @Test
+    public void testMatchCategories() {
+        FuzzyMatcher matcher = new FuzzyMatcher();
+        int exact = score(matcher, "maps", "Maps");
+        int prefix = score(matcher, "map", "Maps");
+        int secondWord = score(matcher, "map", "Google Maps");
+        int acronym = score(matcher, "gm", "Google Maps");
+        int subsequence = score(matcher, "gmal", "Gmail");
+        int typo = score(matcher, "calander", "Calendar");
+
+        assertTrue(exact > prefix);
+        assertTrue(prefix > secondWord);
+        assertTrue(secondWord > acronym);
+        assertTrue(acronym > subsequence);
+        assertTrue(subsequence > typo);
+        assertTrue(typo > FuzzyMatcher.NO_MATCH);
+
+        assertEquals(FuzzyMatcher.NO_MATCH, score(matcher, "xyz", "Google Maps"));
+        // Short queries do not allow typos
+        assertEquals(FuzzyMatcher.NO_MATCH, score(matcher, "cak", "Calendar"));
+    }
+
+    @Test
+    public void testMatchesSupersetOfWordPrefix() {
+        FuzzyMatcher matcher = new FuzzyMatcher();
+        StringMatcherUtility.StringMatcher stringMatcher =
+                StringMatcherUtility.StringMatcher.getInstance();
+        String[] queries = new String[] {"c", "ca", "go", "ma", "m", "p", "s", "y", "电", "邮件"};
+        for (String title : CORPUS) {
+            for (String query : queries) {
+                if (StringMatcherUtility.matches(query, title, stringMatcher)) {
+                    assertTrue(query + " " + title,
+                            score(matcher, query, title) != FuzzyMatcher.NO_MATCH);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRelevance() {
+        FuzzyMatcher matcher = new FuzzyMatcher();
+        for (String[] pair : RELEVANCE) {
+            String best = null;
+            int bestScore = FuzzyMatcher.NO_MATCH;
+            for (String title : CORPUS) {
+                int score = score(matcher, pair[0], title);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = title;
+                }
+            }
+            assertEquals("query: " + pair[0], pair[1], best);
+        }
+    }
+
+    @Test
+    public void benchmarkScore() {
+        // Only the ASCII entries, as the others are matched through the collator
+        String[] titles = Arrays.stream(CORPUS)
+                .filter(TokenizedString::isSimple)
+                .toArray(String[]::new);
+        int count = 5000;
+        TokenizedString[] targets = new TokenizedString[count];
+        for (int i = 0; i < count; i++) {
+            targets[i] = TokenizedString.of(titles[i % titles.length] + " " + i);
+        }
+        FuzzyMatcher matcher = new FuzzyMatcher();
+        String[] queries = new String[] {"g", "gm", "gma", "calander", "zzzz"};
+
+        for (String query : queries) {
+            boolean isSimple = TokenizedString.isSimple(query);
+            boolean isHan = StringMatcherUtility.requestSimpleFuzzySearch(query);
+            int iterations = 20;
+            // Warm up
+            for (int i = 0; i < iterations; i++) {
+                scoreAll(matcher, query, isSimple, isHan, targets);
+            }
+            long[] nanos = new long[1];
+            int allocations = countAllocations(() -> {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    scoreAll(matcher, query, isSimple, isHan, targets);
+                }
+                nanos[0] = System.nanoTime() - start;
+            });
+
+            assertEquals("Scoring allocated for " + query, 0, allocations);
+            report(TAG, "score_" + query + "_ns_per_entry", nanos[0] / iterations / count);
+        }
+    }
+
+    private static int scoreAll(FuzzyMatcher matcher, String query, boolean isSimple,
+            boolean isHan, TokenizedString[] targets) {
+        int matches = 0;
+        for (TokenizedString target : targets) {
+            if (matcher.score(query, isSimple, isHan, target) != FuzzyMatcher.NO_MATCH) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static int score(FuzzyMatcher matcher, String query, String title) {
+        return matcher.score(query, TokenizedString.isSimple(query),
+                StringMatcherUtility.requestSimpleFuzzySearch(query), TokenizedString.of(title));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static com.android.launcher3.util.BenchmarkUtils.countAllocations;
+import static com.android.launcher3.util.BenchmarkUtils.report;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link TokenizedString}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TokenizedStringTest {
+
+    private static final String TAG = "TokenizedStringTest";
+
+    private static final StringMatcher MATCHER = StringMatcher.getInstance();
+
+    private static final String[] TARGETS = new String[] {
+            "white cow", "whiteCow", "whiteCOW", "whitecowCOW", "white2cow", "whitecow",
+            "whitEcow", "whitecowCow", "whitecow cow", "whitecowcow", "whit ecowcow",
+            "cats&dogs", "cats&Dogs", "2+43", "Q", "  Q", "elephant", "Elephant", "电子邮件",
+            "Bot", "bot", "Café Olé", "Ünïcödé Tést", "", "a"};
+
+    private static final String[] QUERIES = new String[] {
+            "white ", "white c", "cow", "dog", "&", "43", "3", "q", "e", "el", "电", "子",
+            "邮件", "ba", "phant", "elephants", "cafe", "ole", "unic", "test", "t", "a", " "};
+
+    @Test
+    public void testMatchesSameAsStringMatcherUtility() {
+        for (String target : TARGETS) {
+            TokenizedString tokens = TokenizedString.of(target);
+            for (String query : QUERIES) {
+                assertEquals("query: " + query + ", target: " + target,
+                        StringMatcherUtility.matches(query, target, MATCHER),
+                        StringMatcherUtility.matches(query, tokens, MATCHER));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkAgainstLinearScan() {
+        for (int count : new int[] {100, 500, 2000}) {
+            String[] titles = generateTitles(count);
+            TokenizedString[] tokens = new TokenizedString[count];
+            for (int i = 0; i < count; i++) {
+                tokens[i] = TokenizedString.of(titles[i]);
+            }
+            String[] queries = new String[] {"c", "ca", "cal", "calc", "m", "ma", "map", "x"};
+
+            // Warm up
+            runLinearScan(titles, queries);
+            runIndexed(tokens, queries);
+
+            long start = System.nanoTime();
+            int linearMatches = runLinearScan(titles, queries);
+            long linearNanos = System.nanoTime() - start;
+
+            int[] indexedMatches = new int[1];
+            long[] indexedNanos = new long[1];
+            int allocations = countAllocations(() -> {
+                long indexedStart = System.nanoTime();
+                indexedMatches[0] = runIndexed(tokens, queries);
+                indexedNanos[0] = System.nanoTime() - indexedStart;
+            });
+
+            assertEquals(linearMatches, indexedMatches[0]);
+            // The titles and queries are ASCII, so the words are matched in place
+            assertEquals("Indexed matching allocated", 0, allocations);
+            report(TAG, "linear_" + count + "_apps_ns", linearNanos);
+            report(TAG, "indexed_" + count + "_apps_ns", indexedNanos[0]);
+        }
+    }
+
+    private static int runLinearScan(String[] titles, String[] queries) {
+        int matches = 0;
+        for (String query : queries) {
+            for (String title : titles) {
+                if (StringMatcherUtility.matches(query, title, MATCHER)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static int runIndexed(TokenizedString[] tokens, String[] queries) {
+        int matches = 0;
+        for (String query : queries) {
+            boolean isSimple = TokenizedString.isSimple(query);
+            boolean isHan = StringMatcherUtility.requestSimpleFuzzySearch(query);
+            for (TokenizedString token : tokens) {
+                if (token.matches(query, isSimple, isHan, MATCHER)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String[] generateTitles(int count) {
+        String[] words = new String[] {"Calculator", "Calendar", "Maps", "Camera", "Clock",
+                "Mail", "Messages", "Music", "Photos", "Settings", "Store", "Play", "News",
+                "Weather", "Files", "Contacts", "Phone", "Drive", "Docs", "Sheets"};
+        Random random = new Random(count);
+        String[] titles = new String[count];
+        for (int i = 0; i < count; i++) {
+            int wordCount = 1 + random.nextInt(3);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < wordCount; j++) {
+                if (j > 0) {
+                    sb.append(' ');
+                }
+                sb.append(words[random.nextInt(words.length)]);
+            }
+            titles[i] = sb.toString();
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import android.os.Bundle;
+import android.os.Debug;
+import android.util.Log;
+
+/**
+ * Utility methods for the tests which measure the cost of some code, and report it as
+ * instrumentation status so that it can be tracked by benchmarks
+ */
+public class BenchmarkUtils {
+
+    // Reported as in progress, so that the status is not parsed as the result of a test
+    public static final int REPORT_STATUS_CODE = 2;
+
+    /**
+     * Logs {@param value} under {@param key} and reports it as instrumentation status
+     */
+    public static void report(String tag, String key, long value) {
+        Log.d(tag, key + "=" + value);
+        Bundle status = new Bundle();
+        status.putLong(key, value);
+        sendStatus(status);
+    }
+
+    /**
+     * Reports {@param status} as instrumentation status
+     */
+    public static void sendStatus(Bundle status) {
+        getInstrumentation().sendStatus(REPORT_STATUS_CODE, status);
+    }
+
+    /**
+     * Runs {@param action} on the calling thread and returns the number of objects it allocated
+     */
+    @SuppressWarnings("deprecation")
+    public static int countAllocations(Runnable action) {
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            action.run();
+            return Debug.getThreadAllocCount();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
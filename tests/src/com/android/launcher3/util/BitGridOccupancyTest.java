@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link BitGridOccupancy}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class BitGridOccupancyTest {
+
+    @Test
+    public void testFindVacantCell() {
+        BitGridOccupancy grid = initGrid(4,
+                1, 1, 1, 0, 0,
+                0, 0, 1, 1, 0,
+                0, 0, 0, 0, 0,
+                1, 1, 0, 0, 0
+        );
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 2, 2));
+        assertEquals(vacant[0], 0);
+        assertEquals(vacant[1], 1);
+
+        assertTrue(grid.findVacantCell(vacant, 3, 2));
+        assertEquals(vacant[0], 2);
+        assertEquals(vacant[1], 2);
+
+        assertFalse(grid.findVacantCell(vacant, 3, 3));
+        assertFalse(grid.findVacantCell(vacant, 6, 1));
+    }
+
+    @Test
+    public void testIsRegionVacant() {
+        BitGridOccupancy grid = initGrid(4,
+                1, 1, 1, 0, 0,
+                0, 0, 1, 1, 0,
+                0, 0, 0, 0, 0,
+                1, 1, 0, 0, 0
+        );
+
+        assertTrue(grid.isRegionVacant(4, 0, 1, 4));
+        assertTrue(grid.isRegionVacant(0, 1, 2, 2));
+        assertTrue(grid.isRegionVacant(2, 2, 3, 2));
+
+        assertFalse(grid.isRegionVacant(3, 0, 2, 4));
+        assertFalse(grid.isRegionVacant(0, 0, 2, 1));
+        assertFalse(grid.isRegionVacant(4, 0, 2, 1));
+        assertFalse(grid.isRegionVacant(-1, 2, 1, 1));
+    }
+
+    @Test
+    public void testMarkCells_clipsToGrid() {
+        BitGridOccupancy grid = new BitGridOccupancy(4, 3);
+        grid.markCells(2, 1, 5, 5, true);
+        assertArrayEquals(new boolean[] {
+                false, false, false, false,
+                false, false, true, true,
+                false, false, true, true}, toArray(grid));
+
+        grid.markCells(3, 0, 1, 3, false);
+        assertArrayEquals(new boolean[] {
+                false, false, false, false,
+                false, false, true, false,
+                false, false, true, false}, toArray(grid));
+
+        grid.markCells(-1, 0, 2, 2, true);
+        assertFalse(grid.isOccupied(0, 0));
+    }
+
+    @Test
+    public void testWideGrid() {
+        BitGridOccupancy grid = new BitGridOccupancy(BitGridOccupancy.MAX_COUNT_X, 2);
+        grid.markCells(0, 0, BitGridOccupancy.MAX_COUNT_X - 1, 1, true);
+        assertTrue(grid.isRegionVacant(BitGridOccupancy.MAX_COUNT_X - 1, 0, 1, 2));
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 2, 1));
+        assertEquals(0, vacant[0]);
+        assertEquals(1, vacant[1]);
+
+        assertTrue(grid.findVacantCell(vacant, BitGridOccupancy.MAX_COUNT_X, 1));
+        assertEquals(0, vacant[0]);
+        assertEquals(1, vacant[1]);
+    }
+
+    @Test
+    public void testBulkOperations() {
+        BitGridOccupancy a = initGrid(2,
+                1, 1, 0,
+                0, 0, 0);
+        BitGridOccupancy b = initGrid(2,
+                0, 1, 1,
+                0, 0, 1);
+        assertTrue(a.intersects(b));
+
+        BitGridOccupancy union = new BitGridOccupancy(3, 2);
+        a.copyTo(union);
+        union.union(b);
+        assertArrayEquals(new boolean[] {
+                true, true, true,
+                false, false, true}, toArray(union));
+
+        BitGridOccupancy intersection = new BitGridOccupancy(3, 2);
+        a.copyTo(intersection);
+        intersection.intersect(b);
+        assertArrayEquals(new boolean[] {
+                false, true, false,
+                false, false, false}, toArray(intersection));
+
+        b.markCells(1, 0, 1, 1, false);
+        assertFalse(a.intersects(b));
+    }
+
+    @Test
+    public void testMatchesGridOccupancy() {
+        Random random = new Random(42);
+        int[] expected = new int[2];
+        int[] actual = new int[2];
+        for (int iteration = 0; iteration < 200; iteration++) {
+            int countX = 1 + random.nextInt(10);
+            int countY = 1 + random.nextInt(10);
+            GridOccupancy reference = new GridOccupancy(countX, countY);
+            BitGridOccupancy grid = new BitGridOccupancy(countX, countY);
+            for (int i = 0; i < 8; i++) {
+                int x = random.nextInt(countX);
+                int y = random.nextInt(countY);
+                int spanX = 1 + random.nextInt(3);
+                int spanY = 1 + random.nextInt(3);
+                boolean value = random.nextInt(4) != 0;
+                reference.markCells(x, y, spanX, spanY, value);
+                grid.markCells(x, y, spanX, spanY, value);
+            }
+
+            GridOccupancy copy = new GridOccupancy(countX, countY);
+            grid.copyTo(copy);
+            BitGridOccupancy roundTrip = new BitGridOccupancy(countX, countY);
+            roundTrip.copyFrom(reference);
+            for (int x = 0; x < countX; x++) {
+                for (int y = 0; y < countY; y++) {
+                    assertEquals(reference.cells[x][y], grid.isOccupied(x, y));
+                    assertEquals(reference.cells[x][y], copy.cells[x][y]);
+                    assertEquals(reference.cells[x][y], roundTrip.isOccupied(x, y));
+                }
+            }
+
+            for (int spanX = 1; spanX <= countX; spanX++) {
+                for (int spanY = 1; spanY <= countY; spanY++) {
+                    boolean found = reference.findVacantCell(expected, spanX, spanY);
+                    assertEquals(found, grid.findVacantCell(actual, spanX, spanY));
+                    if (found) {
+                        assertArrayEquals(expected, actual);
+                    }
+                    for (int x = -1; x <= countX; x++) {
+                        for (int y = -1; y <= countY; y++) {
+                            assertEquals(reference.isRegionVacant(x, y, spanX, spanY),
+                                    grid.isRegionVacant(x, y, spanX, spanY));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean[] toArray(BitGridOccupancy grid) {
+        boolean[] cells = new boolean[grid.getCountX() * grid.getCountY()];
+        for (int y = 0; y < grid.getCountY(); y++) {
+            for (int x = 0; x < grid.getCountX(); x++) {
+                cells[y * grid.getCountX() + x] = grid.isOccupied(x, y);
+            }
+        }
+        return cells;
+    }
+
+    private BitGridOccupancy initGrid(int rows, int... cells) {
+        int cols = cells.length / rows;
+        int i = 0;
+        BitGridOccupancy grid = new BitGridOccupancy(cols, rows);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                grid.markCells(x, y, 1, 1, cells[i] != 0);
+                i++;
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.BenchmarkUtils.report;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares the cost of {@link GridOccupancy} and {@link BitGridOccupancy} on the grids of large
+ * devices, and when placing items across many screens. The times are reported as
+ * instrumentation status, and both implementations must give the same results.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class GridOccupancyBenchmarkTest {
+
+    private static final String TAG = "GridOccupancyBenchmark";
+
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void vacancySearch_tabletGrid() {
+        compareVacancySearch("tablet_", 8, 6);
+    }
+
+    @Test
+    public void vacancySearch_foldableTwoPanelGrid() {
+        compareVacancySearch("foldable_", 12, 8);
+    }
+
+    @Test
+    public void multiScreenPlacement() {
+        long expected = measure("placement_grid_", () -> placeItems(false));
+        long actual = measure("placement_bit_grid_", () -> placeItems(true));
+        assertEquals(expected, actual);
+    }
+
+    private void compareVacancySearch(String prefix, int countX, int countY) {
+        long expected = measure(prefix + "grid_", () -> searchVacancies(countX, countY, false));
+        long actual = measure(prefix + "bit_grid_", () -> searchVacancies(countX, countY, true));
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Fills a grid randomly and looks for vacant regions of all sizes, returning a checksum of
+     * the results
+     */
+    private static long searchVacancies(int countX, int countY, boolean useBits) {
+        Random random = new Random(countX * 31 + countY);
+        GridOccupancy grid = new GridOccupancy(countX, countY);
+        BitGridOccupancy bitGrid = new BitGridOccupancy(countX, countY);
+        int[] vacant = new int[2];
+        long checksum = 0;
+        for (int fill = 0; fill < 10; fill++) {
+            int x = random.nextInt(countX);
+            int y = random.nextInt(countY);
+            int spanX = 1 + random.nextInt(3);
+            int spanY = 1 + random.nextInt(3);
+            if (useBits) {
+                bitGrid.markCells(x, y, spanX, spanY, true);
+            } else {
+                grid.markCells(x, y, spanX, spanY, true);
+            }
+
+            for (int sx = 1; sx <= 4; sx++) {
+                for (int sy = 1; sy <= 4; sy++) {
+                    boolean found = useBits
+                            ? bitGrid.findVacantCell(vacant, sx, sy)
+                            : grid.findVacantCell(vacant, sx, sy);
+                    checksum = checksum * 31 + (found ? vacant[0] * countY + vacant[1] : -1);
+                    for (int cx = 0; cx < countX; cx++) {
+                        for (int cy = 0; cy < countY; cy++) {
+                            boolean regionVacant = useBits
+                                    ? bitGrid.isRegionVacant(cx, cy, sx, sy)
+                                    : grid.isRegionVacant(cx, cy, sx, sy);
+                            checksum += regionVacant ? 1 : 0;
+                        }
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Places items of random sizes on the first screen with enough space, the way new items are
+     * added to the workspace, and returns a checksum of the placements
+     */
+    private static long placeItems(boolean useBits) {
+        int countX = 6;
+        int countY = 5;
+        int screenCount = 20;
+        Random random = new Random(7);
+        GridOccupancy[] screens = new GridOccupancy[screenCount];
+        BitGridOccupancy[] bitScreens = new BitGridOccupancy[screenCount];
+        for (int i = 0; i < screenCount; i++) {
+            screens[i] = new GridOccupancy(countX, countY);
+            bitScreens[i] = new BitGridOccupancy(countX, countY);
+        }
+
+        int[] vacant = new int[2];
+        long checksum = 0;
+        for (int item = 0; item < 300; item++) {
+            int spanX = random.nextInt(4) == 0 ? 2 : 1;
+            int spanY = random.nextInt(4) == 0 ? 2 : 1;
+            for (int screen = 0; screen < screenCount; screen++) {
+                boolean found = useBits
+                        ? bitScreens[screen].findVacantCell(vacant, spanX, spanY)
+                        : screens[screen].findVacantCell(vacant, spanX, spanY);
+                if (found) {
+                    if (useBits) {
+                        bitScreens[screen].markCells(vacant[0], vacant[1], spanX, spanY, true);
+                    } else {
+                        screens[screen].markCells(vacant[0], vacant[1], spanX, spanY, true);
+                    }
+                    checksum = checksum * 31 + (screen * countX + vacant[0]) * countY + vacant[1];
+                    break;
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Runs {@param benchmark} after a warm up, reports the average duration and returns its result
+     */
+    private static long measure(String prefix, LongSupplier benchmark) {
+        long result = benchmark.getAsLong();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals(result, benchmark.getAsLong());
+        }
+        report(TAG, prefix + "ns", (System.nanoTime() - startNanos) / ITERATIONS);
+        return result;
+    }
+}
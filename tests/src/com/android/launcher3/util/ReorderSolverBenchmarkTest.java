@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.BenchmarkUtils.countAllocations;
+import static com.android.launcher3.util.BenchmarkUtils.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Replays drag paths over crowded layouts through {@link ReorderSolver}, the way
+ * {@link com.android.launcher3.CellLayout} does on each reorder alarm, and reports the time per
+ * drag position as instrumentation status. Solving must not allocate once the solver is warm.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ReorderSolverBenchmarkTest {
+
+    private static final String TAG = "ReorderSolverBenchmark";
+
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void dragIcon_phoneGrid() {
+        benchmark("phone_icon_", 6, 7, 1, 1);
+    }
+
+    @Test
+    public void dragWidget_phoneGrid() {
+        benchmark("phone_widget_", 6, 7, 2, 2);
+    }
+
+    @Test
+    public void dragIcon_tabletGrid() {
+        benchmark("tablet_icon_", 8, 8, 1, 1);
+    }
+
+    private void benchmark(String prefix, int countX, int countY, int spanX, int spanY) {
+        Layout layout = new Layout(countX, countY, spanX, spanY);
+        int[] path = createDragPath(countX - spanX + 1, countY - spanY + 1);
+        ReorderSolver solver = new ReorderSolver(countX, countY);
+        int[] direction = new int[2];
+
+        // Warm up the solver, so that its buffers, pool and memoized solutions are allocated
+        long expected = replay(solver, layout, path, direction, false);
+        assertEquals(expected, replay(solver, layout, path, direction, true));
+
+        long[] nanos = new long[2];
+        int searchAllocations = countAllocations(() -> {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertEquals(expected, replay(solver, layout, path, direction, true));
+            }
+            nanos[0] = System.nanoTime() - startNanos;
+        });
+
+        // Memoize the solutions of all the positions again
+        assertEquals(expected, replay(solver, layout, path, direction, false));
+        int memoizedAllocations = countAllocations(() -> {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertEquals(expected, replay(solver, layout, path, direction, false));
+            }
+            nanos[1] = System.nanoTime() - startNanos;
+        });
+
+        int positions = ITERATIONS * path.length / 2;
+        report(TAG, prefix + "search_ns_per_position", nanos[0] / positions);
+        report(TAG, prefix + "memoized_ns_per_position", nanos[1] / positions);
+        assertEquals("Searching allocated", 0, searchAllocations);
+        assertEquals("Memoized lookups allocated", 0, memoizedAllocations);
+    }
+
+    /**
+     * Solves the reorder for each position of {@param path}, reloading the layout before each
+     * position like a drag does, and returns a checksum of the solutions
+     *
+     * @param clearSolutions whether the memoized solutions are discarded, so that each position
+     *        is searched again
+     */
+    private static long replay(ReorderSolver solver, Layout layout, int[] path, int[] direction,
+            boolean clearSolutions) {
+        long checksum = 0;
+        for (int i = 0; i < path.length; i += 2) {
+            int cellX = path[i];
+            int cellY = path[i + 1];
+            if (i > 0) {
+                ReorderSolver.computeDirectionVector(
+                        cellX - path[i - 2], cellY - path[i - 1], direction);
+            } else {
+                direction[0] = 1;
+                direction[1] = 0;
+            }
+
+            layout.load(solver);
+            if (clearSolutions) {
+                solver.clearSolutions();
+            }
+            ReorderSolver.Solution solution =
+                    solver.solve(cellX, cellY, layout.mDragSpanX, layout.mDragSpanY, direction);
+            checksum = checksum * 31 + (solution.isSolution() ? 1 : 0);
+            if (solution.isSolution()) {
+                for (int item = 0; item < layout.mItemCount; item++) {
+                    checksum = checksum * 31 + solution.getCellX(item) * 64
+                            + solution.getCellY(item);
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Returns the cells visited by a drag snaking across the grid, as (x, y) pairs
+     */
+    private static int[] createDragPath(int countX, int countY) {
+        int[] path = new int[countX * countY * 2];
+        int i = 0;
+        for (int y = 0; y < countY; y++) {
+            for (int x = 0; x < countX; x++) {
+                path[i++] = y % 2 == 0 ? x : countX - 1 - x;
+                path[i++] = y;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * A grid filled with icons and widgets, with only a few vacant cells, and an item being
+     * dragged which is not in the occupied cells
+     */
+    private static class Layout {
+
+        final int mDragSpanX;
+        final int mDragSpanY;
+        final int mItemCount;
+        final int mDragItem;
+        final int[] mItems;
+        final GridOccupancy mOccupied;
+
+        Layout(int countX, int countY, int dragSpanX, int dragSpanY) {
+            mDragSpanX = dragSpanX;
+            mDragSpanY = dragSpanY;
+            mOccupied = new GridOccupancy(countX, countY);
+            mItems = new int[countX * countY * 4];
+
+            // The dragged item is placed first, and removed from the grid after the others
+            int count = 0;
+            mOccupied.markCells(0, 0, dragSpanX, dragSpanY, true);
+            count = add(count, 0, 0, dragSpanX, dragSpanY);
+            mDragItem = 0;
+
+            Random random = new Random(countX * 31 + countY);
+            int[] vacant = new int[2];
+            int vacantCells = countX * countY - dragSpanX * dragSpanY;
+            while (vacantCells > 3) {
+                int spanX = 1;
+                int spanY = 1;
+                if (random.nextInt(5) == 0) {
+                    spanX = 1 + random.nextInt(3);
+                    spanY = 1 + random.nextInt(2);
+                }
+                if (mOccupied.findVacantCell(vacant, spanX, spanY)) {
+                    mOccupied.markCells(vacant[0], vacant[1], spanX, spanY, true);
+                    count = add(count, vacant[0], vacant[1], spanX, spanY);
+                    vacantCells -= spanX * spanY;
+                }
+            }
+            mItemCount = count;
+            mOccupied.markCells(0, 0, dragSpanX, dragSpanY, false);
+            assertTrue(mItemCount > countX * countY / 4);
+        }
+
+        private int add(int count, int cellX, int cellY, int spanX, int spanY) {
+            mItems[count * 4] = cellX;
+            mItems[count * 4 + 1] = cellY;
+            mItems[count * 4 + 2] = spanX;
+            mItems[count * 4 + 3] = spanY;
+            return count + 1;
+        }
+
+        void load(ReorderSolver solver) {
+            solver.beginLayout();
+            for (int i = 0; i < mItemCount; i++) {
+                solver.addItem(mItems[i * 4], mItems[i * 4 + 1], mItems[i * 4 + 2],
+                        mItems[i * 4 + 3], true);
+            }
+            solver.endLayout(mOccupied, mDragItem);
+        }
+    }
+}
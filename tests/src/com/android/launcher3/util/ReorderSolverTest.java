@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests for {@link ReorderSolver}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ReorderSolverTest {
+
+    private static final int[] RIGHT = new int[] {1, 0};
+    private static final int[] DOWN = new int[] {0, 1};
+
+    @Test
+    public void testPushInDirection() {
+        // A row of two icons, with space on the right
+        ReorderSolver solver = new ReorderSolver(4, 1);
+        GridOccupancy occupied = new GridOccupancy(4, 1);
+        load(solver, occupied, -1, new int[] {0, 0, 1, 1}, new int[] {1, 0, 1, 1});
+
+        ReorderSolver.Solution solution = solver.solve(0, 0, 1, 1, RIGHT);
+        assertTrue(solution.isSolution());
+        // Both icons are pushed by one cell, but only the first one was in the way
+        assertEquals(1, solution.getCellX(0));
+        assertEquals(2, solution.getCellX(1));
+        assertTrue(solution.isIntersecting(0));
+        assertFalse(solution.isIntersecting(1));
+    }
+
+    @Test
+    public void testPushInOppositeDirection() {
+        ReorderSolver solver = new ReorderSolver(3, 1);
+        GridOccupancy occupied = new GridOccupancy(3, 1);
+        load(solver, occupied, -1, new int[] {1, 0, 1, 1}, new int[] {2, 0, 1, 1});
+
+        // There is no space on the right, so the icon is pushed to the left
+        ReorderSolver.Solution solution = solver.solve(1, 0, 1, 1, RIGHT);
+        assertTrue(solution.isSolution());
+        assertEquals(0, solution.getCellX(0));
+        assertEquals(2, solution.getCellX(1));
+    }
+
+    @Test
+    public void testDraggedItemIsMovedToTarget() {
+        ReorderSolver solver = new ReorderSolver(2, 2);
+        GridOccupancy occupied = new GridOccupancy(2, 2);
+        // The dragged item is not in the occupied cells
+        load(solver, occupied, 1, new int[] {0, 0, 1, 1}, new int[] {1, 1, 1, 1});
+
+        ReorderSolver.Solution solution = solver.solve(0, 0, 1, 1, DOWN);
+        assertTrue(solution.isSolution());
+        assertEquals(0, solution.getCellX(0));
+        assertEquals(1, solution.getCellY(0));
+        assertEquals(0, solution.getCellX(1));
+        assertEquals(0, solution.getCellY(1));
+    }
+
+    @Test
+    public void testNoSolution() {
+        ReorderSolver solver = new ReorderSolver(2, 1);
+        GridOccupancy occupied = new GridOccupancy(2, 1);
+        load(solver, occupied, -1, new int[] {0, 0, 1, 1}, new int[] {1, 0, 1, 1});
+        assertFalse(solver.solve(0, 0, 1, 1, RIGHT).isSolution());
+        assertFalse(solver.solve(-1, 0, 1, 1, RIGHT).isSolution());
+        assertFalse(solver.solve(0, 0, 3, 1, RIGHT).isSolution());
+    }
+
+    @Test
+    public void testItemsWhichCannotReorder() {
+        ReorderSolver solver = new ReorderSolver(3, 1);
+        GridOccupancy occupied = new GridOccupancy(3, 1);
+        solver.beginLayout();
+        solver.addItem(0, 0, 1, 1, true);
+        solver.addItem(1, 0, 1, 1, false);
+        occupied.markCells(0, 0, 2, 1, true);
+        solver.endLayout(occupied, -1);
+
+        // The item which can't be reordered can't be pushed, so the other item jumps over it
+        ReorderSolver.Solution solution = solver.solve(0, 0, 1, 1, RIGHT);
+        assertTrue(solution.isSolution());
+        assertEquals(2, solution.getCellX(0));
+        assertEquals(1, solution.getCellX(1));
+
+        // And it can't be moved out of the way
+        assertFalse(solver.solve(1, 0, 1, 1, RIGHT).isSolution());
+    }
+
+    @Test
+    public void testSolutionsAreMemoizedUntilLayoutChanges() {
+        ReorderSolver solver = new ReorderSolver(4, 4);
+        GridOccupancy occupied = new GridOccupancy(4, 4);
+        int[] item = new int[] {1, 1, 2, 2};
+        load(solver, occupied, -1, item);
+
+        ReorderSolver.Solution solution = solver.solve(1, 1, 1, 1, RIGHT);
+        assertTrue(solution.isSolution());
+        assertSame(solution, solver.solve(1, 1, 1, 1, RIGHT));
+        assertNotSame(solution, solver.solve(1, 1, 1, 1, DOWN));
+
+        // Reloading the same layout keeps the solutions
+        load(solver, occupied, -1, item);
+        assertSame(solution, solver.solve(1, 1, 1, 1, RIGHT));
+
+        // Moving an item discards them
+        occupied.clear();
+        item[1] = 0;
+        load(solver, occupied, -1, item);
+        solution = solver.solve(1, 1, 1, 1, RIGHT);
+        assertTrue(solution.isSolution());
+        assertEquals(2, solution.getCellX(0));
+        assertEquals(0, solution.getCellY(0));
+    }
+
+    @Test
+    public void testPrecomputedSolutionsMatchSearchedSolutions() {
+        ReorderSolver solver = new ReorderSolver(4, 4);
+        GridOccupancy occupied = new GridOccupancy(4, 4);
+        int[][] items = new int[][] {{0, 0, 1, 1}, {1, 0, 2, 1}, {1, 1, 2, 2}, {3, 3, 1, 1}};
+        load(solver, occupied, 0, items);
+
+        ReorderSolver background = new ReorderSolver(4, 4);
+        int[] cells = new int[] {1, 0, 2, 1};
+        ReorderSolver.Precomputation precomputation =
+                background.precompute(solver.createSnapshot(), cells, 1, 1);
+        // Each cell is solved in all 8 directions
+        assertEquals(16, precomputation.size());
+        assertEquals(16, solver.addPrecomputed(precomputation));
+        // The solutions are only added once
+        assertEquals(0, solver.addPrecomputed(precomputation));
+
+        // The precomputed solutions are used, and match what the solver would have found
+        ReorderSolver reference = new ReorderSolver(4, 4);
+        load(reference, new GridOccupancy(4, 4), 0, items);
+        for (int i = 0; i < cells.length; i += 2) {
+            for (int[] direction : new int[][] {RIGHT, DOWN, {-1, -1}}) {
+                assertSolutionEquals(items.length,
+                        reference.solve(cells[i], cells[i + 1], 1, 1, direction),
+                        solver.solve(cells[i], cells[i + 1], 1, 1, direction));
+            }
+        }
+    }
+
+    @Test
+    public void testStalePrecomputedSolutionsAreDiscarded() {
+        ReorderSolver solver = new ReorderSolver(4, 1);
+        GridOccupancy occupied = new GridOccupancy(4, 1);
+        int[] item = new int[] {0, 0, 1, 1};
+        load(solver, occupied, -1, item);
+        ReorderSolver.Snapshot snapshot = solver.createSnapshot();
+        assertSame(snapshot, solver.createSnapshot());
+
+        // The item is moved while the solutions are computed
+        occupied.clear();
+        item[0] = 3;
+        load(solver, occupied, -1, item);
+        assertNotSame(snapshot, solver.createSnapshot());
+
+        ReorderSolver background = new ReorderSolver(4, 1);
+        assertEquals(0, solver.addPrecomputed(
+                background.precompute(snapshot, new int[] {0, 0}, 1, 1)));
+        ReorderSolver.Solution solution = solver.solve(0, 0, 1, 1, RIGHT);
+        assertTrue(solution.isSolution());
+        assertEquals(3, solution.getCellX(0));
+    }
+
+    private static void assertSolutionEquals(int itemCount, ReorderSolver.Solution expected,
+            ReorderSolver.Solution actual) {
+        assertEquals(expected.isSolution(), actual.isSolution());
+        for (int i = 0; i < itemCount && expected.isSolution(); i++) {
+            assertEquals(expected.getCellX(i), actual.getCellX(i));
+            assertEquals(expected.getCellY(i), actual.getCellY(i));
+            assertEquals(expected.isIntersecting(i), actual.isIntersecting(i));
+        }
+    }
+
+    private static void load(ReorderSolver solver, GridOccupancy occupied, int ignoredItem,
+            int[]... items) {
+        solver.beginLayout();
+        for (int i = 0; i < items.length; i++) {
+            int[] item = items[i];
+            solver.addItem(item[0], item[1], item[2], item[3], true);
+            if (i != ignoredItem) {
+                occupied.markCells(item[0], item[1], item[2], item[3], true);
+            }
+        }
+        solver.endLayout(occupied, ignoredItem);
+    }
+}